@@ -0,0 +1,125 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.benchmark;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.zuiyouliao.cache.configuration.CacheAutoConfiguration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基准测试环境：进程内redis替身 + 只加载starter自动配置的Spring上下文
+ * <p>不开启定时任务，刷新由基准测试手动触发；刷新线程池在调用线程内执行，便于统计整个刷新过程</p>
+ */
+final class BenchmarkEnvironment implements AutoCloseable {
+
+    private final RedisServer redisServer;
+
+    private final AnnotationConfigApplicationContext context;
+
+    private BenchmarkEnvironment(RedisServer redisServer, AnnotationConfigApplicationContext context) {
+        this.redisServer = redisServer;
+        this.context = context;
+    }
+
+    /**
+     * 启动
+     * @param properties 额外的z-cache配置，覆盖默认配置
+     * @return com.zuiyouliao.cache.benchmark.BenchmarkEnvironment
+     */
+    static BenchmarkEnvironment start(Map<String, Object> properties) {
+        RedisServer redisServer;
+        try {
+            redisServer = RedisServer.newRedisServer().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<String, Object> source = new HashMap<>(16);
+        source.put("benchmark.redis.host", redisServer.getHost());
+        source.put("benchmark.redis.port", redisServer.getBindPort());
+        source.put("z-cache.task.enabled", "false");
+        source.putAll(properties);
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", source));
+        context.register(BenchmarkConfiguration.class);
+        BenchmarkEnvironment environment = new BenchmarkEnvironment(redisServer, context);
+        try {
+            context.refresh();
+        } catch (RuntimeException e) {
+            environment.close();
+            throw e;
+        }
+        return environment;
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    <T> T getBean(String name, Class<T> type) {
+        return context.getBean(name, type);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        try {
+            redisServer.stop();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Configuration
+    @Import(CacheAutoConfiguration.class)
+    static class BenchmarkConfiguration {
+
+        @Bean
+        public LettuceConnectionFactory redisConnectionFactory(@Value("${benchmark.redis.host}") String host,
+                                                               @Value("${benchmark.redis.port}") int port) {
+            return new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        }
+
+        @Bean("cacheThreadPoolExecutor")
+        public ThreadPoolExecutor cacheThreadPoolExecutor() {
+            return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            };
+        }
+
+        @Bean
+        public OrderService orderService() {
+            return new OrderService();
+        }
+    }
+}
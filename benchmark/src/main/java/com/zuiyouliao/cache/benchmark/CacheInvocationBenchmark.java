@@ -0,0 +1,88 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.benchmark;
+
+import com.zuiyouliao.cache.task.CacheInvocation;
+import com.zuiyouliao.cache.task.CacheInvocationCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自刷缓存登记值的编解码：jdk为旧格式，compact为方法描述表 + binary参数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CacheInvocationBenchmark {
+
+    private static final String KEY = "orders::10086:PAID:3";
+
+    @Param({"jdk", "compact"})
+    public String format;
+
+    private BenchmarkEnvironment environment;
+
+    private CacheInvocationCodec codec;
+
+    private RedisSerializer<Object> jdkSerializer;
+
+    private CacheInvocation cacheInvocation;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        environment = BenchmarkEnvironment.start(Collections.emptyMap());
+        codec = environment.getBean(CacheInvocationCodec.class);
+        jdkSerializer = RedisSerializer.java();
+        cacheInvocation = new CacheInvocation(OrderService.class.getName(), "searchOrders",
+                new Class<?>[]{long.class, Payloads.OrderQuery.class},
+                new Object[]{10086L, new Payloads.OrderQuery("PAID", 3)}, KEY, 300);
+        bytes = this.encode();
+    }
+
+    @TearDown
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return "jdk".equals(format) ? jdkSerializer.serialize(cacheInvocation) : codec.encode(cacheInvocation);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return "jdk".equals(format) ? jdkSerializer.deserialize(bytes) : codec.decode(KEY, bytes);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.benchmark;
+
+import com.zuiyouliao.cache.task.CacheInvocation;
+import com.zuiyouliao.cache.task.CacheRefresher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个刷新周期：扫描登记表、解码、调用方法并写回redis，刷新线程池在调用线程内执行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CacheRefresherBenchmark {
+
+    @Param({"100", "1000"})
+    public int entries;
+
+    private BenchmarkEnvironment environment;
+
+    private CacheRefresher cacheRefresher;
+
+    @Setup
+    public void setup() {
+        environment = BenchmarkEnvironment.start(Collections.emptyMap());
+        cacheRefresher = environment.getBean(CacheRefresher.class);
+        Class<?>[] argTypes = {long.class, Payloads.OrderQuery.class};
+        for (int i = 0; i < entries; i++) {
+            Object[] args = {10086L + i, new Payloads.OrderQuery("PAID", i % 100)};
+            String key = "orders::" + (10086L + i) + ":PAID:" + (i % 100);
+            cacheRefresher.addCache(new CacheInvocation(OrderService.class.getName(), "searchOrders", argTypes, args, key, 300));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public void refresh() {
+        cacheRefresher.refresh();
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.benchmark;
+
+import com.zuiyouliao.cache.core.TtlRedisCacheResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+import org.springframework.cache.interceptor.CacheOperationInvocationContext;
+import org.springframework.cache.interceptor.CacheableOperation;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存解析：keyGenerator为默认key生成器的方法，spel为SpEL key + condition并登记自刷缓存的方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CacheResolverBenchmark {
+
+    @Param({"keyGenerator", "spel"})
+    public String keyMode;
+
+    private BenchmarkEnvironment environment;
+
+    private TtlRedisCacheResolver resolver;
+
+    private CacheOperationInvocationContext<CacheableOperation> context;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        environment = BenchmarkEnvironment.start(Collections.emptyMap());
+        resolver = environment.getBean("ttlRedisCacheResolver", TtlRedisCacheResolver.class);
+        OrderService target = environment.getBean(OrderService.class);
+        CacheableOperation.Builder builder = new CacheableOperation.Builder();
+        builder.setCacheNames("orders");
+        Method method;
+        Object[] args;
+        if ("spel".equals(keyMode)) {
+            method = OrderService.class.getMethod("searchOrders", long.class, Payloads.OrderQuery.class);
+            args = new Object[]{10086L, new Payloads.OrderQuery("PAID", 3)};
+            builder.setKey("#shopId + ':' + #query.status + ':' + #query.page");
+            builder.setCondition("#query.page < 100");
+        } else {
+            method = OrderService.class.getMethod("listOrders", long.class, int.class);
+            args = new Object[]{10086L, 3};
+            builder.setKeyGenerator("ttlCacheKeyGenerator");
+        }
+        builder.setName(method.toString());
+        context = new InvocationContext(builder.build(), target, method, args);
+    }
+
+    @TearDown
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public Collection<? extends Cache> resolveCaches() {
+        return resolver.resolveCaches(context);
+    }
+
+    private static class InvocationContext implements CacheOperationInvocationContext<CacheableOperation> {
+
+        private final CacheableOperation operation;
+
+        private final Object target;
+
+        private final Method method;
+
+        private final Object[] args;
+
+        InvocationContext(CacheableOperation operation, Object target, Method method, Object[] args) {
+            this.operation = operation;
+            this.target = target;
+            this.method = method;
+            this.args = args;
+        }
+
+        @Override
+        public CacheableOperation getOperation() {
+            return operation;
+        }
+
+        @Override
+        public Object getTarget() {
+            return target;
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Object[] getArgs() {
+            return args;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.benchmark;
+
+import com.zuiyouliao.cache.constant.KeyGeneratorType;
+import com.zuiyouliao.cache.core.TtlCacheKeyGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 默认key生成器，对比hashcode和murmur3两种方式
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KeyGeneratorBenchmark {
+
+    @Param({"hashcode", "murmur3"})
+    private KeyGeneratorType type;
+
+    private TtlCacheKeyGenerator keyGenerator;
+
+    private OrderService target;
+
+    private Method method;
+
+    private Object[] args;
+
+    private Method searchMethod;
+
+    private Object[] searchArgs;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        keyGenerator = new TtlCacheKeyGenerator(type);
+        target = new OrderService();
+        method = OrderService.class.getMethod("listOrders", long.class, int.class);
+        args = new Object[]{10086L, 3};
+        searchMethod = OrderService.class.getMethod("searchOrders", long.class, Payloads.OrderQuery.class);
+        searchArgs = new Object[]{10086L, new Payloads.OrderQuery("PAID", 3)};
+    }
+
+    @Benchmark
+    public Object generate() {
+        return keyGenerator.generate(target, method, args);
+    }
+
+    @Benchmark
+    public Object generateWithObject() {
+        return keyGenerator.generate(target, searchMethod, searchArgs);
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.benchmark;
+
+import com.zuiyouliao.cache.annotation.TtlCacheable;
+
+import java.util.List;
+
+/**
+ * 基准测试使用的业务方法，覆盖默认key生成器、SpEL key和condition
+ */
+public class OrderService {
+
+    @TtlCacheable(value = "orders", ttl = 300)
+    public List<Payloads.Order> listOrders(long shopId, int page) {
+        return Payloads.orders(20);
+    }
+
+    @TtlCacheable(value = "orders", key = "#shopId + ':' + #query.status + ':' + #query.page", condition = "#query.page < 100",
+            keyGenerator = "", ttl = 300, autoRefreshWithoutUnless = true)
+    public List<Payloads.Order> searchOrders(long shopId, Payloads.OrderQuery query) {
+        return Payloads.orders(20);
+    }
+}
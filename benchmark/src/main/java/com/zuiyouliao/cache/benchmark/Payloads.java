@@ -0,0 +1,186 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.benchmark;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 贴近报表类接口的负载：订单列表，每个订单带若干明细
+ */
+public final class Payloads {
+
+    private Payloads() {}
+
+    static List<Order> orders(int size) {
+        List<Order> orders = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Order order = new Order();
+            order.setId(100000L + i);
+            order.setOrderNo("SO2026101800" + i);
+            order.setStatus(i % 3 == 0 ? "PAID" : "CREATED");
+            order.setAmount(new BigDecimal("199.90").add(BigDecimal.valueOf(i)));
+            order.setCreateTime(new Date(1760745600000L + i * 60000L));
+            List<OrderItem> items = new ArrayList<>(3);
+            for (int j = 0; j < 3; j++) {
+                OrderItem item = new OrderItem();
+                item.setSkuId(5000L + j);
+                item.setSkuName("商品-" + j);
+                item.setQuantity(j + 1);
+                item.setPrice(new BigDecimal("66.63"));
+                items.add(item);
+            }
+            order.setItems(items);
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    public static class Order implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Long id;
+
+        private String orderNo;
+
+        private String status;
+
+        private BigDecimal amount;
+
+        private Date createTime;
+
+        private List<OrderItem> items;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getOrderNo() {
+            return orderNo;
+        }
+
+        public void setOrderNo(String orderNo) {
+            this.orderNo = orderNo;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public Date getCreateTime() {
+            return createTime;
+        }
+
+        public void setCreateTime(Date createTime) {
+            this.createTime = createTime;
+        }
+
+        public List<OrderItem> getItems() {
+            return items;
+        }
+
+        public void setItems(List<OrderItem> items) {
+            this.items = items;
+        }
+    }
+
+    public static class OrderItem implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Long skuId;
+
+        private String skuName;
+
+        private int quantity;
+
+        private BigDecimal price;
+
+        public Long getSkuId() {
+            return skuId;
+        }
+
+        public void setSkuId(Long skuId) {
+            this.skuId = skuId;
+        }
+
+        public String getSkuName() {
+            return skuName;
+        }
+
+        public void setSkuName(String skuName) {
+            this.skuName = skuName;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        public void setPrice(BigDecimal price) {
+            this.price = price;
+        }
+    }
+
+    public static class OrderQuery implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String status;
+
+        private int page;
+
+        public OrderQuery(String status, int page) {
+            this.status = status;
+            this.page = page;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public int getPage() {
+            return page;
+        }
+    }
+}
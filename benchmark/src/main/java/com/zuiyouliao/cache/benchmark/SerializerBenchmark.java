@@ -0,0 +1,96 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存值序列化：各序列化类型和压缩方式，序列化器取自ttlRedisTemplate，与缓存实际使用的一致；
+ * string类型的负载为同一份订单列表的json文本
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializerBenchmark {
+
+    @Param({"jdk", "json", "string", "binary"})
+    public String type;
+
+    @Param({"none", "deflate"})
+    public String compression;
+
+    @Param({"20"})
+    public int size;
+
+    private BenchmarkEnvironment environment;
+
+    private RedisSerializer<Object> serializer;
+
+    private Object payload;
+
+    private byte[] bytes;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        Map<String, Object> properties = new HashMap<>(4);
+        properties.put("z-cache.serializer.type", type);
+        properties.put("z-cache.serializer.compression", compression);
+        environment = BenchmarkEnvironment.start(properties);
+        serializer = (RedisSerializer<Object>) environment.getBean("ttlRedisTemplate", RedisTemplate.class).getValueSerializer();
+        payload = Payloads.orders(size);
+        if ("string".equals(type)) {
+            payload = new String(RedisSerializer.json().serialize(payload), StandardCharsets.UTF_8);
+        }
+        bytes = serializer.serialize(payload);
+    }
+
+    @TearDown
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(payload);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+}
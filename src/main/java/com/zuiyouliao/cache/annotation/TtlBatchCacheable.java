@@ -0,0 +1,64 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.annotation;
+
+import org.springframework.core.annotation.AliasFor;
+
+import java.lang.annotation.*;
+
+/**
+ * 批量缓存注解，集合参数的每个元素单独缓存
+ * <p>用于 List&lt;User&gt; findByIds(Collection&lt;Long&gt; ids) 这类方法：第一个集合参数的每个元素对应一个key
+ * （缓存名称::元素key，与@TtlCacheable的前缀相同），一次MGET读取全部key，只用未命中的元素调用方法，
+ * 加载结果通过一次pipeline写回</p>
+ * <p>方法返回Map时按Map的key对应参数元素；返回List、Set或Collection时需要设置resultKey</p>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface TtlBatchCacheable {
+
+    @AliasFor("cacheNames")
+    String[] value() default {};
+
+    @AliasFor("value")
+    String[] cacheNames() default {};
+
+    /**
+     * 每个元素的缓存key（SpEL，#element为当前元素，也可以引用方法参数），默认为元素的toString
+     */
+    String key() default "";
+
+    /**
+     * 从返回集合的每个值取得对应参数元素的表达式（SpEL，以返回值为根对象），如"id"
+     */
+    String resultKey() default "";
+
+    String condition() default "";
+
+    long ttl() default -1;
+
+    /**
+     * ttl抖动，百分比（如10%）或秒数（如30），默认使用z-cache.ttl.jitter，0表示不抖动
+     */
+    String ttlJitter() default "";
+
+    /**
+     * 方法没有返回的元素（空值）的存活时间（秒），小于等于0时与ttl相同
+     */
+    long nullTtl() default -1;
+}
@@ -55,5 +55,19 @@ public @interface TtlCacheable {
 
     long ttl() default -1;
 
+    String ttlJitter() default "";
+
+    long nullTtl() default -1;
+
+    boolean emptyAsNull() default false;
+
     boolean autoRefreshWithoutUnless() default false;
+
+    boolean local() default false;
+
+    boolean earlyRecompute() default false;
+
+    double earlyRecomputeBeta() default 1.0;
+
+    boolean singleFlight() default false;
 }
@@ -15,17 +15,54 @@
  */
 package com.zuiyouliao.cache.configuration;
 
+import com.zuiyouliao.cache.annotation.TtlBatchCacheable;
+import com.zuiyouliao.cache.constant.BackendType;
 import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.core.AsyncCacheInterceptor;
+import com.zuiyouliao.cache.core.BatchCacheInterceptor;
+import com.zuiyouliao.cache.core.NearCacheRegistry;
+import com.zuiyouliao.cache.core.SingleFlight;
+import com.zuiyouliao.cache.core.SingleFlightInterceptor;
 import com.zuiyouliao.cache.core.TtlCacheKeyGenerator;
 import com.zuiyouliao.cache.core.TtlRedisCacheManager;
 import com.zuiyouliao.cache.core.TtlRedisCacheResolver;
+import com.zuiyouliao.cache.memory.MemoryRedisConnectionFactory;
+import com.zuiyouliao.cache.memory.MemoryStore;
+import com.zuiyouliao.cache.metrics.CacheMetrics;
+import com.zuiyouliao.cache.metrics.MicrometerCacheMetrics;
+import com.zuiyouliao.cache.prop.AccessProperties;
+import com.zuiyouliao.cache.prop.AsyncProperties;
+import com.zuiyouliao.cache.prop.BackendProperties;
+import com.zuiyouliao.cache.prop.ClusterProperties;
+import com.zuiyouliao.cache.prop.HotnessProperties;
+import com.zuiyouliao.cache.prop.KeyProperties;
+import com.zuiyouliao.cache.prop.LocalProperties;
+import com.zuiyouliao.cache.prop.MetricsProperties;
 import com.zuiyouliao.cache.prop.ProjectProperties;
+import com.zuiyouliao.cache.prop.RefreshProperties;
 import com.zuiyouliao.cache.prop.SerialProperties;
+import com.zuiyouliao.cache.prop.SingleFlightProperties;
 import com.zuiyouliao.cache.prop.TaskProperties;
+import com.zuiyouliao.cache.prop.TtlProperties;
+import com.zuiyouliao.cache.prop.WarmupProperties;
+import com.zuiyouliao.cache.serializer.BinaryRedisSerializer;
+import com.zuiyouliao.cache.serializer.CompressingRedisSerializer;
 import com.zuiyouliao.cache.task.CacheAccessRegistrar;
+import com.zuiyouliao.cache.task.CacheInvocationCodec;
+import com.zuiyouliao.cache.task.CacheInvokerRegistry;
 import com.zuiyouliao.cache.task.CacheRefresher;
 import com.zuiyouliao.cache.task.CacheTask;
+import com.zuiyouliao.cache.task.CacheWarmer;
+import com.zuiyouliao.cache.task.RefreshPartitioner;
+import com.zuiyouliao.cache.task.RefreshScheduler;
 import com.zuiyouliao.cache.util.SpringContextUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -33,14 +70,19 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
 
 import javax.annotation.Resource;
 import java.util.HashMap;
@@ -56,22 +98,51 @@ import java.util.concurrent.TimeUnit;
  * @date 2021/03/08 9:42
  */
 @Configuration
+@AutoConfigureAfter(name = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
 @EnableCaching
 @EnableScheduling
-@EnableConfigurationProperties({TaskProperties.class, SerialProperties.class, ProjectProperties.class})
+@EnableConfigurationProperties({TaskProperties.class, SerialProperties.class, ProjectProperties.class,
+        LocalProperties.class, AccessProperties.class, ClusterProperties.class,
+        SingleFlightProperties.class, RefreshProperties.class, HotnessProperties.class,
+        KeyProperties.class, TtlProperties.class, BackendProperties.class, WarmupProperties.class,
+        AsyncProperties.class, MetricsProperties.class})
 public class CacheAutoConfiguration {
 
-    @Resource
+    /**
+     * memory后端不需要redis，项目可以没有RedisConnectionFactory
+     */
+    @Autowired(required = false)
     RedisConnectionFactory redisConnectionFactory;
     @Resource
     private TaskProperties taskProperties;
     @Resource
     private SerialProperties serialProperties;
+    @Resource
+    private KeyProperties keyProperties;
+    @Resource
+    private BackendProperties backendProperties;
 
     @Bean
     @ConditionalOnMissingBean(name = "ttlRedisCacheWriter")
     public RedisCacheWriter ttlRedisCacheWriter() {
-        return RedisCacheWriter.nonLockingRedisCacheWriter(redisConnectionFactory);
+        return RedisCacheWriter.nonLockingRedisCacheWriter(this.cacheConnectionFactory());
+    }
+
+    @Bean("ttlMemoryStore")
+    @ConditionalOnProperty(prefix = CacheConstant.BACKEND_PREFIX, value = "type", havingValue = "memory")
+    public MemoryStore ttlMemoryStore() {
+        return new MemoryStore(backendProperties.getSweepInterval(), backendProperties.getMaximumSize());
+    }
+
+    /**
+     * 缓存读写、自动刷新和访问记录使用的连接工厂：memory后端为进程内的连接工厂（不注册为bean），否则为项目的RedisConnectionFactory
+     */
+    private RedisConnectionFactory cacheConnectionFactory() {
+        if (backendProperties.getType() == BackendType.memory) {
+            return new MemoryRedisConnectionFactory(this.ttlMemoryStore());
+        }
+        Assert.state(redisConnectionFactory != null, "No RedisConnectionFactory found, set z-cache.backend.type = memory to run without redis");
+        return redisConnectionFactory;
     }
 
     @Bean
@@ -98,7 +169,7 @@ public class CacheAutoConfiguration {
     @ConditionalOnMissingBean(name = "ttlRedisTemplate")
     public RedisTemplate<String, Object> ttlRedisTemplate() {
         RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
-        redisTemplate.setConnectionFactory(redisConnectionFactory);
+        redisTemplate.setConnectionFactory(this.cacheConnectionFactory());
         redisTemplate.setKeySerializer(RedisSerializer.string());
         redisTemplate.setValueSerializer(this.ttlSerializer());
         redisTemplate.setHashKeySerializer(RedisSerializer.string());
@@ -107,11 +178,15 @@ public class CacheAutoConfiguration {
     }
 
     private RedisSerializer<?> ttlSerializer() {
+        RedisSerializer<?> serializer;
         switch (serialProperties.getType()) {
-            case json: return RedisSerializer.json();
-            case string: return RedisSerializer.string();
-            default: return RedisSerializer.java();
+            case json: serializer = RedisSerializer.json(); break;
+            case string: serializer = RedisSerializer.string(); break;
+            case binary: serializer = new BinaryRedisSerializer(serialProperties.getRegisteredClasses()); break;
+            default: serializer = RedisSerializer.java();
         }
+        // 未开启压缩时也包装，以便读取开启压缩期间写入的值
+        return new CompressingRedisSerializer<>(serializer, serialProperties.getCompression(), serialProperties.getCompressThreshold());
     }
 
     @Bean
@@ -121,11 +196,37 @@ public class CacheAutoConfiguration {
         return new CacheTask();
     }
 
+    @Bean("cacheWarmer")
+    @ConditionalOnProperty(prefix = CacheConstant.WARMUP_PREFIX, value = "enabled", havingValue = "true")
+    public CacheWarmer cacheWarmer() {
+        return new CacheWarmer();
+    }
+
     @Bean("cacheRefresher")
     public CacheRefresher cacheRefresher() {
         return new CacheRefresher();
     }
 
+    @Bean("refreshScheduler")
+    public RefreshScheduler refreshScheduler() {
+        return new RefreshScheduler();
+    }
+
+    @Bean("cacheInvocationCodec")
+    public CacheInvocationCodec cacheInvocationCodec() {
+        return new CacheInvocationCodec();
+    }
+
+    @Bean("cacheInvokerRegistry")
+    public CacheInvokerRegistry cacheInvokerRegistry() {
+        return new CacheInvokerRegistry();
+    }
+
+    @Bean("refreshPartitioner")
+    public RefreshPartitioner refreshPartitioner() {
+        return new RefreshPartitioner();
+    }
+
     @Bean("cacheThreadPoolExecutor")
     @ConditionalOnMissingBean(value = {ThreadPoolExecutor.class, ExecutorService.class})
     public ThreadPoolExecutor cacheThreadPoolExecutor() {
@@ -157,11 +258,128 @@ public class CacheAutoConfiguration {
     @Bean
     @ConditionalOnMissingBean(name = "ttlCacheKeyGenerator")
     public TtlCacheKeyGenerator ttlCacheKeyGenerator() {
-        return new TtlCacheKeyGenerator();
+        return new TtlCacheKeyGenerator(keyProperties.getGenerator());
     }
 
     @Bean("cacheAccessRegistrar")
     public CacheAccessRegistrar cacheAccessRegistrar() {
         return new CacheAccessRegistrar();
     }
+
+    @Bean("nearCacheRegistry")
+    public NearCacheRegistry nearCacheRegistry() {
+        return new NearCacheRegistry();
+    }
+
+    @Bean("singleFlight")
+    public SingleFlight singleFlight() {
+        return new SingleFlight();
+    }
+
+    @Bean("cacheMetrics")
+    @ConditionalOnMissingBean(CacheMetrics.class)
+    public CacheMetrics cacheMetrics() {
+        return CacheMetrics.NOOP;
+    }
+
+    /**
+     * redis后端时订阅其它节点的本地缓存失效通知；memory后端只在本节点可见，不需要订阅
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = CacheConstant.BACKEND_PREFIX, value = "type", havingValue = "redis", matchIfMissing = true)
+    static class NearCacheConfiguration {
+
+        @Bean("nearCacheListenerContainer")
+        @ConditionalOnProperty(prefix = CacheConstant.LOCAL_PREFIX, value = "enabled", havingValue = "true")
+        public RedisMessageListenerContainer nearCacheListenerContainer(NearCacheRegistry nearCacheRegistry,
+                                                                        RedisConnectionFactory redisConnectionFactory) {
+            RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+            container.setConnectionFactory(redisConnectionFactory);
+            container.addMessageListener(nearCacheRegistry, new ChannelTopic(nearCacheRegistry.channel()));
+            return container;
+        }
+    }
+
+    /**
+     * 批量缓存（@TtlBatchCacheable）的advisor，依赖在第一次调用时获取，这里不注入任何bean
+     */
+    @Configuration
+    static class BatchConfiguration {
+
+        @Bean("batchCacheInterceptor")
+        @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+        public BatchCacheInterceptor batchCacheInterceptor() {
+            return new BatchCacheInterceptor();
+        }
+
+        @Bean("batchCacheAdvisor")
+        @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+        public DefaultPointcutAdvisor batchCacheAdvisor() {
+            DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                    new AnnotationMatchingPointcut(null, TtlBatchCacheable.class, true), this.batchCacheInterceptor());
+            advisor.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+            return advisor;
+        }
+    }
+
+    /**
+     * 击穿保护的advisor，排在Spring的缓存advisor之前；依赖在第一次调用时获取，这里不注入任何bean
+     */
+    @Configuration
+    static class SingleFlightConfiguration {
+
+        @Bean("singleFlightInterceptor")
+        @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+        public SingleFlightInterceptor singleFlightInterceptor() {
+            return new SingleFlightInterceptor();
+        }
+
+        @Bean("singleFlightAdvisor")
+        @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+        public DefaultPointcutAdvisor singleFlightAdvisor() {
+            DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(new SingleFlightInterceptor.SingleFlightPointcut(), this.singleFlightInterceptor());
+            advisor.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+            return advisor;
+        }
+    }
+
+    /**
+     * 默认开启异步方法（CompletableFuture、CompletionStage、Mono）的缓存，z-cache.async.enabled = false时关闭
+     * <p>advisor排在Spring的缓存advisor之前；依赖在第一次调用时获取，这里不注入任何bean</p>
+     */
+    @Configuration
+    @ConditionalOnClass(name = "reactor.core.publisher.Mono")
+    @ConditionalOnProperty(prefix = CacheConstant.ASYNC_PREFIX, value = "enabled", havingValue = "true", matchIfMissing = true)
+    static class AsyncConfiguration {
+
+        @Bean("asyncCacheInterceptor")
+        @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+        public AsyncCacheInterceptor asyncCacheInterceptor() {
+            return new AsyncCacheInterceptor();
+        }
+
+        @Bean("asyncCacheAdvisor")
+        @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+        public DefaultPointcutAdvisor asyncCacheAdvisor() {
+            DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(new AsyncCacheInterceptor.AsyncCachePointcut(), this.asyncCacheInterceptor());
+            advisor.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+            return advisor;
+        }
+    }
+
+    /**
+     * 存在Micrometer和MeterRegistry时默认开启缓存指标，z-cache.metrics.enabled = false时关闭
+     */
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    @ConditionalOnProperty(prefix = CacheConstant.METRICS_PREFIX, value = "enabled", havingValue = "true", matchIfMissing = true)
+    static class MetricsConfiguration {
+
+        @Bean("cacheMetrics")
+        @ConditionalOnBean(MeterRegistry.class)
+        @ConditionalOnMissingBean(CacheMetrics.class)
+        public CacheMetrics cacheMetrics(MeterRegistry meterRegistry, MetricsProperties metricsProperties) {
+            return new MicrometerCacheMetrics(meterRegistry, metricsProperties);
+        }
+    }
 }
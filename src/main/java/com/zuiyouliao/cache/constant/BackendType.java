@@ -0,0 +1,31 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.constant;
+
+/**
+ * 缓存存储后端，支持：redis（默认）和memory
+ */
+public enum BackendType {
+
+    /**
+     * redis；默认
+     */
+    redis,
+    /**
+     * 进程内存储，只在本节点可见，适用于单节点服务和集成测试
+     */
+    memory;
+}
@@ -28,14 +28,66 @@ public final class CacheConstant {
 
     public static final String REFRESH_KEY = PROJECT_CONSTANT + "::refresh";
 
+    public static final String REFRESH_METHODS_KEY = PROJECT_CONSTANT + "::refresh-methods";
+
+    public static final String RECOMPUTE_KEY = PROJECT_CONSTANT + "::recompute";
+
+    public static final String CURRENT_INVOCATIONS = PROJECT_CONSTANT + "::current-invocations";
+
+    public static final String LOAD_STARTS = PROJECT_CONSTANT + "::load-starts";
+
+    public static final String ASYNC_INVOKE_KEY = PROJECT_CONSTANT + "::async-invoke";
+
+    public static final String ASYNC_PREFIX = PROJECT_CONSTANT + ".async";
+
     public static final String TASK_PREFIX = PROJECT_CONSTANT + ".task";
 
+    public static final String CLUSTER_PREFIX = TASK_PREFIX + ".cluster";
+
+    public static final String REFRESH_PREFIX = TASK_PREFIX + ".refresh";
+
+    public static final String NODES_KEY = PROJECT_CONSTANT + "::nodes";
+
     public static final String THREAD_FACTORY = PROJECT_CONSTANT + "-thread-pool-";
 
     public static final String SERIAL_PREFIX = PROJECT_CONSTANT + ".serializer";
 
     public static final String PROJECT_PREFIX = PROJECT_CONSTANT + ".project";
 
+    public static final String KEY_PREFIX = PROJECT_CONSTANT + ".key";
+
+    public static final String TTL_PREFIX = PROJECT_CONSTANT + ".ttl";
+
+    public static final String BACKEND_PREFIX = PROJECT_CONSTANT + ".backend";
+
+    public static final String MEMORY_SWEEPER_THREAD = PROJECT_CONSTANT + "-memory-sweeper-";
+
     public static final String LAST_ACCESS = PROJECT_CONSTANT + "::last-access";
 
+    public static final String ACCESS_PREFIX = PROJECT_CONSTANT + ".access";
+
+    public static final String HOTNESS_PREFIX = ACCESS_PREFIX + ".hotness";
+
+    public static final String ACCESS_SKETCH = PROJECT_CONSTANT + "::access-sketch";
+
+    public static final String ACCESS_THREAD_FACTORY = PROJECT_CONSTANT + "-access-flusher-";
+
+    public static final String REFRESH_WHEEL_THREAD = PROJECT_CONSTANT + "-refresh-wheel-";
+
+    public static final String WARMUP_PREFIX = PROJECT_CONSTANT + ".warmup";
+
+    public static final String WARMUP_THREAD = PROJECT_CONSTANT + "-warmup-";
+
+    public static final String SINGLE_FLIGHT_PREFIX = PROJECT_CONSTANT + ".single-flight";
+
+    public static final String SINGLE_FLIGHTS = PROJECT_CONSTANT + "::single-flights";
+
+    public static final String LEASE_SUFFIX = "::lease";
+
+    public static final String METRICS_PREFIX = PROJECT_CONSTANT + ".metrics";
+
+    public static final String LOCAL_PREFIX = PROJECT_CONSTANT + ".local";
+
+    public static final String NEAR_CACHE_CHANNEL = PROJECT_CONSTANT + "::near-cache";
+
 }
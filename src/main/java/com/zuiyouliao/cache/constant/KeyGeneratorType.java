@@ -0,0 +1,31 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.constant;
+
+/**
+ * 默认key生成器的参数哈希方式
+ */
+public enum KeyGeneratorType {
+
+    /**
+     * 类简单名-方法名-参数的Arrays.deepHashCode（32位）；默认，与旧版本生成的key一致
+     */
+    hashcode,
+    /**
+     * 类全名-方法名-参数规范编码后的murmur3（128位），不同参数几乎不会生成相同的key
+     */
+    murmur3;
+}
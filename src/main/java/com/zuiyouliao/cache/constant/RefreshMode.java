@@ -0,0 +1,31 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.constant;
+
+/**
+ * 自动刷新的调度方式
+ */
+public enum RefreshMode {
+
+    /**
+     * 每个z-cache.task.cron周期刷新全部自刷缓存；默认
+     */
+    cron,
+    /**
+     * 每个自刷缓存按自己的ttl在时间轮上安排下次刷新，cron周期只把登记表同步到时间轮并清理
+     */
+    wheel;
+}
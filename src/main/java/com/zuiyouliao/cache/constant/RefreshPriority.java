@@ -0,0 +1,35 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.constant;
+
+/**
+ * 自动刷新的优先级
+ */
+public enum RefreshPriority {
+
+    /**
+     * 按扫描顺序
+     */
+    none,
+    /**
+     * 剩余存活时间最短的先刷新（已过期或已删除的最先）；默认
+     */
+    expiry,
+    /**
+     * 最近访问的先刷新
+     */
+    access;
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.constant;
+
+/**
+ * 自刷缓存登记值的格式
+ */
+public enum RegistryFormat {
+
+    /**
+     * jdk序列化整个CacheInvocation，所有版本的节点都能读取；默认
+     */
+    jdk,
+    /**
+     * 紧凑格式：方法描述单独保存，登记值只保存方法id、ttl和参数；所有节点都升级后才能开启，旧版本节点无法读取
+     */
+    compact;
+}
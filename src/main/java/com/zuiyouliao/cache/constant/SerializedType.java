@@ -16,7 +16,7 @@
 package com.zuiyouliao.cache.constant;
 
 /**
- * 缓存值的序列化类型，支持：json（默认）、jdk（返回值需要实现java.io.Serializable接口）和string
+ * 缓存值的序列化类型，支持：json（默认）、jdk（返回值需要实现java.io.Serializable接口）、string和binary
  *
  * @author lzc
  * @date 2021/04/28 10:24
@@ -34,5 +34,9 @@ public enum SerializedType {
     /**
      * 字符串
      */
-    string;
+    string,
+    /**
+     * 紧凑二进制，无需实现java.io.Serializable接口，字段增删兼容
+     */
+    binary;
 }
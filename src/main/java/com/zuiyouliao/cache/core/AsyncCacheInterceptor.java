@@ -0,0 +1,422 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import com.zuiyouliao.cache.annotation.TtlCacheable;
+import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.memory.MemoryRedisConnectionFactory;
+import com.zuiyouliao.cache.metrics.CacheMetrics;
+import com.zuiyouliao.cache.prop.AsyncProperties;
+import com.zuiyouliao.cache.util.ThreadLocalUtil;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.cache.support.NullValue;
+import org.springframework.core.BridgeMethodResolver;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.util.ByteUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步方法的缓存拦截器
+ * <p>返回CompletableFuture、CompletionStage或Mono的@TtlCacheable方法，缓存的是异步结果而不是返回的对象本身。
+ * 通过lettuce的响应式连接读写redis，本节点同一个key同时只加载一次，其它调用共享加载结果；
+ * memory后端在进程内读写，通过ttlRedisCacheWriter同步完成</p>
+ * <p>Mono在订阅时读取缓存，未命中时在订阅的调用链上调用方法并缓存返回的Mono的结果，订阅者的Context传递给方法返回的Mono；
+ * CompletableFuture、CompletionStage默认异步读取缓存，不阻塞调用线程，未命中时在z-cache.async.executor指定的Executor
+ * （默认ForkJoinPool.commonPool）上调用方法；z-cache.async.caller-thread = true时改为在调用线程上同步读取缓存并调用方法，
+ * 保留事务、安全上下文等线程绑定的状态，但会阻塞调用线程，不能用于netty等事件循环线程</p>
+ * <p>排在Spring的缓存拦截器之前，调用方法时通知TtlRedisCacheResolver让Spring的缓存拦截器不再缓存返回的对象</p>
+ */
+public class AsyncCacheInterceptor implements MethodInterceptor, BeanFactoryAware {
+
+    private static final boolean REACTOR_PRESENT = ClassUtils.isPresent("reactor.core.publisher.Mono",
+            AsyncCacheInterceptor.class.getClassLoader());
+
+    private final Logger logger = LoggerFactory.getLogger(AsyncCacheInterceptor.class);
+
+    /**
+     * 正在加载的key，key为第一个缓存名称对应的redis key
+     */
+    private final ConcurrentMap<String, CompletableFuture<Object>> loadings = new ConcurrentHashMap<>(64);
+
+    private BeanFactory beanFactory;
+
+    /**
+     * 以下依赖在第一次调用时从容器获取：advisor在BeanPostProcessor阶段创建，提前注入会让被依赖的bean无法被代理
+     */
+    private volatile TtlRedisCacheResolver resolver;
+
+    private volatile CacheMetrics cacheMetrics;
+
+    private volatile RedisCacheConfiguration cacheConfiguration;
+
+    private volatile ReactiveRedisTemplate<String, Object> redisTemplate;
+
+    private volatile RedisCacheWriter cacheWriter;
+
+    /**
+     * 未命中时调用方法的线程池
+     */
+    private volatile Executor executor;
+
+    /**
+     * 是否在调用线程上同步读取缓存并调用方法
+     */
+    private volatile boolean callerThread;
+
+    private volatile boolean unsupported;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object target = invocation.getThis();
+        if (target == null || !this.initialize()) {
+            return this.proceed(invocation);
+        }
+        Method method = AopUtils.getMostSpecificMethod(invocation.getMethod(), AopUtils.getTargetClass(target));
+        AsyncCacheOperation operation = resolver.resolveAsync(target, BridgeMethodResolver.findBridgedMethod(method),
+                invocation.getArguments());
+        if (operation == null) {
+            return this.proceed(invocation);
+        }
+        if (REACTOR_PRESENT && ReactiveCacheAdapter.isMono(invocation.getMethod().getReturnType())) {
+            // 每次订阅都可能调用方法，使用调用链的副本
+            return ReactiveCacheAdapter.cache(() -> this.lookup(operation), this::fromStoreValue,
+                    () -> this.loadReactive(operation, this.copy(invocation)));
+        }
+        if (!callerThread) {
+            return this.get(operation, this.copy(invocation));
+        }
+        // 在调用线程上同步读取缓存并调用方法，保留调用方线程绑定的事务、安全上下文等状态
+        Object value = this.lookup(operation).join();
+        if (value != null) {
+            return CompletableFuture.completedFuture(this.fromStoreValue(value));
+        }
+        return this.separate(this.load(operation, invocation));
+    }
+
+    /**
+     * 异步读取各缓存，都未命中时在executor上加载
+     */
+    private CompletableFuture<Object> get(AsyncCacheOperation operation, MethodInvocation invocation) {
+        return this.separate(this.lookup(operation).thenCompose(value -> value != null
+                ? CompletableFuture.completedFuture(this.fromStoreValue(value)) : this.load(operation, invocation)));
+    }
+
+    /**
+     * 依次读取各缓存并记录命中，读取失败时按未命中处理
+     */
+    private CompletableFuture<Object> lookup(AsyncCacheOperation operation) {
+        String cacheName = operation.getCacheNames().get(0);
+        return this.lookup(operation, 0).handle((value, e) -> {
+            if (e != null) {
+                logger.warn("Async cache lookup fail, key={}", operation.getRedisKeys().get(0), e);
+            }
+            if (value != null) {
+                cacheMetrics.recordHit(cacheName);
+            } else {
+                cacheMetrics.recordMiss(cacheName);
+            }
+            return value;
+        });
+    }
+
+    private CompletableFuture<Object> lookup(AsyncCacheOperation operation, int index) {
+        List<String> redisKeys = operation.getRedisKeys();
+        if (cacheWriter != null) {
+            try {
+                for (String redisKey : redisKeys) {
+                    byte[] bytes = cacheWriter.get(operation.getCacheNames().get(0), RedisSerializer.string().serialize(redisKey));
+                    if (bytes != null) {
+                        return CompletableFuture.completedFuture(cacheConfiguration.getValueSerializationPair().read(ByteBuffer.wrap(bytes)));
+                    }
+                }
+                return CompletableFuture.completedFuture(null);
+            } catch (RuntimeException e) {
+                return this.failed(e);
+            }
+        }
+        return redisTemplate.opsForValue().get(redisKeys.get(index)).toFuture().thenCompose(value -> {
+            if (value != null || index + 1 >= redisKeys.size()) {
+                return CompletableFuture.completedFuture(value);
+            }
+            return this.lookup(operation, index + 1);
+        });
+    }
+
+    /**
+     * 本节点同一个key只加载一次，写入redis完成前到达的调用直接共享加载结果
+     */
+    private CompletableFuture<Object> load(AsyncCacheOperation operation, MethodInvocation invocation) {
+        String loadingKey = operation.getRedisKeys().get(0);
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> loading = loadings.putIfAbsent(loadingKey, created);
+        if (loading != null) {
+            return loading;
+        }
+        if (callerThread) {
+            this.invokeAndStore(operation, invocation, loadingKey, created);
+            return created;
+        }
+        try {
+            // 读取结果的回调运行在lettuce的线程上，方法调用切换到配置的线程池，避免阻塞redis的io线程
+            executor.execute(() -> this.invokeAndStore(operation, invocation, loadingKey, created));
+        } catch (RejectedExecutionException e) {
+            loadings.remove(loadingKey, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    /**
+     * Mono未命中时在订阅的调用链上调用方法，返回的Mono完成时缓存结果；其它订阅共享本次加载
+     */
+    private Object loadReactive(AsyncCacheOperation operation, MethodInvocation invocation) {
+        String loadingKey = operation.getRedisKeys().get(0);
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> loading = loadings.putIfAbsent(loadingKey, created);
+        if (loading != null) {
+            return ReactiveCacheAdapter.fromFuture(this.separate(loading));
+        }
+        long start = System.nanoTime();
+        Object returned;
+        try {
+            returned = this.proceed(invocation);
+        } catch (Throwable e) {
+            this.complete(operation, loadingKey, created, start, null, e);
+            return ReactiveCacheAdapter.error(e);
+        }
+        return ReactiveCacheAdapter.observe(returned, (value, e) -> this.complete(operation, loadingKey, created, start, value, e));
+    }
+
+    private void invokeAndStore(AsyncCacheOperation operation, MethodInvocation invocation, String loadingKey,
+                                CompletableFuture<Object> created) {
+        long start = System.nanoTime();
+        CompletableFuture<Object> invoked;
+        try {
+            invoked = this.toFuture(this.proceed(invocation));
+        } catch (Throwable e) {
+            invoked = this.failed(e);
+        }
+        invoked.whenComplete((value, e) -> this.complete(operation, loadingKey, created, start, value, e));
+    }
+
+    /**
+     * 加载完成：失败时移除加载让后续调用重新加载，成功时通知共享的调用并写入缓存，写入完成后移除加载
+     */
+    private void complete(AsyncCacheOperation operation, String loadingKey, CompletableFuture<Object> created,
+                          long start, Object value, Throwable e) {
+        if (created.isDone()) {
+            return;
+        }
+        if (e != null) {
+            loadings.remove(loadingKey, created);
+            created.completeExceptionally(e);
+            return;
+        }
+        cacheMetrics.recordLoad(operation.getCacheNames().get(0), System.nanoTime() - start);
+        created.complete(value);
+        this.store(operation, value).whenComplete((stored, ex) -> {
+            if (ex != null) {
+                logger.warn("Async cache store fail, key={}", loadingKey, ex);
+            }
+            loadings.remove(loadingKey, created);
+        });
+    }
+
+    /**
+     * 返回每次调用独立的CompletableFuture，调用方取消不会影响共享的加载
+     */
+    private CompletableFuture<Object> separate(CompletableFuture<Object> future) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        future.whenComplete((value, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    private CompletableFuture<?> store(AsyncCacheOperation operation, Object value) {
+        Object storeValue = value;
+        if (storeValue == null) {
+            if (!cacheConfiguration.getAllowCacheNullValues()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            storeValue = NullValue.INSTANCE;
+        }
+        try {
+            if (operation.isUnless(value)) {
+                return CompletableFuture.completedFuture(null);
+            }
+        } catch (RuntimeException e) {
+            return this.failed(e);
+        }
+        List<String> redisKeys = operation.getRedisKeys();
+        long ttl = storeValue instanceof NullValue ? CacheMethodMetadata.nullTtl(operation.getTtl(), operation.getNullTtl()) : operation.getTtl();
+        if (cacheWriter != null) {
+            try {
+                byte[] bytes = ByteUtils.getBytes(cacheConfiguration.getValueSerializationPair().write(storeValue));
+                for (String redisKey : redisKeys) {
+                    cacheWriter.put(operation.getCacheNames().get(0), RedisSerializer.string().serialize(redisKey), bytes, ttl > 0
+                            ? Duration.ofMillis(operation.getTtlJitter().apply(TimeUnit.SECONDS.toMillis(ttl))) : Duration.ZERO);
+                }
+                return CompletableFuture.completedFuture(null);
+            } catch (RuntimeException e) {
+                return this.failed(e);
+            }
+        }
+        CompletableFuture<?>[] writes = new CompletableFuture<?>[redisKeys.size()];
+        for (int i = 0; i < redisKeys.size(); i++) {
+            writes[i] = (ttl > 0
+                    ? redisTemplate.opsForValue().set(redisKeys.get(i), storeValue,
+                            Duration.ofMillis(operation.getTtlJitter().apply(TimeUnit.SECONDS.toMillis(ttl))))
+                    : redisTemplate.opsForValue().set(redisKeys.get(i), storeValue)).toFuture();
+        }
+        return CompletableFuture.allOf(writes);
+    }
+
+    private Object fromStoreValue(Object value) {
+        // 同名的提前重算缓存写入的值
+        value = CacheEnvelope.unwrap(value);
+        return value instanceof NullValue ? null : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Object> toFuture(Object returned) {
+        if (returned == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (returned instanceof CompletionStage) {
+            return ((CompletionStage<Object>) returned).toCompletableFuture();
+        }
+        return this.failed(new IllegalStateException("Unsupported async return type: " + returned.getClass().getName()));
+    }
+
+    private CompletableFuture<Object> failed(Throwable e) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    private Object proceed(MethodInvocation invocation) throws Throwable {
+        Object previous = ThreadLocalUtil.put(CacheConstant.ASYNC_INVOKE_KEY, invocation.getMethod());
+        try {
+            return invocation.proceed();
+        } finally {
+            if (previous == null) {
+                ThreadLocalUtil.remove(CacheConstant.ASYNC_INVOKE_KEY);
+            } else {
+                ThreadLocalUtil.put(CacheConstant.ASYNC_INVOKE_KEY, previous);
+            }
+        }
+    }
+
+    private MethodInvocation copy(MethodInvocation invocation) {
+        return invocation instanceof ProxyMethodInvocation ? ((ProxyMethodInvocation) invocation).invocableClone() : invocation;
+    }
+
+    private boolean initialize() {
+        if (redisTemplate != null || cacheWriter != null) {
+            return true;
+        }
+        if (unsupported) {
+            return false;
+        }
+        synchronized (this) {
+            if (redisTemplate == null && cacheWriter == null && !unsupported) {
+                // 与缓存使用同一个连接工厂，memory后端时不是项目的RedisConnectionFactory
+                RedisConnectionFactory connectionFactory = beanFactory.getBean("ttlRedisTemplate", RedisTemplate.class).getConnectionFactory();
+                boolean memory = connectionFactory instanceof MemoryRedisConnectionFactory;
+                if (!memory && !(connectionFactory instanceof ReactiveRedisConnectionFactory)) {
+                    logger.warn("Redis连接不支持响应式访问（需要lettuce），异步方法将不缓存");
+                    unsupported = true;
+                    return false;
+                }
+                resolver = beanFactory.getBean("ttlRedisCacheResolver", TtlRedisCacheResolver.class);
+                cacheMetrics = beanFactory.getBean(CacheMetrics.class);
+                cacheConfiguration = beanFactory.getBean("ttlRedisCacheConfiguration", RedisCacheConfiguration.class);
+                AsyncProperties asyncProperties = beanFactory.getBean(AsyncProperties.class);
+                callerThread = asyncProperties.isCallerThread();
+                executor = StringUtils.hasText(asyncProperties.getExecutor())
+                        ? beanFactory.getBean(asyncProperties.getExecutor(), Executor.class) : ForkJoinPool.commonPool();
+                if (memory) {
+                    cacheWriter = beanFactory.getBean("ttlRedisCacheWriter", RedisCacheWriter.class);
+                    return true;
+                }
+                RedisSerializationContext<String, Object> serializationContext = RedisSerializationContext
+                        .<String, Object>newSerializationContext(RedisSerializer.string())
+                        .value(cacheConfiguration.getValueSerializationPair())
+                        .hashValue(cacheConfiguration.getValueSerializationPair())
+                        .build();
+                redisTemplate = new ReactiveRedisTemplate<>((ReactiveRedisConnectionFactory) connectionFactory, serializationContext);
+            }
+        }
+        return redisTemplate != null || cacheWriter != null;
+    }
+
+    /**
+     * 匹配返回CompletableFuture、CompletionStage或Mono的@TtlCacheable方法
+     */
+    public static class AsyncCachePointcut extends StaticMethodMatcherPointcut {
+
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            Class<?> returnType = method.getReturnType();
+            if (returnType != CompletableFuture.class && returnType != CompletionStage.class
+                    && !(REACTOR_PRESENT && ReactiveCacheAdapter.isMono(returnType))) {
+                return false;
+            }
+            Method specificMethod = AopUtils.getMostSpecificMethod(method, targetClass);
+            return BridgeMethodResolver.findBridgedMethod(specificMethod).getAnnotation(TtlCacheable.class) != null;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+
+import java.util.List;
+
+/**
+ * 异步方法一次调用的缓存信息
+ */
+class AsyncCacheOperation {
+
+    /**
+     * 加上项目名前缀的缓存名称
+     */
+    private final List<String> cacheNames;
+
+    /**
+     * 与cacheNames一一对应的redis key
+     */
+    private final List<String> redisKeys;
+
+    private final long ttl;
+
+    private final TtlJitter ttlJitter;
+
+    private final long nullTtl;
+
+    private final Expression unlessExpression;
+
+    /**
+     * 没有SpEL表达式时为null
+     */
+    private final EvaluationContext evaluationContext;
+
+    AsyncCacheOperation(List<String> cacheNames, List<String> redisKeys, long ttl, TtlJitter ttlJitter, long nullTtl,
+                        Expression unlessExpression, EvaluationContext evaluationContext) {
+        this.cacheNames = cacheNames;
+        this.redisKeys = redisKeys;
+        this.ttl = ttl;
+        this.ttlJitter = ttlJitter;
+        this.nullTtl = nullTtl;
+        this.unlessExpression = unlessExpression;
+        this.evaluationContext = evaluationContext;
+    }
+
+    List<String> getCacheNames() {
+        return cacheNames;
+    }
+
+    List<String> getRedisKeys() {
+        return redisKeys;
+    }
+
+    long getTtl() {
+        return ttl;
+    }
+
+    TtlJitter getTtlJitter() {
+        return ttlJitter;
+    }
+
+    long getNullTtl() {
+        return nullTtl;
+    }
+
+    /**
+     * 按unless判断加载结果是否不缓存
+     */
+    boolean isUnless(Object result) {
+        if (unlessExpression == null) {
+            return false;
+        }
+        evaluationContext.setVariable("result", result);
+        return Boolean.TRUE.equals(unlessExpression.getValue(evaluationContext, Boolean.class));
+    }
+}
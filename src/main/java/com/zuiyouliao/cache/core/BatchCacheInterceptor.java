@@ -0,0 +1,291 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import com.zuiyouliao.cache.metrics.CacheMetrics;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.cache.support.NullValue;
+import org.springframework.core.BridgeMethodResolver;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.data.redis.util.ByteUtils;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量缓存拦截器
+ * <p>@TtlBatchCacheable方法的集合参数每个元素单独缓存：一次MGET读取全部缓存，只用未命中的元素调用方法，
+ * 加载结果（方法没有返回的元素在允许缓存null时缓存为空值）通过一次pipeline写回，读写redis失败时直接调用方法，
+ * 无法解码的元素按未命中处理</p>
+ */
+public class BatchCacheInterceptor implements MethodInterceptor, BeanFactoryAware {
+
+    private final Logger logger = LoggerFactory.getLogger(BatchCacheInterceptor.class);
+
+    private BeanFactory beanFactory;
+
+    /**
+     * 以下依赖在第一次调用时从容器获取：advisor在BeanPostProcessor阶段创建，提前注入会让被依赖的bean无法被代理
+     */
+    private volatile TtlRedisCacheResolver resolver;
+
+    private volatile CacheMetrics cacheMetrics;
+
+    private volatile RedisCacheConfiguration cacheConfiguration;
+
+    private volatile RedisTemplate<String, Object> redisTemplate;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object target = invocation.getThis();
+        if (target == null || !(invocation instanceof ProxyMethodInvocation)) {
+            return invocation.proceed();
+        }
+        this.initialize();
+        Class<?> targetClass = AopUtils.getTargetClass(target);
+        Method method = BridgeMethodResolver.findBridgedMethod(AopUtils.getMostSpecificMethod(invocation.getMethod(), targetClass));
+        BatchCacheOperation operation = resolver.resolveBatch(method, targetClass);
+        if (operation == null) {
+            return invocation.proceed();
+        }
+        Object[] args = invocation.getArguments();
+        Collection<?> argument = (Collection<?>) args[operation.getArgumentIndex()];
+        if (argument == null || argument.isEmpty()) {
+            return invocation.proceed();
+        }
+        EvaluationContext evaluationContext = operation.createEvaluationContext(target, targetClass, args);
+        if (!operation.isConditionPassing(evaluationContext)) {
+            return invocation.proceed();
+        }
+        // 元素key -> 参数元素，重复的元素只读取一次
+        Map<String, Object> elements = new LinkedHashMap<>(argument.size() * 2);
+        for (Object element : argument) {
+            elements.putIfAbsent(operation.elementKey(evaluationContext, element), element);
+        }
+        Map<String, Object> values = this.multiGet(operation, elements);
+        String cacheName = operation.getCacheNames().get(0);
+        Map<String, Object> missing = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : elements.entrySet()) {
+            if (values.containsKey(entry.getKey())) {
+                cacheMetrics.recordHit(cacheName);
+            } else {
+                cacheMetrics.recordMiss(cacheName);
+                missing.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Object> loaded = this.load((ProxyMethodInvocation) invocation, operation, evaluationContext, missing);
+            this.store(operation, missing.keySet(), loaded);
+            values.putAll(loaded);
+        }
+        // 按参数元素的顺序组装返回值，空值不返回
+        Map<Object, Object> result = new LinkedHashMap<>(elements.size() * 2);
+        for (Map.Entry<String, Object> entry : elements.entrySet()) {
+            Object value = values.get(entry.getKey());
+            if (value != null && !(value instanceof NullValue)) {
+                result.put(entry.getValue(), value);
+            }
+        }
+        return operation.newResult(result);
+    }
+
+    /**
+     * 一次MGET读取所有缓存名称下的元素key，先出现的缓存名称优先
+     * @return 元素key -> 缓存值（空值为NullValue），未命中的元素不在其中
+     */
+    private Map<String, Object> multiGet(BatchCacheOperation operation, Map<String, Object> elements) {
+        List<String> keyPrefixes = operation.getKeyPrefixes();
+        byte[][] keys = new byte[keyPrefixes.size() * elements.size()][];
+        int index = 0;
+        for (String keyPrefix : keyPrefixes) {
+            for (String elementKey : elements.keySet()) {
+                keys[index++] = RedisSerializer.string().serialize(keyPrefix + elementKey);
+            }
+        }
+        Map<String, Object> values = new HashMap<>(elements.size() * 2);
+        List<byte[]> bytes;
+        try {
+            bytes = redisTemplate.execute((RedisCallback<List<byte[]>>) connection -> connection.mGet(keys));
+        } catch (RuntimeException e) {
+            logger.warn("Batch cache lookup fail, cacheName={}", operation.getCacheNames().get(0), e);
+            return values;
+        }
+        if (bytes == null) {
+            return values;
+        }
+        RedisSerializationContext.SerializationPair<Object> serializationPair = cacheConfiguration.getValueSerializationPair();
+        index = 0;
+        for (int i = 0; i < keyPrefixes.size(); i++) {
+            for (String elementKey : elements.keySet()) {
+                byte[] value = bytes.get(index++);
+                if (value == null || values.containsKey(elementKey)) {
+                    continue;
+                }
+                Object stored;
+                try {
+                    stored = serializationPair.read(ByteBuffer.wrap(value));
+                } catch (SerializationException e) {
+                    // 旧格式、其它格式或类已变更的值按未命中处理，加载后覆盖
+                    logger.warn("Batch cache value undecodable, key={}", keyPrefixes.get(i) + elementKey, e);
+                    continue;
+                }
+                // 同名的提前重算缓存写入的值
+                values.put(elementKey, stored instanceof CacheEnvelope ? this.toStoreValue(CacheEnvelope.unwrap(stored)) : stored);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 用未命中的元素调用方法
+     * @return 元素key -> 方法返回的值，方法没有返回的元素不在其中
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> load(ProxyMethodInvocation invocation, BatchCacheOperation operation,
+                                     EvaluationContext evaluationContext, Map<String, Object> missing) throws Throwable {
+        Object[] args = invocation.getArguments().clone();
+        args[operation.getArgumentIndex()] = operation.newArgument(missing.values());
+        ProxyMethodInvocation loadInvocation = (ProxyMethodInvocation) invocation.invocableClone(args);
+        long start = System.nanoTime();
+        Object returned = loadInvocation.proceed();
+        cacheMetrics.recordLoad(operation.getCacheNames().get(0), System.nanoTime() - start);
+        if (returned == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Object> loaded = new HashMap<>(missing.size() * 2);
+        if (operation.isMapResult()) {
+            for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) returned).entrySet()) {
+                this.putLoaded(loaded, missing, operation.elementKey(evaluationContext, entry.getKey()), entry.getValue());
+            }
+        } else {
+            EvaluationContext resultContext = new StandardEvaluationContext();
+            for (Object value : (Collection<Object>) returned) {
+                if (value != null) {
+                    Object element = operation.resultKey(resultContext, value);
+                    this.putLoaded(loaded, missing, operation.elementKey(evaluationContext, element), value);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private void putLoaded(Map<String, Object> loaded, Map<String, Object> missing, String elementKey, Object value) {
+        // 只保留本次请求的元素
+        if (missing.containsKey(elementKey)) {
+            loaded.put(elementKey, value);
+        }
+    }
+
+    /**
+     * 一次pipeline写入所有缓存名称，ttl > 0时按注解过期（每个key单独抖动，空值按nullTtl），否则使用缓存配置的过期时间
+     */
+    private void store(BatchCacheOperation operation, Collection<String> elementKeys, Map<String, Object> loaded) {
+        RedisSerializationContext.SerializationPair<Object> serializationPair = cacheConfiguration.getValueSerializationPair();
+        String cacheName = operation.getCacheNames().get(0);
+        Map<String, byte[]> values = new LinkedHashMap<>(elementKeys.size() * 2);
+        Set<String> nullKeys = new HashSet<>();
+        for (String elementKey : elementKeys) {
+            Object value = this.toStoreValue(loaded.get(elementKey));
+            if (value != null) {
+                byte[] bytes = ByteUtils.getBytes(serializationPair.write(value));
+                cacheMetrics.recordValueSize(cacheName, bytes.length);
+                values.put(elementKey, bytes);
+                if (value instanceof NullValue) {
+                    nullKeys.add(elementKey);
+                }
+            }
+        }
+        if (values.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String keyPrefix : operation.getKeyPrefixes()) {
+                    for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+                        connection.set(RedisSerializer.string().serialize(keyPrefix + entry.getKey()), entry.getValue(),
+                                this.expiration(operation, nullKeys.contains(entry.getKey())), RedisStringCommands.SetOption.upsert());
+                    }
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Batch cache store fail, cacheName={}", cacheName, e);
+        }
+    }
+
+    private Object toStoreValue(Object value) {
+        if (value == null) {
+            return cacheConfiguration.getAllowCacheNullValues() ? NullValue.INSTANCE : null;
+        }
+        return value;
+    }
+
+    private Expiration expiration(BatchCacheOperation operation, boolean nullValue) {
+        long ttl = nullValue ? CacheMethodMetadata.nullTtl(operation.getTtl(), operation.getNullTtl()) : operation.getTtl();
+        if (ttl > 0) {
+            return Expiration.milliseconds(operation.getTtlJitter().apply(TimeUnit.SECONDS.toMillis(ttl)));
+        }
+        Duration defaultTtl = cacheConfiguration.getTtl();
+        return defaultTtl.isZero() || defaultTtl.isNegative() ? Expiration.persistent() : Expiration.from(defaultTtl);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void initialize() {
+        if (redisTemplate != null) {
+            return;
+        }
+        synchronized (this) {
+            if (redisTemplate == null) {
+                resolver = beanFactory.getBean("ttlRedisCacheResolver", TtlRedisCacheResolver.class);
+                cacheMetrics = beanFactory.getBean(CacheMetrics.class);
+                cacheConfiguration = beanFactory.getBean("ttlRedisCacheConfiguration", RedisCacheConfiguration.class);
+                redisTemplate = beanFactory.getBean("ttlRedisTemplate", RedisTemplate.class);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import com.zuiyouliao.cache.clone.CacheExpressionRootObject;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量缓存注解（TtlBatchCacheable）方法的缓存信息，每个方法只解析一次
+ */
+class BatchCacheOperation {
+
+    private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+
+    private final Method method;
+
+    /**
+     * 加上项目名前缀的缓存名称
+     */
+    private final List<String> cacheNames;
+
+    /**
+     * 与cacheNames一一对应的redis key前缀
+     */
+    private final List<String> keyPrefixes;
+
+    private final long ttl;
+
+    private final TtlJitter ttlJitter;
+
+    private final long nullTtl;
+
+    /**
+     * 批量参数的位置
+     */
+    private final int argumentIndex;
+
+    /**
+     * 批量参数为Set时用LinkedHashSet传入未命中的元素，否则用ArrayList
+     */
+    private final boolean setArgument;
+
+    private final boolean mapResult;
+
+    private final boolean setResult;
+
+    private final Expression keyExpression;
+
+    private final Expression resultKeyExpression;
+
+    private final Expression conditionExpression;
+
+    BatchCacheOperation(Method method, List<String> cacheNames, List<String> keyPrefixes, long ttl, TtlJitter ttlJitter, long nullTtl, int argumentIndex,
+                        boolean setArgument, boolean mapResult, boolean setResult, Expression keyExpression,
+                        Expression resultKeyExpression, Expression conditionExpression) {
+        this.method = method;
+        this.cacheNames = cacheNames;
+        this.keyPrefixes = keyPrefixes;
+        this.ttl = ttl;
+        this.ttlJitter = ttlJitter;
+        this.nullTtl = nullTtl;
+        this.argumentIndex = argumentIndex;
+        this.setArgument = setArgument;
+        this.mapResult = mapResult;
+        this.setResult = setResult;
+        this.keyExpression = keyExpression;
+        this.resultKeyExpression = resultKeyExpression;
+        this.conditionExpression = conditionExpression;
+    }
+
+    List<String> getCacheNames() {
+        return cacheNames;
+    }
+
+    List<String> getKeyPrefixes() {
+        return keyPrefixes;
+    }
+
+    long getTtl() {
+        return ttl;
+    }
+
+    TtlJitter getTtlJitter() {
+        return ttlJitter;
+    }
+
+    long getNullTtl() {
+        return nullTtl;
+    }
+
+    int getArgumentIndex() {
+        return argumentIndex;
+    }
+
+    boolean isMapResult() {
+        return mapResult;
+    }
+
+    /**
+     * 没有key和condition表达式时返回null
+     */
+    EvaluationContext createEvaluationContext(Object target, Class<?> targetClass, Object[] args) {
+        if (keyExpression == null && conditionExpression == null) {
+            return null;
+        }
+        CacheExpressionRootObject rootObject = new CacheExpressionRootObject(Collections.emptyList(), method, args, target, targetClass);
+        return new MethodBasedEvaluationContext(rootObject, method, args, PARAMETER_NAME_DISCOVERER);
+    }
+
+    boolean isConditionPassing(EvaluationContext evaluationContext) {
+        return conditionExpression == null || !Boolean.FALSE.equals(conditionExpression.getValue(evaluationContext, Boolean.class));
+    }
+
+    String elementKey(EvaluationContext evaluationContext, Object element) {
+        if (keyExpression == null) {
+            return String.valueOf(element);
+        }
+        evaluationContext.setVariable("element", element);
+        return keyExpression.getValue(evaluationContext, String.class);
+    }
+
+    /**
+     * 返回集合的值对应的参数元素
+     */
+    Object resultKey(EvaluationContext evaluationContext, Object value) {
+        return resultKeyExpression.getValue(evaluationContext, value);
+    }
+
+    Collection<Object> newArgument(Collection<Object> elements) {
+        return setArgument ? new LinkedHashSet<>(elements) : new ArrayList<>(elements);
+    }
+
+    Object newResult(Map<Object, Object> values) {
+        if (mapResult) {
+            return values instanceof LinkedHashMap ? values : new LinkedHashMap<>(values);
+        }
+        return setResult ? new LinkedHashSet<>(values.values()) : new ArrayList<>(values.values());
+    }
+}
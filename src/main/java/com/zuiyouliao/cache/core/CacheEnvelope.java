@@ -0,0 +1,82 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import java.io.Serializable;
+
+/**
+ * 缓存值信封，用于提前重算（XFetch）
+ * <p>在缓存值旁边记录加载耗时和过期时间</p>
+ */
+public class CacheEnvelope implements Serializable {
+
+    private static final long serialVersionUID = -2309165811094357406L;
+
+    /**
+     * 缓存的存储值
+     */
+    private Object value;
+
+    /**
+     * 加载耗时（毫秒）
+     */
+    private long delta;
+
+    /**
+     * 过期时间戳（毫秒）
+     */
+    private long expireAt;
+
+    public CacheEnvelope() {
+    }
+
+    public CacheEnvelope(Object value, long delta, long expireAt) {
+        this.value = value;
+        this.delta = delta;
+        this.expireAt = expireAt;
+    }
+
+    /**
+     * 取出信封中的存储值，不是信封时原样返回；同名缓存的其它方法、关闭提前重算后都可能读到信封
+     */
+    public static Object unwrap(Object value) {
+        return value instanceof CacheEnvelope ? ((CacheEnvelope) value).getValue() : value;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public void setValue(Object value) {
+        this.value = value;
+    }
+
+    public long getDelta() {
+        return delta;
+    }
+
+    public void setDelta(long delta) {
+        this.delta = delta;
+    }
+
+    public long getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(long expireAt) {
+        this.expireAt = expireAt;
+    }
+}
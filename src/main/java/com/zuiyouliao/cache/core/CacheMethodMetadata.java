@@ -0,0 +1,217 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import com.zuiyouliao.cache.annotation.TtlCacheable;
+import org.springframework.expression.Expression;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 缓存方法元数据，每个方法只解析一次
+ */
+public class CacheMethodMetadata {
+
+    private final Method method;
+
+    /**
+     * 方法上的注解，非@TtlCacheable时为null
+     */
+    private final TtlCacheable ttlCacheable;
+
+    /**
+     * 加上项目名前缀的缓存名称
+     */
+    private final List<String> cacheNames;
+
+    /**
+     * 与cacheNames一一对应的缓存标识，同一缓存名称下不同ttl、不同选项的缓存分别创建
+     */
+    private final List<String> cacheIds;
+
+    /**
+     * 是否开启本地缓存
+     */
+    private final boolean local;
+
+    /**
+     * 是否开启提前重算（XFetch）
+     */
+    private final boolean earlyRecompute;
+
+    /**
+     * 是否开启击穿保护
+     */
+    private final boolean singleFlight;
+
+    /**
+     * 是否需要自动刷新（已排除设置了unless的情况）
+     */
+    private final boolean autoRefresh;
+
+    /**
+     * 是否使用ttlCacheKeyGenerator生成key
+     */
+    private final boolean useKeyGenerator;
+
+    /**
+     * 已解析的key表达式，为null时使用方法参数作为key
+     */
+    private final Expression keyExpression;
+
+    /**
+     * 已解析的condition表达式，为null时表示无条件
+     */
+    private final Expression conditionExpression;
+
+    /**
+     * 已解析的unless表达式，为null时表示无条件；只有异步方法由本项目计算，同步方法由Spring计算
+     */
+    private final Expression unlessExpression;
+
+    /**
+     * ttl抖动，ttl小于等于0时不抖动
+     */
+    private final TtlJitter ttlJitter;
+
+    /**
+     * 空值的存活时间（秒），小于等于0时与ttl相同
+     */
+    private final long nullTtl;
+
+    /**
+     * 开启emptyAsNull时命中空值返回的空集合（空Map、空数组），为null时表示未开启
+     */
+    private final Object emptyValue;
+
+    public CacheMethodMetadata(Method method, TtlCacheable ttlCacheable, List<String> cacheNames, boolean local,
+                               boolean earlyRecompute, boolean singleFlight, boolean autoRefresh, boolean useKeyGenerator, Expression keyExpression,
+                               Expression conditionExpression, Expression unlessExpression, TtlJitter ttlJitter,
+                               long nullTtl, Object emptyValue) {
+        this.method = method;
+        this.ttlCacheable = ttlCacheable;
+        this.cacheNames = cacheNames;
+        this.local = local;
+        this.earlyRecompute = earlyRecompute;
+        this.singleFlight = singleFlight;
+        this.autoRefresh = autoRefresh;
+        this.useKeyGenerator = useKeyGenerator;
+        this.keyExpression = keyExpression;
+        this.conditionExpression = conditionExpression;
+        this.unlessExpression = unlessExpression;
+        this.ttlJitter = ttlJitter;
+        this.nullTtl = nullTtl;
+        this.emptyValue = emptyValue;
+        List<String> ids = new ArrayList<>(cacheNames.size());
+        for (String cacheName : cacheNames) {
+            ids.add(cacheName + "-" + this.getTtl() + (local ? "-local" : "") + (earlyRecompute ? "-xfetch" : "")
+                    + (singleFlight ? "-sf" : "") + (ttlJitter.isEnabled() ? "-j" + ttlJitter : "")
+                    + (nullTtl > 0 ? "-null" + nullTtl : "") + (emptyValue != null ? "-empty-" + emptyValue.getClass().getName() : ""));
+        }
+        this.cacheIds = Collections.unmodifiableList(ids);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public TtlCacheable getTtlCacheable() {
+        return ttlCacheable;
+    }
+
+    public List<String> getCacheNames() {
+        return cacheNames;
+    }
+
+    public List<String> getCacheIds() {
+        return cacheIds;
+    }
+
+    public boolean isLocal() {
+        return local;
+    }
+
+    public boolean isEarlyRecompute() {
+        return earlyRecompute;
+    }
+
+    public boolean isSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * 是否需要创建TtlRedisCache
+     */
+    public boolean isTtlRedisCache() {
+        return local || earlyRecompute || singleFlight || ttlJitter.isEnabled() || this.isNegativeCaching();
+    }
+
+    public boolean isAutoRefresh() {
+        return autoRefresh;
+    }
+
+    public boolean isUseKeyGenerator() {
+        return useKeyGenerator;
+    }
+
+    public Expression getKeyExpression() {
+        return keyExpression;
+    }
+
+    public Expression getConditionExpression() {
+        return conditionExpression;
+    }
+
+    public Expression getUnlessExpression() {
+        return unlessExpression;
+    }
+
+    /**
+     * 是否单独处理空值（nullTtl或emptyAsNull）
+     */
+    public boolean isNegativeCaching() {
+        return nullTtl > 0 || emptyValue != null;
+    }
+
+    public long getNullTtl() {
+        return nullTtl;
+    }
+
+    /**
+     * 空值的存活时间（秒）：nullTtl > 0时取nullTtl与ttl的较小值，否则与ttl相同
+     * @param ttl 注解上的ttl，小于等于0表示不过期
+     * @param nullTtl 注解上的nullTtl
+     * @return long
+     */
+    public static long nullTtl(long ttl, long nullTtl) {
+        return nullTtl > 0 && (ttl <= 0 || nullTtl < ttl) ? nullTtl : ttl;
+    }
+
+    public Object getEmptyValue() {
+        return emptyValue;
+    }
+
+    public TtlJitter getTtlJitter() {
+        return ttlJitter;
+    }
+
+    public long getTtl() {
+        return ttlCacheable != null ? ttlCacheable.ttl() : -1;
+    }
+}
@@ -0,0 +1,464 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 方法参数的128位哈希（MurmurHash3 x64_128）
+ * <p>参数按类型规范编码成64位字的序列后流式哈希，不生成中间字节数组：基本类型和字符串按值编码，
+ * 数组和List按顺序编码，Set和Map与迭代顺序无关，其它对象按类全名和字段（按字段名排序）递归编码。
+ * 编码只依赖参数的值，不依赖JVM，各节点对相同参数得到相同的哈希</p>
+ * <p>对象、集合和对象数组按首次访问的顺序编号，再次遇到同一个实例（包括循环引用）时只编码其编号，每个实例只遍历一次；
+ * Set和Map的每个元素单独编号，元素之间不共享编号，结果仍与迭代顺序无关。嵌套超过最大深度时抛出IllegalArgumentException</p>
+ * <p>非线程安全，每个线程复用一个实例</p>
+ */
+final class Murmur3KeyHasher {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /**
+     * 递归编码的最大深度，循环引用已按编号编码，超过时说明参数嵌套过深
+     */
+    private static final int MAX_DEPTH = 64;
+
+    private static final long NULL = 0;
+    private static final long STRING = 1;
+    private static final long BOOLEAN = 2;
+    private static final long BYTE = 3;
+    private static final long SHORT = 4;
+    private static final long CHAR = 5;
+    private static final long INT = 6;
+    private static final long LONG = 7;
+    private static final long FLOAT = 8;
+    private static final long DOUBLE = 9;
+    private static final long ENUM = 10;
+    private static final long ARRAY = 11;
+    private static final long LIST = 12;
+    private static final long SET = 13;
+    private static final long MAP = 14;
+    private static final long DATE = 15;
+    private static final long TEXT = 16;
+    private static final long OBJECT = 17;
+    private static final long CLASS = 19;
+    private static final long REFERENCE = 20;
+
+    /**
+     * 类名的64位指纹和可编码的字段，每个类只解析一次
+     */
+    private static final ClassValue<ClassInfo> CLASS_INFOS = new ClassValue<ClassInfo>() {
+        @Override
+        protected ClassInfo computeValue(Class<?> type) {
+            return new ClassInfo(type);
+        }
+    };
+
+    private long h1;
+
+    private long h2;
+
+    /**
+     * 待处理的半个块
+     */
+    private long pending;
+
+    private boolean hasPending;
+
+    private long words;
+
+    /**
+     * 已访问的实例 -> 编号，与Set、Map元素的哈希器共享
+     */
+    private final IdentityHashMap<Object, Integer> visited;
+
+    /**
+     * 按编号排列的已访问实例，用于移除Set、Map元素内访问的实例
+     */
+    private final List<Object> visits;
+
+    Murmur3KeyHasher() {
+        this(new IdentityHashMap<>(), new ArrayList<>());
+    }
+
+    private Murmur3KeyHasher(IdentityHashMap<Object, Integer> visited, List<Object> visits) {
+        this.visited = visited;
+        this.visits = visits;
+    }
+
+    void reset() {
+        this.resetHash();
+        this.forget(0);
+    }
+
+    private void resetHash() {
+        h1 = 0;
+        h2 = 0;
+        pending = 0;
+        hasPending = false;
+        words = 0;
+    }
+
+    long getH1() {
+        return h1;
+    }
+
+    long getH2() {
+        return h2;
+    }
+
+    void putArgs(Object[] args) {
+        this.putWord(args.length);
+        try {
+            for (Object arg : args) {
+                this.putObject(arg, 0);
+            }
+        } finally {
+            // 线程复用哈希器，不持有参数的引用
+            this.forget(0);
+        }
+    }
+
+    /**
+     * 结束哈希，结果通过getH1、getH2读取
+     */
+    void finish() {
+        long k1 = hasPending ? pending : 0;
+        if (hasPending) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+        }
+        long length = words * 8;
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+    }
+
+    private void putObject(Object value, int depth) {
+        if (value == null) {
+            this.putWord(NULL);
+            return;
+        }
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Cache key argument nested deeper than " + MAX_DEPTH
+                    + " levels: " + value.getClass().getName());
+        }
+        if (value instanceof String) {
+            this.putWord(STRING);
+            this.putString((String) value);
+        } else if (value instanceof Number) {
+            this.putNumber((Number) value, depth);
+        } else if (value instanceof Boolean) {
+            this.putWord(BOOLEAN);
+            this.putWord((Boolean) value ? 1 : 0);
+        } else if (value instanceof Character) {
+            this.putWord(CHAR);
+            this.putWord((Character) value);
+        } else if (value instanceof Enum) {
+            this.putWord(ENUM);
+            this.putWord(CLASS_INFOS.get(((Enum<?>) value).getDeclaringClass()).fingerprint);
+            this.putString(((Enum<?>) value).name());
+        } else if (value.getClass().isArray()) {
+            if (!(value instanceof Object[]) || !this.putReference(value)) {
+                this.putArray(value, depth);
+            }
+        } else if (value instanceof Set) {
+            if (!this.putReference(value)) {
+                this.putUnordered(SET, (Set<?>) value, depth);
+            }
+        } else if (value instanceof Map) {
+            if (!this.putReference(value)) {
+                this.putUnordered(MAP, ((Map<?, ?>) value).entrySet(), depth);
+            }
+        } else if (value instanceof Collection) {
+            if (this.putReference(value)) {
+                return;
+            }
+            this.putWord(LIST);
+            this.putWord(((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value) {
+                this.putObject(element, depth + 1);
+            }
+        } else if (value instanceof Map.Entry) {
+            this.putObject(((Map.Entry<?, ?>) value).getKey(), depth + 1);
+            this.putObject(((Map.Entry<?, ?>) value).getValue(), depth + 1);
+        } else if (value instanceof Date) {
+            this.putWord(DATE);
+            this.putWord(((Date) value).getTime());
+        } else if (value instanceof Class) {
+            this.putWord(CLASS);
+            this.putWord(CLASS_INFOS.get((Class<?>) value).fingerprint);
+        } else {
+            this.putBean(value, depth);
+        }
+    }
+
+    private void putNumber(Number value, int depth) {
+        if (value instanceof Integer) {
+            this.putWord(INT);
+            this.putWord(value.intValue());
+        } else if (value instanceof Long) {
+            this.putWord(LONG);
+            this.putWord(value.longValue());
+        } else if (value instanceof Double) {
+            this.putWord(DOUBLE);
+            this.putWord(Double.doubleToLongBits(value.doubleValue()));
+        } else if (value instanceof Float) {
+            this.putWord(FLOAT);
+            this.putWord(Float.floatToIntBits(value.floatValue()));
+        } else if (value instanceof Short) {
+            this.putWord(SHORT);
+            this.putWord(value.shortValue());
+        } else if (value instanceof Byte) {
+            this.putWord(BYTE);
+            this.putWord(value.byteValue());
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            this.putText(value);
+        } else {
+            this.putBean(value, depth);
+        }
+    }
+
+    private void putArray(Object array, int depth) {
+        int length = Array.getLength(array);
+        this.putWord(ARRAY);
+        this.putWord(CLASS_INFOS.get(array.getClass()).fingerprint);
+        this.putWord(length);
+        if (array instanceof Object[]) {
+            for (Object element : (Object[]) array) {
+                this.putObject(element, depth + 1);
+            }
+        } else if (array instanceof long[]) {
+            for (long element : (long[]) array) {
+                this.putWord(element);
+            }
+        } else if (array instanceof int[]) {
+            for (int element : (int[]) array) {
+                this.putWord(element);
+            }
+        } else if (array instanceof char[]) {
+            for (char element : (char[]) array) {
+                this.putWord(element);
+            }
+        } else if (array instanceof byte[]) {
+            for (byte element : (byte[]) array) {
+                this.putWord(element);
+            }
+        } else if (array instanceof double[]) {
+            for (double element : (double[]) array) {
+                this.putWord(Double.doubleToLongBits(element));
+            }
+        } else {
+            // boolean[]、short[]、float[]
+            for (int i = 0; i < length; i++) {
+                this.putObject(Array.get(array, i), depth + 1);
+            }
+        }
+    }
+
+    /**
+     * 每个元素单独哈希后相加，结果与迭代顺序无关；元素内首次访问的实例在该元素结束后移除，编号不受其它元素影响
+     */
+    private void putUnordered(long tag, Collection<?> elements, int depth) {
+        long sum1 = 0;
+        long sum2 = 0;
+        Murmur3KeyHasher hasher = new Murmur3KeyHasher(visited, visits);
+        int mark = visits.size();
+        for (Object element : elements) {
+            hasher.resetHash();
+            hasher.putObject(element, depth + 1);
+            hasher.finish();
+            this.forget(mark);
+            sum1 += hasher.h1;
+            sum2 += hasher.h2;
+        }
+        this.putWord(tag);
+        this.putWord(elements.size());
+        this.putWord(sum1);
+        this.putWord(sum2);
+    }
+
+    private void putBean(Object value, int depth) {
+        ClassInfo info = CLASS_INFOS.get(value.getClass());
+        if (info.fields == null) {
+            // jdk类型（如LocalDate、UUID）的字段不可访问，按toString编码
+            this.putText(value);
+            return;
+        }
+        if (this.putReference(value)) {
+            return;
+        }
+        this.putWord(OBJECT);
+        this.putWord(info.fingerprint);
+        try {
+            for (Field field : info.fields) {
+                this.putObject(field.get(value), depth + 1);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 已访问过的实例编码为编号并返回true，否则登记编号并返回false
+     */
+    private boolean putReference(Object value) {
+        Integer index = visited.get(value);
+        if (index != null) {
+            this.putWord(REFERENCE);
+            this.putWord(index);
+            return true;
+        }
+        visited.put(value, visits.size());
+        visits.add(value);
+        return false;
+    }
+
+    /**
+     * 移除编号从mark开始的实例
+     */
+    private void forget(int mark) {
+        for (int i = visits.size() - 1; i >= mark; i--) {
+            visited.remove(visits.remove(i));
+        }
+    }
+
+    private void putText(Object value) {
+        this.putWord(TEXT);
+        this.putWord(CLASS_INFOS.get(value.getClass()).fingerprint);
+        this.putString(value.toString());
+    }
+
+    /**
+     * 长度 + 每4个char一个字
+     */
+    private void putString(String value) {
+        int length = value.length();
+        this.putWord(length);
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            this.putWord((long) value.charAt(i) | (long) value.charAt(i + 1) << 16
+                    | (long) value.charAt(i + 2) << 32 | (long) value.charAt(i + 3) << 48);
+        }
+        if (i < length) {
+            long word = 0;
+            for (int shift = 0; i < length; i++, shift += 16) {
+                word |= (long) value.charAt(i) << shift;
+            }
+            this.putWord(word);
+        }
+    }
+
+    private void putWord(long word) {
+        words++;
+        if (!hasPending) {
+            pending = word;
+            hasPending = true;
+            return;
+        }
+        hasPending = false;
+        long k1 = pending;
+        long k2 = word;
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        h1 ^= k1;
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        h2 ^= k2;
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static final class ClassInfo {
+
+        private final long fingerprint;
+
+        /**
+         * jdk类型为null
+         */
+        private final Field[] fields;
+
+        private ClassInfo(Class<?> clazz) {
+            Murmur3KeyHasher hasher = new Murmur3KeyHasher();
+            hasher.putString(clazz.getName());
+            hasher.finish();
+            this.fingerprint = hasher.h1;
+            this.fields = resolveFields(clazz);
+        }
+
+        private static Field[] resolveFields(Class<?> clazz) {
+            String name = clazz.getName();
+            if (clazz.isArray() || name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.")) {
+                return null;
+            }
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+                List<Field> declared = new ArrayList<>();
+                for (Field field : current.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                    } catch (RuntimeException e) {
+                        // 模块限制等原因无法访问字段
+                        return null;
+                    }
+                    declared.add(field);
+                }
+                declared.sort(Comparator.comparing(Field::getName));
+                fields.addAll(declared);
+            }
+            return fields.toArray(new Field[0]);
+        }
+    }
+}
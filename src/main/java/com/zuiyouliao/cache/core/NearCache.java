@@ -0,0 +1,85 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+/**
+ * 本地（L1）缓存，位于RedisCache之前
+ * <p>key为完整的redis key，value为RedisCache的存储值（可能是NullValue）</p>
+ */
+public class NearCache {
+
+    private final String name;
+
+    private final Cache<String, Object> store;
+
+    private final NearCacheRegistry registry;
+
+    NearCache(String name, Cache<String, Object> store, NearCacheRegistry registry) {
+        this.name = name;
+        this.store = store;
+        this.registry = registry;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Object get(String cacheKey) {
+        return store.getIfPresent(cacheKey);
+    }
+
+    public void put(String cacheKey, Object storeValue) {
+        store.put(cacheKey, storeValue);
+    }
+
+    /**
+     * 仅失效本节点
+     * @param cacheKey 完整的redis key
+     */
+    void invalidate(String cacheKey) {
+        store.invalidate(cacheKey);
+    }
+
+    /**
+     * 仅清空本节点
+     */
+    void invalidateAll() {
+        store.invalidateAll();
+    }
+
+    /**
+     * 失效本节点并通知其它节点
+     * @param cacheKey 完整的redis key
+     */
+    public void evict(String cacheKey) {
+        store.invalidate(cacheKey);
+        registry.publishEvict(cacheKey);
+    }
+
+    /**
+     * 清空本节点并通知其它节点
+     */
+    public void clear() {
+        store.invalidateAll();
+        registry.publishClear(name);
+    }
+
+    public long size() {
+        return store.estimatedSize();
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.prop.LocalProperties;
+import com.zuiyouliao.cache.prop.ProjectProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 本地缓存注册中心
+ * <p>负责创建本地缓存，并通过redis的pub/sub在节点之间同步失效</p>
+ */
+public class NearCacheRegistry implements MessageListener {
+
+    /**
+     * 失效单个key
+     */
+    private static final char EVICT = 'E';
+
+    /**
+     * 清空整个缓存
+     */
+    private static final char CLEAR = 'C';
+
+    private static final char SEPARATOR = '\n';
+
+    /**
+     * 节点标识，忽略自己发出的消息
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<String, NearCache> nearCaches = new ConcurrentHashMap<>(16);
+
+    private final Logger logger = LoggerFactory.getLogger(NearCacheRegistry.class);
+
+    @Resource(name = "ttlRedisTemplate")
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private LocalProperties localProperties;
+
+    @Resource
+    private ProjectProperties projectProperties;
+
+    public boolean isEnabled() {
+        return localProperties.isEnabled();
+    }
+
+    /**
+     * 创建本地缓存
+     * @param id 缓存标识，同一标识的本地缓存会被替换
+     * @param name 缓存名称
+     * @param ttl 注解上的ttl（秒），小于等于0表示无过期时间
+     * @return com.zuiyouliao.cache.core.NearCache
+     */
+    public NearCache createNearCache(String id, String name, long ttl) {
+        long localTtl = localProperties.getTtl();
+        if (ttl > 0 && (localTtl <= 0 || ttl < localTtl)) {
+            localTtl = ttl;
+        }
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(localProperties.getMaximumSize());
+        if (localTtl > 0) {
+            builder.expireAfterWrite(Duration.ofSeconds(localTtl));
+        }
+        NearCache nearCache = new NearCache(name, builder.build(), this);
+        nearCaches.put(id, nearCache);
+        return nearCache;
+    }
+
+    /**
+     * 失效本节点的key并通知其它节点，用于绕过RedisCache直接写redis的场景
+     * @param cacheKey 完整的redis key
+     */
+    public void evict(String cacheKey) {
+        if (!this.isEnabled()) {
+            return;
+        }
+        this.invalidateLocal(cacheKey);
+        this.publishEvict(cacheKey);
+    }
+
+    void publishEvict(String cacheKey) {
+        this.publish(EVICT, cacheKey);
+    }
+
+    void publishClear(String name) {
+        this.publish(CLEAR, name);
+    }
+
+    private void invalidateLocal(String cacheKey) {
+        // 本地缓存的数量很少，直接遍历
+        for (NearCache nearCache : nearCaches.values()) {
+            nearCache.invalidate(cacheKey);
+        }
+    }
+
+    private void clearLocal(String name) {
+        for (NearCache nearCache : nearCaches.values()) {
+            if (Objects.equals(name, nearCache.getName())) {
+                nearCache.invalidateAll();
+            }
+        }
+    }
+
+    private void publish(char type, String payload) {
+        byte[] channel = this.channel().getBytes(StandardCharsets.UTF_8);
+        byte[] message = (nodeId + SEPARATOR + type + SEPARATOR + payload).getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(channel, message));
+        } catch (Exception e) {
+            // 通知失败不影响缓存读写，其它节点的本地缓存最迟在本地ttl后过期
+            logger.warn("NearCache publish fail, payload={}", payload, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int first = body.indexOf(SEPARATOR);
+        if (first < 0 || body.length() < first + 3) {
+            return;
+        }
+        if (Objects.equals(nodeId, body.substring(0, first))) {
+            return;
+        }
+        char type = body.charAt(first + 1);
+        String payload = body.substring(first + 3);
+        if (type == EVICT) {
+            this.invalidateLocal(payload);
+        } else if (type == CLEAR) {
+            this.clearLocal(payload);
+        }
+    }
+
+    public String channel() {
+        return CacheConstant.NEAR_CACHE_CHANNEL +
+                (Objects.equals("", projectProperties.getName()) ? "" : "::" + projectProperties.getName());
+    }
+
+    /**
+     * 获取所有本地缓存，key为缓存标识
+     * @return java.util.Map&lt;java.lang.String,com.zuiyouliao.cache.core.NearCache&gt;
+     */
+    public Map<String, NearCache> getNearCaches() {
+        return nearCaches;
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 异步方法缓存中与Mono相关的部分，只在项目引入reactor时加载
+ */
+final class ReactiveCacheAdapter {
+
+    private ReactiveCacheAdapter() {
+    }
+
+    static boolean isMono(Class<?> type) {
+        return type == Mono.class;
+    }
+
+    static boolean isMono(Object value) {
+        return value instanceof Mono;
+    }
+
+    /**
+     * 订阅时才开始读取缓存，每次订阅单独读取；lookup的结果为null时未命中，在订阅的调用链上调用loader返回的Mono，
+     * 命中的值由fromStoreValue转换，转换为null时为空的Mono
+     */
+    @SuppressWarnings("unchecked")
+    static Mono<Object> cache(Supplier<CompletableFuture<Object>> lookup, Function<Object, Object> fromStoreValue,
+                              Supplier<Object> loader) {
+        return Mono.defer(() -> Mono.fromFuture(lookup.get()))
+                .map(value -> Optional.ofNullable(fromStoreValue.apply(value)))
+                .switchIfEmpty(Mono.defer(() -> ((Mono<Object>) loader.get()).map(Optional::of)))
+                .flatMap(value -> Mono.justOrEmpty(value));
+    }
+
+    /**
+     * 方法返回的Mono结束（包括取消）时回调done，取消按失败处理
+     */
+    @SuppressWarnings("unchecked")
+    static Mono<Object> observe(Object returned, BiConsumer<Object, Throwable> done) {
+        Mono<Object> mono = returned == null ? Mono.empty() : (Mono<Object>) returned;
+        return mono.doOnSuccess(value -> done.accept(value, null))
+                .doOnError(e -> done.accept(null, e))
+                .doOnCancel(() -> done.accept(null, new CancellationException("Async cache load cancelled")));
+    }
+
+    static Mono<Object> fromFuture(CompletableFuture<Object> future) {
+        return Mono.fromFuture(future);
+    }
+
+    static Mono<Object> error(Throwable e) {
+        return Mono.error(e);
+    }
+}
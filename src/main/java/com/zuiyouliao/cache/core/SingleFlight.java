@@ -0,0 +1,279 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.memory.MemoryRedisConnectionFactory;
+import com.zuiyouliao.cache.prop.SingleFlightProperties;
+import com.zuiyouliao.cache.util.ThreadLocalUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 缓存击穿保护
+ * <p>本节点内同一个key的并发未命中共用一个加载中的Future，只有一个线程加载；
+ * 节点之间通过redis的短期租约，只有一个节点加载，其它节点轮询等待缓存值。
+ * 等待均有上限，超时或租约持有者异常时自行加载，不会一直阻塞调用方</p>
+ */
+public class SingleFlight {
+
+    /**
+     * 只删除自己持有的租约
+     */
+    static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0", Long.class);
+
+    static {
+        MemoryRedisConnectionFactory.registerScript(RELEASE_SCRIPT, (connection, keys, args) ->
+                Arrays.equals(connection.get(keys.get(0)), args.get(0)) ? connection.del(keys.get(0)) : 0L);
+    }
+
+    /**
+     * 单个线程最多记录的加载中key
+     */
+    private static final int MAX_OWNED_FLIGHTS = 16;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final AtomicLong tokenSequence = new AtomicLong();
+
+    /**
+     * 本节点正在加载的key
+     */
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>(64);
+
+    private final AtomicLong localWaits = new AtomicLong();
+
+    private final AtomicLong remoteWaits = new AtomicLong();
+
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    private final Logger logger = LoggerFactory.getLogger(SingleFlight.class);
+
+    @Resource(name = "ttlRedisTemplate")
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private SingleFlightProperties singleFlightProperties;
+
+    /**
+     * 未命中时调用：等待其它线程或节点加载完成并返回缓存值；返回null时由当前线程加载，
+     * 加载后由put调用complete，方法异常或unless不写入时由SingleFlightInterceptor释放
+     * @param cacheKey 完整的redis key
+     * @param reader 重新读取缓存值
+     * @return java.lang.Object
+     */
+    public Object awaitOrAcquire(String cacheKey, Supplier<Object> reader) {
+        long now = System.currentTimeMillis();
+        long deadline = now + singleFlightProperties.getMaxWait();
+        Flight flight = new Flight(now);
+        Flight existing = flights.putIfAbsent(cacheKey, flight);
+        if (existing != null && now - existing.createdAt > singleFlightProperties.getLeaseTime()) {
+            // 加载线程异常退出且未清理，接管
+            flights.remove(cacheKey, existing);
+            existing = flights.putIfAbsent(cacheKey, flight);
+        }
+        if (existing != null) {
+            localWaits.incrementAndGet();
+            return this.awaitLocal(cacheKey, existing, deadline, reader);
+        }
+        this.own(cacheKey, flight);
+        String leaseToken = nodeId + ":" + tokenSequence.incrementAndGet();
+        if (this.tryLease(cacheKey, leaseToken)) {
+            flight.leaseToken = leaseToken;
+            return null;
+        }
+        // 其它节点正在加载，轮询等待
+        remoteWaits.incrementAndGet();
+        while (System.currentTimeMillis() < deadline) {
+            if (!this.sleep(singleFlightProperties.getPollInterval())) {
+                break;
+            }
+            Object value = reader.get();
+            if (value != null) {
+                this.complete(cacheKey);
+                return value;
+            }
+            if (this.tryLease(cacheKey, leaseToken)) {
+                flight.leaseToken = leaseToken;
+                return null;
+            }
+        }
+        fallbacks.incrementAndGet();
+        return null;
+    }
+
+    private Object awaitLocal(String cacheKey, Flight existing, long deadline, Supplier<Object> reader) {
+        try {
+            existing.future.get(Math.max(deadline - System.currentTimeMillis(), 0L), TimeUnit.MILLISECONDS);
+            return reader.get();
+        } catch (TimeoutException e) {
+            fallbacks.incrementAndGet();
+            flights.remove(cacheKey, existing);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // 不会发生，加载结果不通过Future传递
+        }
+        return null;
+    }
+
+    /**
+     * 当前线程加载结束（无论成功与否），释放租约并唤醒本节点等待的线程
+     * @param cacheKey 完整的redis key
+     */
+    @SuppressWarnings("unchecked")
+    public void complete(String cacheKey) {
+        Map<String, Flight> owned = (Map<String, Flight>) ThreadLocalUtil.get(CacheConstant.SINGLE_FLIGHTS);
+        Flight flight = owned == null ? null : owned.remove(cacheKey);
+        if (flight == null) {
+            return;
+        }
+        if (flight.leaseToken != null) {
+            this.releaseLease(cacheKey, flight.leaseToken);
+        }
+        flights.remove(cacheKey, flight);
+        flight.future.complete(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void own(String cacheKey, Flight flight) {
+        Map<String, Flight> owned = (Map<String, Flight>) ThreadLocalUtil.get(CacheConstant.SINGLE_FLIGHTS);
+        if (owned == null) {
+            owned = new HashMap<>(4);
+            ThreadLocalUtil.put(CacheConstant.SINGLE_FLIGHTS, owned);
+        } else if (owned.size() >= MAX_OWNED_FLIGHTS) {
+            // 正常由SingleFlightInterceptor释放，未经拦截器的调用残留的记录由租约过期和等待超时兜底
+            owned.clear();
+        }
+        owned.put(cacheKey, flight);
+    }
+
+    /**
+     * 当前线程持有的加载中key，没有时返回空集合
+     */
+    @SuppressWarnings("unchecked")
+    Set<String> ownedKeys() {
+        Map<String, Flight> owned = (Map<String, Flight>) ThreadLocalUtil.get(CacheConstant.SINGLE_FLIGHTS);
+        return owned == null || owned.isEmpty() ? Collections.emptySet() : new HashSet<>(owned.keySet());
+    }
+
+    /**
+     * 释放当前线程持有、且不在retained中的加载中key（retained为外层调用持有的）
+     */
+    @SuppressWarnings("unchecked")
+    void completeOwned(Set<String> retained) {
+        Map<String, Flight> owned = (Map<String, Flight>) ThreadLocalUtil.get(CacheConstant.SINGLE_FLIGHTS);
+        if (owned == null || owned.size() <= retained.size()) {
+            return;
+        }
+        for (String cacheKey : new ArrayList<>(owned.keySet())) {
+            if (!retained.contains(cacheKey)) {
+                this.complete(cacheKey);
+            }
+        }
+    }
+
+    private boolean tryLease(String cacheKey, String leaseToken) {
+        byte[] leaseKey = (cacheKey + CacheConstant.LEASE_SUFFIX).getBytes(StandardCharsets.UTF_8);
+        byte[] token = leaseToken.getBytes(StandardCharsets.UTF_8);
+        try {
+            Boolean acquired = redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.set(leaseKey, token,
+                    Expiration.milliseconds(singleFlightProperties.getLeaseTime()), RedisStringCommands.SetOption.SET_IF_ABSENT));
+            return Boolean.TRUE.equals(acquired);
+        } catch (Exception e) {
+            // redis异常时自行加载
+            logger.warn("SingleFlight lease fail, key={}", cacheKey, e);
+            return true;
+        }
+    }
+
+    private void releaseLease(String cacheKey, String leaseToken) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, RedisSerializer.string(), new GenericToStringSerializer<>(Long.class),
+                    Collections.singletonList(cacheKey + CacheConstant.LEASE_SUFFIX), leaseToken);
+        } catch (Exception e) {
+            // 租约到期后自动释放
+            logger.warn("SingleFlight release fail, key={}", cacheKey, e);
+        }
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(Math.max(millis, 1L));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public int getInFlightSize() {
+        return flights.size();
+    }
+
+    public long getLocalWaits() {
+        return localWaits.get();
+    }
+
+    public long getRemoteWaits() {
+        return remoteWaits.get();
+    }
+
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+
+    private static class Flight {
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private final long createdAt;
+
+        private volatile String leaseToken;
+
+        Flight(long createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import com.zuiyouliao.cache.annotation.TtlCacheable;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.core.BridgeMethodResolver;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+
+/**
+ * 击穿保护拦截器
+ * <p>排在Spring的缓存拦截器之前，方法调用结束后（包括方法异常、unless不写入缓存）释放本次调用中获得的加载权，
+ * 不依赖put释放，避免其它调用等待到超时</p>
+ */
+public class SingleFlightInterceptor implements MethodInterceptor, BeanFactoryAware {
+
+    private BeanFactory beanFactory;
+
+    /**
+     * 在第一次调用时从容器获取：advisor在BeanPostProcessor阶段创建，提前注入会让被依赖的bean无法被代理
+     */
+    private volatile SingleFlight singleFlight;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (singleFlight == null) {
+            singleFlight = beanFactory.getBean("singleFlight", SingleFlight.class);
+        }
+        // 嵌套调用时只释放本次调用获得的，外层调用持有的由外层释放
+        Set<String> retained = singleFlight.ownedKeys();
+        try {
+            return invocation.proceed();
+        } finally {
+            singleFlight.completeOwned(retained);
+        }
+    }
+
+    /**
+     * 匹配开启了击穿保护的@TtlCacheable方法
+     */
+    public static class SingleFlightPointcut extends StaticMethodMatcherPointcut {
+
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            Method specificMethod = AopUtils.getMostSpecificMethod(method, targetClass);
+            TtlCacheable ttlCacheable = BridgeMethodResolver.findBridgedMethod(specificMethod).getAnnotation(TtlCacheable.class);
+            return ttlCacheable != null && ttlCacheable.singleFlight();
+        }
+    }
+}
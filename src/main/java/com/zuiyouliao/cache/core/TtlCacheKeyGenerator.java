@@ -15,21 +15,53 @@
  */
 package com.zuiyouliao.cache.core;
 
+import com.zuiyouliao.cache.constant.KeyGeneratorType;
 import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.util.ClassUtils;
 
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * 缓存key生成器
+ * <p>murmur3方式生成 类全名-方法名-参数的128位哈希（32位十六进制），"类全名-方法名"按类和方法缓存</p>
  * @author lzc
  * @date 2021/03/16 15:21
  */
 public class TtlCacheKeyGenerator implements KeyGenerator {
 
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<Murmur3KeyHasher> HASHERS = ThreadLocal.withInitial(Murmur3KeyHasher::new);
+
+    private final KeyGeneratorType type;
+
+    /**
+     * 每个类的方法key前缀
+     */
+    private final ClassValue<ConcurrentMap<Method, String>> prefixes = new ClassValue<ConcurrentMap<Method, String>>() {
+        @Override
+        protected ConcurrentMap<Method, String> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>(16);
+        }
+    };
+
+    public TtlCacheKeyGenerator() {
+        this(KeyGeneratorType.hashcode);
+    }
+
+    public TtlCacheKeyGenerator(KeyGeneratorType type) {
+        this.type = type == null ? KeyGeneratorType.hashcode : type;
+    }
+
     @Override
     public Object generate(Object target, Method method, Object... args) {
+        if (type == KeyGeneratorType.murmur3) {
+            return this.murmur3(target, method, args);
+        }
         StringJoiner joiner = new StringJoiner("-");
         joiner.add(target.getClass().getSimpleName());
         joiner.add(method.getName());
@@ -41,4 +73,30 @@ public class TtlCacheKeyGenerator implements KeyGenerator {
         joiner.add(String.valueOf(hash));
         return joiner.toString();
     }
+
+    private String murmur3(Object target, Method method, Object[] args) {
+        ConcurrentMap<Method, String> methodPrefixes = prefixes.get(target.getClass());
+        String prefix = methodPrefixes.get(method);
+        if (prefix == null) {
+            prefix = ClassUtils.getUserClass(target.getClass()).getName() + "-" + method.getName();
+            methodPrefixes.putIfAbsent(method, prefix);
+        }
+        if (args == null || args.length == 0) {
+            return prefix;
+        }
+        Murmur3KeyHasher hasher = HASHERS.get();
+        hasher.reset();
+        hasher.putArgs(args);
+        hasher.finish();
+        StringBuilder builder = new StringBuilder(prefix.length() + 33).append(prefix).append('-');
+        appendHex(builder, hasher.getH1());
+        appendHex(builder, hasher.getH2());
+        return builder.toString();
+    }
+
+    private static void appendHex(StringBuilder builder, long value) {
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            builder.append(HEX[(int) (value >>> shift) & 0xF]);
+        }
+    }
 }
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import com.zuiyouliao.cache.metrics.CacheMetrics;
+import com.zuiyouliao.cache.task.CacheRefresher;
+
+/**
+ * TtlRedisCache的可选功能
+ */
+public class TtlCacheOptions {
+
+    /**
+     * 本地缓存，为null时表示未开启
+     */
+    private final NearCache nearCache;
+
+    /**
+     * 提前重算（XFetch）的beta，小于等于0表示未开启；越大越早重算
+     */
+    private final double earlyRecomputeBeta;
+
+    /**
+     * 提前重算时提交异步任务
+     */
+    private final CacheRefresher cacheRefresher;
+
+    /**
+     * 击穿保护，为null时表示未开启
+     */
+    private final SingleFlight singleFlight;
+
+    /**
+     * 缓存指标
+     */
+    private final CacheMetrics cacheMetrics;
+
+    /**
+     * ttl抖动
+     */
+    private final TtlJitter ttlJitter;
+
+    /**
+     * 空值的存活时间（秒），小于等于0时与ttl相同
+     */
+    private final long nullTtl;
+
+    /**
+     * 命中空值时返回的空集合，为null时表示未开启emptyAsNull
+     */
+    private final Object emptyValue;
+
+    public TtlCacheOptions(NearCache nearCache, double earlyRecomputeBeta, CacheRefresher cacheRefresher, SingleFlight singleFlight,
+                           CacheMetrics cacheMetrics, TtlJitter ttlJitter, long nullTtl, Object emptyValue) {
+        this.nearCache = nearCache;
+        this.earlyRecomputeBeta = earlyRecomputeBeta;
+        this.cacheRefresher = cacheRefresher;
+        this.singleFlight = singleFlight;
+        this.cacheMetrics = cacheMetrics != null ? cacheMetrics : CacheMetrics.NOOP;
+        this.ttlJitter = ttlJitter != null ? ttlJitter : TtlJitter.NONE;
+        this.nullTtl = nullTtl;
+        this.emptyValue = emptyValue;
+    }
+
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    public double getEarlyRecomputeBeta() {
+        return earlyRecomputeBeta;
+    }
+
+    public boolean isEarlyRecompute() {
+        return earlyRecomputeBeta > 0 && cacheRefresher != null;
+    }
+
+    public CacheRefresher getCacheRefresher() {
+        return cacheRefresher;
+    }
+
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    public CacheMetrics getCacheMetrics() {
+        return cacheMetrics;
+    }
+
+    public TtlJitter getTtlJitter() {
+        return ttlJitter;
+    }
+
+    public long getNullTtl() {
+        return nullTtl;
+    }
+
+    public Object getEmptyValue() {
+        return emptyValue;
+    }
+
+    /**
+     * 是否单独处理空值：空值按nullTtl过期，写为紧凑的空值标记，不进入本地缓存
+     */
+    public boolean isNegativeCaching() {
+        return nullTtl > 0 || emptyValue != null;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ttl抖动
+ * <p>每次写入时在ttl的基础上均匀随机加减抖动范围内的时间，平均存活时间不变，
+ * 避免同一时刻写入（发布、清空缓存、刷新周期）的大量key在同一秒过期。抖动范围为百分比（如10%，即ttl的±10%）
+ * 或秒数（如30，即±30秒），不超过ttl本身</p>
+ */
+public final class TtlJitter {
+
+    public static final TtlJitter NONE = new TtlJitter("", 0D, 0L);
+
+    private final String spec;
+
+    /**
+     * 按ttl比例抖动，大于0时有效
+     */
+    private final double ratio;
+
+    /**
+     * 固定的抖动范围（毫秒），ratio为0时有效
+     */
+    private final long millis;
+
+    private TtlJitter(String spec, double ratio, long millis) {
+        this.spec = spec;
+        this.ratio = ratio;
+        this.millis = millis;
+    }
+
+    /**
+     * 解析ttl抖动
+     * @param spec 百分比（如10%）或秒数（如30），空或0表示不抖动
+     * @return com.zuiyouliao.cache.core.TtlJitter
+     */
+    public static TtlJitter parse(String spec) {
+        String value = StringUtils.trimAllWhitespace(spec);
+        if (StringUtils.isEmpty(value)) {
+            return NONE;
+        }
+        try {
+            if (value.endsWith("%")) {
+                double percent = Double.parseDouble(value.substring(0, value.length() - 1));
+                if (percent >= 0 && percent <= 100) {
+                    return percent == 0 ? NONE : new TtlJitter(value, percent / 100, 0L);
+                }
+            } else {
+                double seconds = Double.parseDouble(value);
+                if (seconds >= 0) {
+                    long millis = (long) (seconds * 1000);
+                    return millis == 0 ? NONE : new TtlJitter(value, 0D, millis);
+                }
+            }
+        } catch (NumberFormatException e) {
+            // 统一抛出下面的异常
+        }
+        throw new IllegalArgumentException("Invalid ttl jitter '" + spec + "', expected a percentage (e.g. 10%) or seconds (e.g. 30)");
+    }
+
+    /**
+     * 注解上的ttl抖动优先，未设置时使用全局配置
+     */
+    public static TtlJitter resolve(String annotated, String global) {
+        return parse(StringUtils.isEmpty(annotated) ? global : annotated);
+    }
+
+    public boolean isEnabled() {
+        return this != NONE;
+    }
+
+    /**
+     * 抖动后的ttl（毫秒）
+     * @param ttlMillis 原ttl（毫秒），小于等于0（不过期）时原样返回
+     * @return long 大于0
+     */
+    public long apply(long ttlMillis) {
+        if (this == NONE || ttlMillis <= 0) {
+            return ttlMillis;
+        }
+        long range = ratio > 0 ? (long) (ttlMillis * ratio) : millis;
+        // 抖动后至少保留1毫秒
+        range = Math.min(range, ttlMillis - 1);
+        if (range <= 0) {
+            return ttlMillis;
+        }
+        return ttlMillis + ThreadLocalRandom.current().nextLong(-range, range + 1);
+    }
+
+    public Duration apply(Duration ttl) {
+        if (this == NONE || ttl == null || ttl.isZero() || ttl.isNegative()) {
+            return ttl;
+        }
+        return Duration.ofMillis(this.apply(ttl.toMillis()));
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,363 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.metrics.CacheMetrics;
+import com.zuiyouliao.cache.serializer.CompressingRedisSerializer;
+import com.zuiyouliao.cache.task.CacheInvocation;
+import com.zuiyouliao.cache.util.EmptyValueUtil;
+import com.zuiyouliao.cache.util.ThreadLocalUtil;
+import org.springframework.cache.support.NullValue;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自定义带ttl的redis缓存
+ * <p>可选地在redis前加一层本地缓存，命中本地缓存时不访问redis；
+ * 可选地在缓存值旁记录加载耗时，命中时按剩余存活时间概率性地提前异步重算（XFetch）；
+ * 可选地开启击穿保护，同一个key的并发未命中只由一个线程（节点）加载；
+ * 开启指标时记录命中、未命中、加载耗时和序列化后大小；
+ * 可选地在每次写入时对ttl随机抖动；可选地以较短的nullTtl缓存空值（以及空集合）</p>
+ */
+public class TtlRedisCache extends RedisCache {
+
+    /**
+     * 单个线程最多记录的加载开始时间，超过时清空（加载异常时不会调用put）
+     */
+    private static final int MAX_LOAD_STARTS = 16;
+
+    /**
+     * 本地缓存，为null时表示未开启
+     */
+    private final NearCache nearCache;
+
+    /**
+     * 击穿保护，为null时表示未开启
+     */
+    private final SingleFlight singleFlight;
+
+    private final CacheMetrics cacheMetrics;
+
+    /**
+     * 是否记录加载开始时间：提前重算需要加载耗时，指标需要加载耗时和命中情况
+     */
+    private final boolean trackLoads;
+
+    private final TtlCacheOptions options;
+
+    protected TtlRedisCache(String name, RedisCacheWriter cacheWriter, RedisCacheConfiguration cacheConfig, TtlCacheOptions options) {
+        super(name, cacheWriter, cacheConfig);
+        this.options = options;
+        this.nearCache = options.getNearCache();
+        this.singleFlight = options.getSingleFlight();
+        this.cacheMetrics = options.getCacheMetrics();
+        this.trackLoads = options.isEarlyRecompute() || cacheMetrics.isEnabled();
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object value = this.doLookup(key);
+        // emptyAsNull写入的空值，还原为返回类型的空集合
+        return value instanceof NullValue && options.getEmptyValue() != null ? options.getEmptyValue() : value;
+    }
+
+    private Object doLookup(Object key) {
+        if (!trackLoads && singleFlight == null) {
+            return CacheEnvelope.unwrap(this.lookupStoreValue(key, null));
+        }
+        String cacheKey = this.createCacheKey(key);
+        // 解析器为本次调用记录的CacheInvocation只在本次查找中使用，命中与否都要取出，否则会堆积在线程池线程上
+        CacheInvocation cacheInvocation = options.isEarlyRecompute() ? takeCurrentInvocation(cacheKey) : null;
+        if (options.isEarlyRecompute() && Objects.equals(cacheKey, ThreadLocalUtil.get(CacheConstant.RECOMPUTE_KEY))) {
+            // 正在提前重算，强制未命中
+            this.markLoadStart(cacheKey);
+            return null;
+        }
+        Object value = this.lookupStoreValue(key, cacheKey);
+        if (value == null && singleFlight != null) {
+            // 未命中，等待其它线程或节点加载，返回null时由当前线程加载
+            value = singleFlight.awaitOrAcquire(cacheKey, () -> this.lookupStoreValue(key, cacheKey));
+        }
+        if (value == null) {
+            cacheMetrics.recordMiss(this.getName());
+            if (trackLoads) {
+                this.markLoadStart(cacheKey);
+            }
+            return null;
+        }
+        cacheMetrics.recordHit(this.getName());
+        if (!(value instanceof CacheEnvelope)) {
+            // 自动刷新任务直接写入的值没有信封
+            return value;
+        }
+        CacheEnvelope envelope = (CacheEnvelope) value;
+        if (cacheInvocation != null && this.shouldRecompute(envelope)) {
+            options.getCacheRefresher().recompute(cacheInvocation);
+        }
+        return envelope.getValue();
+    }
+
+    /**
+     * 开启击穿保护时不再对整个缓存加锁，由SingleFlight保证同一个key只加载一次
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        if (singleFlight == null) {
+            return super.get(key, valueLoader);
+        }
+        ValueWrapper result = this.get(key);
+        if (result != null) {
+            return (T) result.get();
+        }
+        try {
+            T value = valueLoader.call();
+            this.put(key, value);
+            return value;
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            singleFlight.complete(this.createCacheKey(key));
+        }
+    }
+
+    private Object lookupStoreValue(Object key, String cacheKey) {
+        if (nearCache == null) {
+            return super.lookup(key);
+        }
+        if (cacheKey == null) {
+            cacheKey = this.createCacheKey(key);
+        }
+        Object value = nearCache.get(cacheKey);
+        if (value != null) {
+            return value;
+        }
+        value = super.lookup(key);
+        if (value != null && !this.isNegativeEntry(value)) {
+            nearCache.put(cacheKey, value);
+        }
+        return value;
+    }
+
+    /**
+     * XFetch：now - delta * beta * ln(random) >= expireAt 时提前重算
+     */
+    private boolean shouldRecompute(CacheEnvelope envelope) {
+        if (envelope.getDelta() <= 0) {
+            return false;
+        }
+        double random = 1.0D - ThreadLocalRandom.current().nextDouble();
+        double gap = envelope.getDelta() * options.getEarlyRecomputeBeta() * -Math.log(random);
+        return System.currentTimeMillis() + gap >= envelope.getExpireAt();
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        long loadNanos = this.takeLoadNanos(key);
+        boolean negative = this.isNegative(value);
+        Duration ttl = options.getTtlJitter().apply(negative ? this.getNullTtl() : this.getCacheConfiguration().getTtl());
+        Object cacheValue = negative ? this.toNegativeValue() : this.wrapIfNecessary(key, value, loadNanos, ttl);
+        try {
+            this.write(key, cacheValue, ttl);
+        } finally {
+            if (singleFlight != null) {
+                singleFlight.complete(this.createCacheKey(key));
+            }
+        }
+        if (nearCache != null) {
+            String cacheKey = this.createCacheKey(key);
+            nearCache.evict(cacheKey);
+            if (!negative) {
+                nearCache.put(cacheKey, this.toStoreValue(cacheValue));
+            }
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        long loadNanos = this.takeLoadNanos(key);
+        boolean negative = this.isNegative(value);
+        Duration ttl = options.getTtlJitter().apply(negative ? this.getNullTtl() : this.getCacheConfiguration().getTtl());
+        Object cacheValue = negative ? this.toNegativeValue() : this.wrapIfNecessary(key, value, loadNanos, ttl);
+        ValueWrapper result = this.writeIfAbsent(key, cacheValue, ttl);
+        if (nearCache != null) {
+            nearCache.evict(this.createCacheKey(key));
+        }
+        if (result != null && result.get() instanceof CacheEnvelope) {
+            return this.toValueWrapper(((CacheEnvelope) result.get()).getValue());
+        }
+        return result;
+    }
+
+    /**
+     * 是否按空值缓存：开启nullTtl或emptyAsNull时，null以及（emptyAsNull）空集合、空Map、空数组
+     */
+    private boolean isNegative(Object value) {
+        if (!options.isNegativeCaching()) {
+            return false;
+        }
+        return value == null || (options.getEmptyValue() != null && this.isAllowNullValues() && EmptyValueUtil.isEmpty(value));
+    }
+
+    private boolean isNegativeEntry(Object value) {
+        return options.isNegativeCaching() && value instanceof NullValue;
+    }
+
+    /**
+     * 不允许缓存null时返回null，交给RedisCache抛出异常
+     */
+    private Object toNegativeValue() {
+        return this.isAllowNullValues() ? NullValue.INSTANCE : null;
+    }
+
+    /**
+     * 空值的存活时间，不超过ttl
+     */
+    private Duration getNullTtl() {
+        Duration ttl = this.getCacheConfiguration().getTtl();
+        if (options.getNullTtl() <= 0) {
+            return ttl;
+        }
+        Duration nullTtl = Duration.ofSeconds(options.getNullTtl());
+        return ttl.isZero() || ttl.isNegative() || nullTtl.compareTo(ttl) < 0 ? nullTtl : ttl;
+    }
+
+    /**
+     * 与RedisCache.put相同，只是每次写入使用抖动后的ttl
+     */
+    private void write(Object key, Object cacheValue, Duration ttl) {
+        if (!options.getTtlJitter().isEnabled() && !options.isNegativeCaching()) {
+            super.put(key, cacheValue);
+            return;
+        }
+        Object storeValue = this.preProcessCacheValue(cacheValue);
+        if (storeValue == null && !this.isAllowNullValues()) {
+            throw new IllegalArgumentException(String.format("Cache '%s' does not allow 'null' values", this.getName()));
+        }
+        this.getNativeCache().put(this.getName(), this.serializeCacheKey(this.createCacheKey(key)), this.serializeCacheValue(storeValue), ttl);
+    }
+
+    /**
+     * 与RedisCache.putIfAbsent相同，只是每次写入使用抖动后的ttl
+     */
+    private ValueWrapper writeIfAbsent(Object key, Object cacheValue, Duration ttl) {
+        if (!options.getTtlJitter().isEnabled() && !options.isNegativeCaching()) {
+            return super.putIfAbsent(key, cacheValue);
+        }
+        Object storeValue = this.preProcessCacheValue(cacheValue);
+        if (storeValue == null && !this.isAllowNullValues()) {
+            return this.get(key);
+        }
+        byte[] result = this.getNativeCache().putIfAbsent(this.getName(), this.serializeCacheKey(this.createCacheKey(key)),
+                this.serializeCacheValue(storeValue), ttl);
+        return result == null ? null : new SimpleValueWrapper(this.fromStoreValue(this.deserializeCacheValue(result)));
+    }
+
+    private Object wrapIfNecessary(Object key, Object value, long loadNanos, Duration ttl) {
+        // 不允许null值时交给RedisCache抛出异常
+        if (!options.isEarlyRecompute() || (value == null && !this.isAllowNullValues())) {
+            return value;
+        }
+        // 未知加载耗时时为0，不会提前重算
+        long delta = loadNanos < 0 ? 0L : TimeUnit.NANOSECONDS.toMillis(loadNanos);
+        long expireAt = System.currentTimeMillis() + ttl.toMillis();
+        return new CacheEnvelope(this.toStoreValue(value), delta, expireAt);
+    }
+
+    @Override
+    protected byte[] serializeCacheValue(Object value) {
+        // RedisCache把空值写为jdk序列化的NullValue，单独处理空值时写为紧凑的空值标记
+        byte[] bytes = this.isNegativeEntry(value) ? CompressingRedisSerializer.nullValue() : super.serializeCacheValue(value);
+        cacheMetrics.recordValueSize(this.getName(), bytes.length);
+        return bytes;
+    }
+
+    @Override
+    protected Object deserializeCacheValue(byte[] value) {
+        if (CompressingRedisSerializer.isNullValue(value)) {
+            return NullValue.INSTANCE;
+        }
+        return super.deserializeCacheValue(value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        super.evict(key);
+        if (nearCache != null) {
+            nearCache.evict(this.createCacheKey(key));
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        if (nearCache != null) {
+            nearCache.clear();
+        }
+    }
+
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CacheInvocation takeCurrentInvocation(String cacheKey) {
+        Map<String, CacheInvocation> invocations = (Map<String, CacheInvocation>) ThreadLocalUtil.get(CacheConstant.CURRENT_INVOCATIONS);
+        return invocations == null ? null : invocations.remove(cacheKey);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void markLoadStart(String cacheKey) {
+        Map<String, Long> loadStarts = (Map<String, Long>) ThreadLocalUtil.get(CacheConstant.LOAD_STARTS);
+        if (loadStarts == null) {
+            loadStarts = new HashMap<>(4);
+            ThreadLocalUtil.put(CacheConstant.LOAD_STARTS, loadStarts);
+        } else if (loadStarts.size() >= MAX_LOAD_STARTS) {
+            loadStarts.clear();
+        }
+        loadStarts.put(cacheKey, System.nanoTime());
+    }
+
+    /**
+     * 取出加载耗时（纳秒），并记录到指标
+     * @return long 未知加载耗时时为-1
+     */
+    @SuppressWarnings("unchecked")
+    private long takeLoadNanos(Object key) {
+        if (!trackLoads) {
+            return -1L;
+        }
+        Map<String, Long> loadStarts = (Map<String, Long>) ThreadLocalUtil.get(CacheConstant.LOAD_STARTS);
+        Long start = loadStarts == null || loadStarts.isEmpty() ? null : loadStarts.remove(this.createCacheKey(key));
+        if (start == null) {
+            return -1L;
+        }
+        long nanos = System.nanoTime() - start;
+        cacheMetrics.recordLoad(this.getName(), nanos);
+        return nanos;
+    }
+}
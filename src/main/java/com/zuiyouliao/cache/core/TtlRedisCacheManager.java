@@ -30,16 +30,39 @@ import java.util.Map;
  */
 public class TtlRedisCacheManager extends RedisCacheManager {
 
+    private final RedisCacheWriter cacheWriter;
+
     private final RedisCacheConfiguration defaultCacheConfiguration;
 
     public TtlRedisCacheManager(RedisCacheWriter cacheWriter, RedisCacheConfiguration defaultCacheConfiguration, Map<String, RedisCacheConfiguration> initialCacheConfigurations) {
         super(cacheWriter, defaultCacheConfiguration, initialCacheConfigurations);
+        this.cacheWriter = cacheWriter;
         this.defaultCacheConfiguration = defaultCacheConfiguration;
     }
 
+    /**
+     * 没有可选功能的缓存也可能读到同名的提前重算缓存写入的信封，读取时取出存储值
+     */
     @Override
     public RedisCache createRedisCache(String name, RedisCacheConfiguration cacheConfig) {
-        return super.createRedisCache(name, cacheConfig);
+        return new RedisCache(name, cacheWriter, cacheConfig != null ? cacheConfig : defaultCacheConfiguration) {
+
+            @Override
+            protected Object deserializeCacheValue(byte[] value) {
+                return CacheEnvelope.unwrap(super.deserializeCacheValue(value));
+            }
+        };
+    }
+
+    /**
+     * 创建带可选功能的redis缓存
+     * @param name 缓存名称
+     * @param cacheConfig 缓存配置
+     * @param options 可选功能
+     * @return com.zuiyouliao.cache.core.TtlRedisCache
+     */
+    public TtlRedisCache createTtlRedisCache(String name, RedisCacheConfiguration cacheConfig, TtlCacheOptions options) {
+        return new TtlRedisCache(name, cacheWriter, cacheConfig != null ? cacheConfig : this.getCacheConfiguration(), options);
     }
 
     public RedisCacheConfiguration getCacheConfiguration() {
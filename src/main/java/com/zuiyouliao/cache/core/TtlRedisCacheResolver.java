@@ -15,24 +15,43 @@
  */
 package com.zuiyouliao.cache.core;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zuiyouliao.cache.annotation.TtlBatchCacheable;
 import com.zuiyouliao.cache.annotation.TtlCacheable;
 import com.zuiyouliao.cache.clone.CacheExpressionRootObject;
+import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.constant.SerializedType;
+import com.zuiyouliao.cache.metrics.CacheMetrics;
+import com.zuiyouliao.cache.prop.LocalProperties;
 import com.zuiyouliao.cache.prop.ProjectProperties;
+import com.zuiyouliao.cache.prop.SerialProperties;
+import com.zuiyouliao.cache.prop.TtlProperties;
 import com.zuiyouliao.cache.task.CacheInvocation;
 import com.zuiyouliao.cache.task.CacheRefresher;
+import com.zuiyouliao.cache.util.EmptyValueUtil;
+import com.zuiyouliao.cache.util.ThreadLocalUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.cache.interceptor.BasicOperation;
 import org.springframework.cache.interceptor.CacheOperationInvocationContext;
 import org.springframework.cache.interceptor.SimpleCacheResolver;
 import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.cache.support.NoOpCache;
 import org.springframework.context.expression.MethodBasedEvaluationContext;
 import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.data.redis.cache.RedisCache;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.util.StringUtils;
 
@@ -51,20 +70,43 @@ import java.util.concurrent.ConcurrentMap;
  */
 public class TtlRedisCacheResolver extends SimpleCacheResolver {
 
+    /**
+     * 缓存最大容量
+     */
+    private static final int MAX_CACHE_SIZE = 1024;
+
     /**
      * 仿造 AbstractCacheManager 创建的cacheMap，用于存储 ttl > 0 的RedisCache
+     * <p>超出容量时只淘汰少用的(cacheName, ttl)组合，同一个cacheId只创建一次，不同cacheId之间互不阻塞</p>
      */
-    private final ConcurrentMap<String, RedisCache> cacheMap = new ConcurrentHashMap<>(16);
+    private final com.github.benmanes.caffeine.cache.Cache<String, RedisCache> cacheMap = Caffeine.newBuilder()
+            .maximumSize(MAX_CACHE_SIZE)
+            .recordStats()
+            .build();
 
     /**
-     * 缓存最大容量
+     * SpEL表达式解析器，表达式执行一定次数后编译成字节码，编译失败时回退为解释执行
      */
-    private static final int MAX_CACHE_SIZE = 1024;
+    private static final ExpressionParser EXPRESSION_PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, TtlRedisCacheResolver.class.getClassLoader()));
+
+    private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
 
     /**
-     * SpEL表达式解析器
+     * 单个线程最多记录的当前调用，超过时清空（没有查找的缓存操作不会取出，如@CachePut）
      */
-    private static final ExpressionParser EXPRESSION_PARSER = new SpelExpressionParser();
+    private static final int MAX_CURRENT_INVOCATIONS = 16;
+
+    /**
+     * 方法元数据，与Spring的CacheOperationCacheKey一样按缓存操作、方法和目标类区分，
+     * 同一个方法上的多个缓存操作（如@Caching）各自解析缓存名称
+     */
+    private final ConcurrentMap<MetadataKey, CacheMethodMetadata> metadataMap = new ConcurrentHashMap<>(64);
+
+    /**
+     * 批量缓存方法的缓存信息，不支持批量缓存的方法为Optional.empty()
+     */
+    private final ConcurrentMap<Method, Optional<BatchCacheOperation>> batchOperationMap = new ConcurrentHashMap<>(16);
 
     private final Logger logger = LoggerFactory.getLogger(TtlRedisCacheResolver.class);
 
@@ -80,6 +122,24 @@ public class TtlRedisCacheResolver extends SimpleCacheResolver {
     @Resource
     private ProjectProperties projectProperties;
 
+    @Resource
+    private LocalProperties localProperties;
+
+    @Resource
+    private SerialProperties serialProperties;
+
+    @Resource
+    private TtlProperties ttlProperties;
+
+    @Resource
+    private NearCacheRegistry nearCacheRegistry;
+
+    @Resource
+    private SingleFlight singleFlight;
+
+    @Resource
+    private CacheMetrics cacheMetrics;
+
     public TtlRedisCacheResolver(CacheManager cacheManager) {
         super(cacheManager);
     }
@@ -93,16 +153,26 @@ public class TtlRedisCacheResolver extends SimpleCacheResolver {
      */
     @Override
     public Collection<? extends Cache> resolveCaches(CacheOperationInvocationContext<?> context) {
-        Collection<String> cacheNames = this.getCacheNames(context);
-        if (cacheNames == null) {
+        if (context.getMethod().equals(ThreadLocalUtil.get(CacheConstant.ASYNC_INVOKE_KEY))) {
+            // 异步方法已由AsyncCacheInterceptor缓存结果，Spring的缓存拦截器不再缓存CompletableFuture或Mono本身
+            ThreadLocalUtil.remove(CacheConstant.ASYNC_INVOKE_KEY);
+            Collection<Cache> result = new ArrayList<>(2);
+            for (String cacheName : this.getCacheNames(context)) {
+                result.add(new NoOpCache(cacheName));
+            }
+            return result;
+        }
+        CacheMethodMetadata metadata = this.getMetadata(context);
+        if (metadata == null) {
             return Collections.emptyList();
         } else {
+            List<String> cacheNames = metadata.getCacheNames();
             Collection<Cache> result = new ArrayList<>(cacheNames.size());
-            String prefix = Objects.equals("", projectProperties.getName()) ? "" : projectProperties.getName() + "::";
-            for (String cacheName : cacheNames) {
+            EvaluationContext evaluationContext = null;
+            for (int i = 0; i < cacheNames.size(); i++) {
+                String cacheName = cacheNames.get(i);
                 // ttl > 0，有过期时间
-                cacheName = prefix + cacheName;
-                Cache cache = this.getCache(context, cacheName);
+                Cache cache = this.getCache(metadata, cacheName, metadata.getCacheIds().get(i));
                 if (cache == null) {
                     // ttl == 0，无过期时间
                     cache = super.getCacheManager().getCache(cacheName);
@@ -112,7 +182,12 @@ public class TtlRedisCacheResolver extends SimpleCacheResolver {
                 }
 
                 result.add(cache);
-                this.markAutoRefreshCache(context, cacheName, result);
+                if (metadata.isAutoRefresh() || metadata.isEarlyRecompute()) {
+                    if (evaluationContext == null) {
+                        evaluationContext = this.createEvaluationContext(result, context);
+                    }
+                    this.markAutoRefreshCache(context, metadata, evaluationContext, cacheName);
+                }
             }
 
             return result;
@@ -120,124 +195,309 @@ public class TtlRedisCacheResolver extends SimpleCacheResolver {
     }
 
     /**
-     * 获取缓存
+     * 解析异步方法（返回CompletableFuture、CompletionStage或Mono）的缓存，由AsyncCacheInterceptor调用
+     * @param target 目标对象
+     * @param method 目标方法
+     * @param args 方法参数
+     * @return com.zuiyouliao.cache.core.AsyncCacheOperation 非@TtlCacheable方法、没有缓存名称或condition不满足时返回null
+     */
+    AsyncCacheOperation resolveAsync(Object target, Method method, Object[] args) {
+        // 异步方法不经过Spring的缓存操作，按@TtlCacheable解析
+        MetadataKey metadataKey = new MetadataKey(null, method, AopUtils.getTargetClass(target));
+        CacheMethodMetadata metadata = this.metadataMap.get(metadataKey);
+        if (metadata == null) {
+            TtlCacheable ttlCacheable = AnnotationUtils.findAnnotation(method, TtlCacheable.class);
+            if (ttlCacheable == null) {
+                return null;
+            }
+            Collection<String> cacheNames = Arrays.asList(ttlCacheable.cacheNames());
+            if (cacheNames.isEmpty()) {
+                CacheConfig cacheConfig = AnnotationUtils.findAnnotation(AopUtils.getTargetClass(target), CacheConfig.class);
+                cacheNames = cacheConfig == null ? Collections.emptyList() : Arrays.asList(cacheConfig.cacheNames());
+            }
+            if (cacheNames.isEmpty()) {
+                logger.warn("异步方法的@TtlCacheable没有缓存名称，不缓存。method={}", method);
+                return null;
+            }
+            final Collection<String> names = cacheNames;
+            metadata = this.metadataMap.computeIfAbsent(metadataKey, key -> this.createMetadata(method, names));
+        }
+        if (metadata.getTtlCacheable() == null) {
+            return null;
+        }
+        List<String> cacheNames = metadata.getCacheNames();
+        Collection<Cache> caches = new ArrayList<>(cacheNames.size());
+        for (int i = 0; i < cacheNames.size(); i++) {
+            Cache cache = this.getCache(metadata, cacheNames.get(i), metadata.getCacheIds().get(i));
+            caches.add(cache != null ? cache : super.getCacheManager().getCache(cacheNames.get(i)));
+        }
+        EvaluationContext evaluationContext = null;
+        if (metadata.getConditionExpression() != null || metadata.getUnlessExpression() != null
+                || (!metadata.isUseKeyGenerator() && metadata.getKeyExpression() != null)) {
+            Class<?> targetClass = AopUtils.getTargetClass(target);
+            CacheExpressionRootObject rootObject = new CacheExpressionRootObject(caches, method, args, target, targetClass);
+            evaluationContext = new MethodBasedEvaluationContext(rootObject, method, args, PARAMETER_NAME_DISCOVERER);
+        }
+        Expression condition = metadata.getConditionExpression();
+        if (condition != null) {
+            Boolean conditional = condition.getValue(evaluationContext, Boolean.class);
+            if (conditional != null && !conditional) {
+                return null;
+            }
+        }
+        String key = this.parseCacheKey(metadata, evaluationContext, target, method, args);
+        List<String> redisKeys = new ArrayList<>(cacheNames.size());
+        for (String cacheName : cacheNames) {
+            redisKeys.add(this.getRedisKey(cacheName, key));
+        }
+        return new AsyncCacheOperation(cacheNames, redisKeys, metadata.getTtl(), metadata.getTtlJitter(), metadata.getNullTtl(),
+                metadata.getUnlessExpression(), evaluationContext);
+    }
+
+    /**
+     * 解析@TtlBatchCacheable方法的缓存信息，由BatchCacheInterceptor调用
+     * @param method 目标方法
+     * @param targetClass 目标类
+     * @return com.zuiyouliao.cache.core.BatchCacheOperation 没有缓存名称、没有集合参数或返回类型不支持时返回null
+     */
+    BatchCacheOperation resolveBatch(Method method, Class<?> targetClass) {
+        Optional<BatchCacheOperation> operation = this.batchOperationMap.get(method);
+        if (operation == null) {
+            operation = this.batchOperationMap.computeIfAbsent(method, m -> Optional.ofNullable(this.createBatchOperation(m, targetClass)));
+        }
+        return operation.orElse(null);
+    }
+
+    private BatchCacheOperation createBatchOperation(Method method, Class<?> targetClass) {
+        TtlBatchCacheable batchCacheable = AnnotationUtils.findAnnotation(method, TtlBatchCacheable.class);
+        if (batchCacheable == null) {
+            return null;
+        }
+        String[] names = batchCacheable.cacheNames();
+        if (names.length == 0) {
+            CacheConfig cacheConfig = AnnotationUtils.findAnnotation(targetClass, CacheConfig.class);
+            names = cacheConfig == null ? names : cacheConfig.cacheNames();
+        }
+        int argumentIndex = -1;
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (Collection.class.isAssignableFrom(parameterTypes[i])) {
+                argumentIndex = i;
+                break;
+            }
+        }
+        Class<?> returnType = method.getReturnType();
+        boolean mapResult = Map.class.isAssignableFrom(returnType);
+        if (names.length == 0 || argumentIndex < 0
+                || !(parameterTypes[argumentIndex].isAssignableFrom(ArrayList.class) || parameterTypes[argumentIndex].isAssignableFrom(LinkedHashSet.class))
+                || !(mapResult ? returnType.isAssignableFrom(LinkedHashMap.class)
+                        : returnType.isAssignableFrom(ArrayList.class) || returnType.isAssignableFrom(LinkedHashSet.class))
+                || (!mapResult && StringUtils.isEmpty(batchCacheable.resultKey()))) {
+            logger.warn("@TtlBatchCacheable需要缓存名称、集合参数（Collection、List或Set）以及Map或集合返回值（返回集合时需设置resultKey），不缓存。method={}", method);
+            return null;
+        }
+        String prefix = Objects.equals("", projectProperties.getName()) ? "" : projectProperties.getName() + "::";
+        List<String> cacheNames = new ArrayList<>(names.length);
+        List<String> keyPrefixes = new ArrayList<>(names.length);
+        for (String name : names) {
+            cacheNames.add(prefix + name);
+            keyPrefixes.add(redisCacheConfiguration.getKeyPrefixFor(prefix + name));
+        }
+        return new BatchCacheOperation(method, Collections.unmodifiableList(cacheNames), Collections.unmodifiableList(keyPrefixes),
+                batchCacheable.ttl(), batchCacheable.ttl() > 0 ? TtlJitter.resolve(batchCacheable.ttlJitter(), ttlProperties.getJitter()) : TtlJitter.NONE,
+                batchCacheable.nullTtl(),
+                argumentIndex, !parameterTypes[argumentIndex].isAssignableFrom(ArrayList.class),
+                mapResult, !mapResult && !returnType.isAssignableFrom(ArrayList.class),
+                StringUtils.isEmpty(batchCacheable.key()) ? null : EXPRESSION_PARSER.parseExpression(batchCacheable.key()),
+                StringUtils.isEmpty(batchCacheable.resultKey()) ? null : EXPRESSION_PARSER.parseExpression(batchCacheable.resultKey()),
+                StringUtils.isEmpty(batchCacheable.condition()) ? null : EXPRESSION_PARSER.parseExpression(batchCacheable.condition()));
+    }
+
+    /**
+     * 获取方法元数据，每个方法只解析一次
      * @param context 缓存注解被拦截的上下文
+     * @return com.zuiyouliao.cache.core.CacheMethodMetadata
+     */
+    private CacheMethodMetadata getMetadata(CacheOperationInvocationContext<?> context) {
+        MetadataKey metadataKey = new MetadataKey(context.getOperation(), context.getMethod(), AopUtils.getTargetClass(context.getTarget()));
+        CacheMethodMetadata metadata = this.metadataMap.get(metadataKey);
+        if (metadata != null) {
+            return metadata;
+        }
+        Collection<String> cacheNames = this.getCacheNames(context);
+        if (cacheNames == null) {
+            return null;
+        }
+        return this.metadataMap.computeIfAbsent(metadataKey, key -> this.createMetadata(context.getMethod(), cacheNames));
+    }
+
+    private CacheMethodMetadata createMetadata(Method method, Collection<String> cacheNames) {
+        String prefix = Objects.equals("", projectProperties.getName()) ? "" : projectProperties.getName() + "::";
+        List<String> prefixedNames = new ArrayList<>(cacheNames.size());
+        for (String cacheName : cacheNames) {
+            prefixedNames.add(prefix + cacheName);
+        }
+        prefixedNames = Collections.unmodifiableList(prefixedNames);
+        TtlCacheable ttlCacheable = method.getAnnotation(TtlCacheable.class);
+        if (ttlCacheable == null) {
+            return new CacheMethodMetadata(method, null, prefixedNames, false, false, false, false, false, null, null, null, TtlJitter.NONE, -1L, null);
+        }
+        boolean local = localProperties.isEnabled() && ttlCacheable.local();
+        boolean autoRefresh = ttlCacheable.autoRefreshWithoutUnless();
+        // 如果unless有设置，则禁止刷新，因为无法手动获取方法返回值
+        if (autoRefresh && !StringUtils.isEmpty(ttlCacheable.unless())) {
+            logger.warn(String.format("由于@TtlCacheable的unless有值，将禁止自动刷新。cacheName=%s，key=%s", Arrays.toString(ttlCacheable.value()), ttlCacheable.key()));
+            autoRefresh = false;
+        }
+        boolean earlyRecompute = ttlCacheable.earlyRecompute() && ttlCacheable.earlyRecomputeBeta() > 0;
+        // 提前重算需要在缓存值旁记录加载耗时，字符串序列化无法存储
+        if (earlyRecompute && (ttlCacheable.ttl() <= 0 || serialProperties.getType() == SerializedType.string)) {
+            logger.warn(String.format("由于@TtlCacheable的ttl未设置或缓存值为字符串序列化，将禁止提前重算。cacheName=%s，key=%s", Arrays.toString(ttlCacheable.value()), ttlCacheable.key()));
+            earlyRecompute = false;
+        }
+        boolean useKeyGenerator = !StringUtils.isEmpty(ttlCacheable.keyGenerator()) && Objects.equals("ttlCacheKeyGenerator", ttlCacheable.keyGenerator());
+        Expression keyExpression = StringUtils.isEmpty(ttlCacheable.key()) ? null : EXPRESSION_PARSER.parseExpression(ttlCacheable.key());
+        Expression conditionExpression = StringUtils.isEmpty(ttlCacheable.condition()) ? null : EXPRESSION_PARSER.parseExpression(ttlCacheable.condition());
+        Expression unlessExpression = StringUtils.isEmpty(ttlCacheable.unless()) ? null : EXPRESSION_PARSER.parseExpression(ttlCacheable.unless());
+        // 不过期的缓存不需要抖动
+        TtlJitter ttlJitter = ttlCacheable.ttl() > 0 ? TtlJitter.resolve(ttlCacheable.ttlJitter(), ttlProperties.getJitter()) : TtlJitter.NONE;
+        Object emptyValue = ttlCacheable.emptyAsNull() ? EmptyValueUtil.emptyValueOf(method.getReturnType()) : null;
+        // 空集合按空值缓存，需要允许缓存null，命中时按返回类型还原为空集合
+        if (ttlCacheable.emptyAsNull() && (emptyValue == null || !redisCacheConfiguration.getAllowCacheNullValues())) {
+            logger.warn(String.format("由于不允许缓存null或返回类型不是集合、Map或数组，将禁止emptyAsNull。cacheName=%s，key=%s", Arrays.toString(ttlCacheable.value()), ttlCacheable.key()));
+            emptyValue = null;
+        }
+        return new CacheMethodMetadata(method, ttlCacheable, prefixedNames, local, earlyRecompute, ttlCacheable.singleFlight(), autoRefresh, useKeyGenerator, keyExpression,
+                conditionExpression, unlessExpression, ttlJitter, ttlCacheable.nullTtl(), emptyValue);
+    }
+
+    /**
+     * 获取缓存
+     * @param metadata 方法元数据
      * @param cacheName 缓存名称
+     * @param cacheId 缓存标识
      * @return org.springframework.cache.Cache
      * @author lzc
      * @date 2021/03/10 14:52
      */
-    private Cache getCache(CacheOperationInvocationContext<?> context, String cacheName) {
-        TtlCacheable ttlCacheable = context.getMethod().getAnnotation(TtlCacheable.class);
-        // 注解上的ttl > 0才执行
-        if (ttlCacheable != null && ttlCacheable.ttl() > 0) {
-            String cacheKey = cacheName + "-" + ttlCacheable.ttl();
-            RedisCache cache = this.cacheMap.get(cacheKey);
-            this.clearIfOverSize();
-            if (cache == null) {
-                synchronized(this.cacheMap) {
-                    cache = cacheMap.get(cacheKey);
-                    if (cache == null) {
-                        cache = this.createRedisCache(cacheName, ttlCacheable.ttl());
-                        if (cache != null) {
-                            this.cacheMap.putIfAbsent(cacheKey, cache);
-                        }
-                    }
-                }
+    private Cache getCache(CacheMethodMetadata metadata, String cacheName, String cacheId) {
+        if (metadata.getTtlCacheable() == null) {
+            return null;
+        }
+        // 注解上的ttl > 0、开启可选功能或开启指标才执行
+        if (metadata.getTtl() > 0 || metadata.isTtlRedisCache() || cacheMetrics.isEnabled()) {
+            RedisCache cache = this.cacheMap.getIfPresent(cacheId);
+            if (cache != null) {
+                return cache;
             }
-            return cache;
+            return this.cacheMap.get(cacheId, id -> this.createRedisCache(metadata, id, cacheName));
         }
         return null;
     }
 
     /**
      * 创建缓存
+     * @param metadata 方法元数据
+     * @param cacheId 缓存标识
      * @param cacheName 缓存名称
-     * @param ttl 过期时间
      * @return org.springframework.data.redis.cache.RedisCache
      * @author lzc
      * @date 2021/03/10 14:53
      */
-    private RedisCache createRedisCache(String cacheName, Long ttl) {
+    private RedisCache createRedisCache(CacheMethodMetadata metadata, String cacheId, String cacheName) {
         CacheManager cacheManager = super.getCacheManager();
         if (cacheManager instanceof TtlRedisCacheManager) {
             TtlRedisCacheManager manager = (TtlRedisCacheManager) cacheManager;
             RedisCacheConfiguration configuration = manager.getCacheConfiguration();
-            return manager.createRedisCache(cacheName, configuration.entryTtl(Duration.ofSeconds(ttl)));
+            long ttl = metadata.getTtl();
+            if (ttl > 0) {
+                configuration = configuration.entryTtl(Duration.ofSeconds(ttl));
+            }
+            if (metadata.isTtlRedisCache() || cacheMetrics.isEnabled()) {
+                NearCache nearCache = metadata.isLocal() ? nearCacheRegistry.createNearCache(cacheId, cacheName, ttl) : null;
+                double beta = metadata.isEarlyRecompute() ? metadata.getTtlCacheable().earlyRecomputeBeta() : 0D;
+                return manager.createTtlRedisCache(cacheName, configuration, new TtlCacheOptions(nearCache, beta, cacheRefresher,
+                        metadata.isSingleFlight() ? singleFlight : null, cacheMetrics, metadata.getTtlJitter(),
+                        metadata.getNullTtl(), metadata.getEmptyValue()));
+            }
+            return manager.createRedisCache(cacheName, configuration);
         }
         return null;
     }
 
-    private void clearIfOverSize() {
-        if (cacheMap.size() > MAX_CACHE_SIZE) {
-            cacheMap.clear();
-        }
+    public int getMetadataSize() {
+        return metadataMap.size();
+    }
+
+    public long getCacheSize() {
+        return cacheMap.estimatedSize();
+    }
+
+    public long getCacheEvictionCount() {
+        return cacheMap.stats().evictionCount();
     }
 
     /**
-     * 标记需要自动刷新的缓存
+     * 标记需要自动刷新的缓存，并为提前重算记录当前调用
      * @param context 缓存注解被拦截的上下文
+     * @param metadata 方法元数据
+     * @param evaluationContext SpEL计算上下文
      * @param cacheName 缓存名称
-     * @param caches 缓存集合
      * @author lzc
      * @date 2021/03/10 14:54
      */
-    private void markAutoRefreshCache(CacheOperationInvocationContext<?> context, String cacheName, Collection<Cache> caches) {
-        Method method = context.getMethod();
-        TtlCacheable ttlCacheable = method.getAnnotation(TtlCacheable.class);
-        if (ttlCacheable == null || !ttlCacheable.autoRefreshWithoutUnless()) {
-            return;
-        }
-        // 如果unless有设置，则禁止刷新，因为无法手动获取方法返回值
-        if (!StringUtils.isEmpty(ttlCacheable.unless())) {
-            logger.warn(String.format("由于@TtlCacheable的unless有值，将禁止自动刷新。cacheName=%s，key=%s", Arrays.toString(ttlCacheable.value()), ttlCacheable.key()));
-            return;
-        }
-
-        Boolean conditional = this.parseCacheSpEL(caches, ttlCacheable.condition(), context.getTarget(), method, context.getArgs(), Boolean.class);
-        if (conditional != null && !conditional) {
-            return;
+    @SuppressWarnings("unchecked")
+    private void markAutoRefreshCache(CacheOperationInvocationContext<?> context, CacheMethodMetadata metadata,
+                                      EvaluationContext evaluationContext, String cacheName) {
+        Expression condition = metadata.getConditionExpression();
+        if (condition != null) {
+            Boolean conditional = condition.getValue(evaluationContext, Boolean.class);
+            if (conditional != null && !conditional) {
+                return;
+            }
         }
-        String key = this.parseCacheKey(caches, ttlCacheable, context.getTarget(), method, context.getArgs());
+        Method method = context.getMethod();
+        String key = this.parseCacheKey(metadata, evaluationContext, context.getTarget(), method, context.getArgs());
         String redisKey = this.getRedisKey(cacheName, key);
         CacheInvocation cacheInvocation = new CacheInvocation(context.getTarget().getClass().getName(), method.getName(),
-                method.getParameterTypes(), context.getArgs(), redisKey, ttlCacheable.ttl());
-        cacheRefresher.addCache(cacheInvocation);
+                method.getParameterTypes(), context.getArgs(), redisKey, metadata.getTtl());
+        if (metadata.isAutoRefresh()) {
+            cacheRefresher.addCache(cacheInvocation);
+        }
+        if (metadata.isEarlyRecompute()) {
+            // 由TtlRedisCache在本次查找时取出，命中并决定提前重算时使用
+            Map<String, CacheInvocation> invocations = (Map<String, CacheInvocation>) ThreadLocalUtil.get(CacheConstant.CURRENT_INVOCATIONS);
+            if (invocations == null) {
+                invocations = new HashMap<>(4);
+                ThreadLocalUtil.put(CacheConstant.CURRENT_INVOCATIONS, invocations);
+            } else if (invocations.size() >= MAX_CURRENT_INVOCATIONS) {
+                invocations.clear();
+            }
+            invocations.put(redisKey, cacheInvocation);
+        }
     }
 
     /**
-     * 解析缓存注解的SpEL表达式
+     * 构建缓存注解SpEL表达式的计算上下文
      * @param caches 缓存集合
-     * @param expression SpEL
-     * @param target 目标类
-     * @param method 模板方法
-     * @param args 方法参数
-     * @param resultType 返回值类型
-     * @return T
+     * @param context 缓存注解被拦截的上下文
+     * @return org.springframework.expression.EvaluationContext
      * @author lzc
      * @date 2021/03/10 14:48
      */
-    @SuppressWarnings("unchecked")
-    private <T> T parseCacheSpEL(Collection<Cache> caches, String expression, Object target, Method method, Object[] args, Class<T> resultType) {
-        if (StringUtils.isEmpty(expression)) {
-            if (resultType == String.class) {
-                SimpleKey simpleKey = new SimpleKey(args);
-                return (T) simpleKey.toString();
-            }
-            if (resultType == Boolean.class) {
-                return (T) Boolean.TRUE;
-            }
-        }
-        // 构建参数上下文
-        CacheExpressionRootObject rootObject = new CacheExpressionRootObject(caches, method, args, target, target.getClass());
-        EvaluationContext evaluationContext = new MethodBasedEvaluationContext(rootObject, method, args, new DefaultParameterNameDiscoverer());
-        // 计算表达式
-        return EXPRESSION_PARSER.parseExpression(expression).getValue(evaluationContext, resultType);
+    private EvaluationContext createEvaluationContext(Collection<Cache> caches, CacheOperationInvocationContext<?> context) {
+        Object target = context.getTarget();
+        CacheExpressionRootObject rootObject = new CacheExpressionRootObject(caches, context.getMethod(), context.getArgs(), target, target.getClass());
+        return new MethodBasedEvaluationContext(rootObject, context.getMethod(), context.getArgs(), PARAMETER_NAME_DISCOVERER);
     }
 
-    private String parseCacheKey(Collection<Cache> caches, TtlCacheable ttlCacheable, Object target, Method method, Object[] args) {
-        if (StringUtils.isEmpty(ttlCacheable.keyGenerator()) || !Objects.equals("ttlCacheKeyGenerator", ttlCacheable.keyGenerator())) {
-            return this.parseCacheSpEL(caches, ttlCacheable.key(), target, method, args, String.class);
+    private String parseCacheKey(CacheMethodMetadata metadata, EvaluationContext evaluationContext, Object target, Method method, Object[] args) {
+        if (!metadata.isUseKeyGenerator()) {
+            Expression keyExpression = metadata.getKeyExpression();
+            if (keyExpression == null) {
+                return new SimpleKey(args).toString();
+            }
+            return keyExpression.getValue(evaluationContext, String.class);
         }
         return ttlCacheKeyGenerator.generate(target, method, args).toString();
     }
@@ -254,4 +514,37 @@ public class TtlRedisCacheResolver extends SimpleCacheResolver {
         return redisCacheConfiguration.getKeyPrefixFor(cacheName).concat(cacheKey);
     }
 
+
+    private static final class MetadataKey {
+
+        private final BasicOperation operation;
+
+        private final Method method;
+
+        private final Class<?> targetClass;
+
+        private MetadataKey(BasicOperation operation, Method method, Class<?> targetClass) {
+            this.operation = operation;
+            this.method = method;
+            this.targetClass = targetClass;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof MetadataKey)) {
+                return false;
+            }
+            MetadataKey otherKey = (MetadataKey) other;
+            return Objects.equals(operation, otherKey.operation) && method.equals(otherKey.method)
+                    && Objects.equals(targetClass, otherKey.targetClass);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Objects.hashCode(operation) * 31 + method.hashCode()) * 31 + Objects.hashCode(targetClass);
+        }
+    }
 }
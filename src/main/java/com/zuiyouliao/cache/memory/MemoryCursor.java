@@ -0,0 +1,77 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.memory;
+
+import org.springframework.data.redis.core.Cursor;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * memory后端的SCAN游标，创建时取得全部匹配元素的快照，一轮即扫描完
+ */
+class MemoryCursor<T> implements Cursor<T> {
+
+    private final Iterator<T> iterator;
+
+    private long position;
+
+    private boolean closed;
+
+    MemoryCursor(List<T> elements) {
+        this.iterator = elements.iterator();
+    }
+
+    @Override
+    public long getCursorId() {
+        return 0L;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public Cursor<T> open() {
+        return this;
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !closed && iterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        position++;
+        return iterator.next();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,515 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.memory;
+
+import com.zuiyouliao.cache.memory.MemoryStore.Entry;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.util.ByteArrayWrapper;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DigestUtils;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * memory后端的连接，以动态代理实现RedisConnection，按命令名分派到MemoryStore
+ * <p>管道中的命令立即执行，结果在closePipeline时按顺序返回；脚本按sha1找到登记的java实现，与其它脚本互斥执行</p>
+ */
+final class MemoryRedisConnection implements InvocationHandler {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final MemoryStore store;
+
+    private RedisConnection proxy;
+
+    private List<Object> pipelineResults;
+
+    private boolean closed;
+
+    private MemoryRedisConnection(MemoryStore store) {
+        this.store = store;
+    }
+
+    static RedisConnection create(MemoryStore store) {
+        MemoryRedisConnection handler = new MemoryRedisConnection(store);
+        handler.proxy = (RedisConnection) Proxy.newProxyInstance(MemoryRedisConnection.class.getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, handler);
+        return handler.proxy;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        Object[] arguments = args == null ? new Object[0] : args;
+        if (method.getDeclaringClass() == Object.class) {
+            switch (name) {
+                case "equals": return proxy == arguments[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                default: return "MemoryRedisConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+            }
+        }
+        if (name.endsWith("Commands") && arguments.length == 0) {
+            // keyCommands()、stringCommands()等都由本连接实现
+            return proxy;
+        }
+        switch (name) {
+            case "close": closed = true; return null;
+            case "isClosed": return closed;
+            case "getNativeConnection": return store;
+            case "isQueueing": return false;
+            case "isPipelined": return pipelineResults != null;
+            case "openPipeline":
+                if (pipelineResults == null) {
+                    pipelineResults = new ArrayList<>();
+                }
+                return null;
+            case "closePipeline":
+                List<Object> results = pipelineResults == null ? Collections.emptyList() : pipelineResults;
+                pipelineResults = null;
+                return results;
+            case "isSubscribed": return false;
+            case "getSubscription": return null;
+            default:
+        }
+        if (closed) {
+            throw new InvalidDataAccessApiUsageException("Connection is closed");
+        }
+        Object result = this.execute(name, arguments);
+        if (pipelineResults != null) {
+            if (method.getReturnType() != void.class) {
+                pipelineResults.add(result);
+            }
+            return null;
+        }
+        return result;
+    }
+
+    private Object execute(String name, Object[] args) {
+        switch (name) {
+            // key
+            case "del":
+            case "unlink": return this.del((byte[][]) args[0]);
+            case "exists":
+                if (args[0] instanceof byte[][]) {
+                    long count = 0;
+                    for (byte[] key : (byte[][]) args[0]) {
+                        count += this.entry(key) == null ? 0 : 1;
+                    }
+                    return count;
+                }
+                return this.entry((byte[]) args[0]) != null;
+            case "type": return this.type((byte[]) args[0]);
+            case "keys": return this.keys((byte[]) args[0]);
+            case "expire": return this.pExpire((byte[]) args[0], TimeUnit.SECONDS.toMillis((Long) args[1]));
+            case "pExpire": return this.pExpire((byte[]) args[0], (Long) args[1]);
+            case "persist": return this.persist((byte[]) args[0]);
+            case "ttl": return this.ttl((byte[]) args[0], args.length > 1 ? (TimeUnit) args[1] : TimeUnit.SECONDS);
+            case "pTtl": return this.ttl((byte[]) args[0], args.length > 1 ? (TimeUnit) args[1] : TimeUnit.MILLISECONDS);
+            // string
+            case "get": return this.get((byte[]) args[0]);
+            case "mGet":
+                List<byte[]> values = new ArrayList<>(((byte[][]) args[0]).length);
+                for (byte[] key : (byte[][]) args[0]) {
+                    values.add(this.get(key));
+                }
+                return values;
+            case "set":
+                if (args.length == 2) {
+                    return this.set((byte[]) args[0], (byte[]) args[1], 0L, RedisStringCommands.SetOption.UPSERT);
+                }
+                Expiration expiration = (Expiration) args[2];
+                return this.set((byte[]) args[0], (byte[]) args[1],
+                        expiration == null || expiration.isPersistent() ? 0L : expiration.getExpirationTimeInMilliseconds(),
+                        (RedisStringCommands.SetOption) args[3]);
+            case "setNX": return this.set((byte[]) args[0], (byte[]) args[1], 0L, RedisStringCommands.SetOption.SET_IF_ABSENT);
+            case "setEx": return this.set((byte[]) args[0], (byte[]) args[2], TimeUnit.SECONDS.toMillis((Long) args[1]), RedisStringCommands.SetOption.UPSERT);
+            case "pSetEx": return this.set((byte[]) args[0], (byte[]) args[2], (Long) args[1], RedisStringCommands.SetOption.UPSERT);
+            case "bitField": return this.bitField((byte[]) args[0], (BitFieldSubCommands) args[1]);
+            // hash
+            case "hSet": return this.hSet((byte[]) args[0], (byte[]) args[1], (byte[]) args[2], false);
+            case "hSetNX": return this.hSet((byte[]) args[0], (byte[]) args[1], (byte[]) args[2], true);
+            case "hMSet": this.hMSet((byte[]) args[0], (Map<?, ?>) args[1]); return null;
+            case "hGet": return this.hash((byte[]) args[0]).get(new ByteArrayWrapper((byte[]) args[1]));
+            case "hMGet":
+                Map<ByteArrayWrapper, byte[]> hash = this.hash((byte[]) args[0]);
+                List<byte[]> fields = new ArrayList<>(((byte[][]) args[1]).length);
+                for (byte[] field : (byte[][]) args[1]) {
+                    fields.add(hash.get(new ByteArrayWrapper(field)));
+                }
+                return fields;
+            case "hExists": return this.hash((byte[]) args[0]).containsKey(new ByteArrayWrapper((byte[]) args[1]));
+            case "hDel": return this.hDel((byte[]) args[0], (byte[][]) args[1]);
+            case "hLen": return (long) this.hash((byte[]) args[0]).size();
+            case "hKeys": return new LinkedHashSet<>(this.hGetAll((byte[]) args[0]).keySet());
+            case "hVals": return new ArrayList<>(this.hGetAll((byte[]) args[0]).values());
+            case "hGetAll": return this.hGetAll((byte[]) args[0]);
+            case "hScan": return this.hScan((byte[]) args[0], (ScanOptions) args[1]);
+            // scripting
+            case "evalSha":
+                String sha1 = args[0] instanceof byte[] ? new String((byte[]) args[0], StandardCharsets.UTF_8) : (String) args[0];
+                return this.eval(sha1, (Integer) args[2], (byte[][]) args[3]);
+            case "eval":
+                return this.eval(DigestUtils.sha1DigestAsHex(new String((byte[]) args[0], StandardCharsets.UTF_8)),
+                        (Integer) args[2], (byte[][]) args[3]);
+            // server、pub/sub
+            case "ping": return "PONG";
+            case "dbSize": return (long) store.size();
+            case "flushDb":
+            case "flushAll": store.clear(); return null;
+            case "publish": return 0L;
+            default:
+                throw new InvalidDataAccessApiUsageException("ERR unsupported command '" + name + "' in memory backend");
+        }
+    }
+
+    private Entry entry(byte[] key) {
+        return store.get(new ByteArrayWrapper(key));
+    }
+
+    private Long del(byte[][] keys) {
+        long count = 0;
+        for (byte[] key : keys) {
+            count += store.remove(new ByteArrayWrapper(key)) ? 1 : 0;
+        }
+        return count;
+    }
+
+    private DataType type(byte[] key) {
+        Entry entry = this.entry(key);
+        if (entry == null) {
+            return DataType.NONE;
+        }
+        return entry.getValue() instanceof byte[] ? DataType.STRING : DataType.HASH;
+    }
+
+    private Set<byte[]> keys(byte[] pattern) {
+        Pattern regex = this.globPattern(pattern);
+        Set<byte[]> keys = new LinkedHashSet<>();
+        for (ByteArrayWrapper key : store.keys()) {
+            if (store.get(key) != null && regex.matcher(new String(key.getArray(), StandardCharsets.ISO_8859_1)).matches()) {
+                keys.add(key.getArray());
+            }
+        }
+        return keys;
+    }
+
+    private Boolean pExpire(byte[] key, long millis) {
+        if (millis <= 0) {
+            return store.remove(new ByteArrayWrapper(key));
+        }
+        boolean[] updated = new boolean[1];
+        store.compute(new ByteArrayWrapper(key), entry -> {
+            if (entry == null) {
+                return null;
+            }
+            updated[0] = true;
+            return new Entry(entry.getValue(), System.currentTimeMillis() + millis);
+        });
+        return updated[0];
+    }
+
+    private Boolean persist(byte[] key) {
+        boolean[] updated = new boolean[1];
+        store.compute(new ByteArrayWrapper(key), entry -> {
+            if (entry == null || entry.getExpireAt() == 0) {
+                return entry;
+            }
+            updated[0] = true;
+            return new Entry(entry.getValue(), 0L);
+        });
+        return updated[0];
+    }
+
+    /**
+     * 与redis相同：key不存在返回-2，没有过期时间返回-1
+     */
+    private Long ttl(byte[] key, TimeUnit timeUnit) {
+        Entry entry = this.entry(key);
+        if (entry == null) {
+            return -2L;
+        }
+        if (entry.getExpireAt() == 0) {
+            return -1L;
+        }
+        long remaining = Math.max(entry.getExpireAt() - System.currentTimeMillis(), 0L);
+        return timeUnit == TimeUnit.MILLISECONDS ? remaining : timeUnit.convert(remaining + 500L, TimeUnit.MILLISECONDS);
+    }
+
+    private byte[] get(byte[] key) {
+        Entry entry = this.entry(key);
+        return entry == null ? null : this.string(entry);
+    }
+
+    private Boolean set(byte[] key, byte[] value, long ttlMillis, RedisStringCommands.SetOption option) {
+        boolean[] written = new boolean[1];
+        long expireAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0L;
+        store.compute(new ByteArrayWrapper(key), entry -> {
+            if ((option == RedisStringCommands.SetOption.SET_IF_ABSENT && entry != null)
+                    || (option == RedisStringCommands.SetOption.SET_IF_PRESENT && entry == null)) {
+                return entry;
+            }
+            written[0] = true;
+            return new Entry(value, expireAt);
+        });
+        return written[0];
+    }
+
+    /**
+     * 支持GET、SET和INCRBY（WRAP、SAT、FAIL），位按大端顺序，与redis相同
+     */
+    private List<Long> bitField(byte[] key, BitFieldSubCommands commands) {
+        List<Long> results = new ArrayList<>(commands.getSubCommands().size());
+        store.compute(new ByteArrayWrapper(key), entry -> {
+            byte[] bits = entry == null ? EMPTY : this.string(entry);
+            boolean changed = false;
+            for (BitFieldSubCommands.BitFieldSubCommand command : commands) {
+                BitFieldSubCommands.BitFieldType type = command.getType();
+                int width = type.getBits();
+                BitFieldSubCommands.Offset offset = command.getOffset();
+                long bitOffset = offset.isZeroBased() ? offset.getValue() : offset.getValue() * width;
+                long current = this.readBits(bits, bitOffset, width, type.isSigned());
+                Long next;
+                if (command instanceof BitFieldSubCommands.BitFieldSet) {
+                    next = this.overflow(((BitFieldSubCommands.BitFieldSet) command).getValue(), type,
+                            BitFieldSubCommands.BitFieldIncrBy.Overflow.WRAP);
+                    results.add(current);
+                } else if (command instanceof BitFieldSubCommands.BitFieldIncrBy) {
+                    BitFieldSubCommands.BitFieldIncrBy incrBy = (BitFieldSubCommands.BitFieldIncrBy) command;
+                    next = this.overflow(current + incrBy.getValue(), type, incrBy.getOverflow());
+                    results.add(next);
+                } else {
+                    results.add(current);
+                    continue;
+                }
+                if (next != null) {
+                    bits = this.writeBits(bits, bitOffset, width, next);
+                    changed = true;
+                }
+            }
+            return changed ? new Entry(bits, entry == null ? 0L : entry.getExpireAt()) : entry;
+        });
+        return results;
+    }
+
+    private long readBits(byte[] bits, long offset, int width, boolean signed) {
+        long value = 0;
+        for (int i = 0; i < width; i++) {
+            long position = offset + i;
+            int index = (int) (position >>> 3);
+            int bit = index < bits.length ? (bits[index] >> (7 - (int) (position & 7))) & 1 : 0;
+            value = (value << 1) | bit;
+        }
+        if (signed && width < 64 && (value & (1L << (width - 1))) != 0) {
+            value -= 1L << width;
+        }
+        return value;
+    }
+
+    /**
+     * 写入时复制，存储中的字节数组不会被修改
+     */
+    private byte[] writeBits(byte[] bits, long offset, int width, long value) {
+        byte[] written = Arrays.copyOf(bits, Math.max(bits.length, (int) ((offset + width + 7) >>> 3)));
+        for (int i = 0; i < width; i++) {
+            long position = offset + i;
+            int index = (int) (position >>> 3);
+            int mask = 1 << (7 - (int) (position & 7));
+            if (((value >>> (width - 1 - i)) & 1) != 0) {
+                written[index] |= mask;
+            } else {
+                written[index] &= ~mask;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 按溢出策略处理超出类型范围的值，FAIL时返回null（不写入）
+     */
+    private Long overflow(long value, BitFieldSubCommands.BitFieldType type, BitFieldSubCommands.BitFieldIncrBy.Overflow overflow) {
+        int width = type.getBits();
+        long min = type.isSigned() ? -(1L << (width - 1)) : 0L;
+        long max = type.isSigned() ? (1L << (width - 1)) - 1 : (width >= 64 ? Long.MAX_VALUE : (1L << width) - 1);
+        if (value >= min && value <= max) {
+            return value;
+        }
+        if (overflow == BitFieldSubCommands.BitFieldIncrBy.Overflow.SAT) {
+            return value < min ? min : max;
+        }
+        if (overflow == BitFieldSubCommands.BitFieldIncrBy.Overflow.FAIL) {
+            return null;
+        }
+        if (width >= 64) {
+            return value;
+        }
+        int shift = 64 - width;
+        return type.isSigned() ? (value << shift) >> shift : value & ((1L << width) - 1);
+    }
+
+    private Boolean hSet(byte[] key, byte[] field, byte[] value, boolean ifAbsent) {
+        boolean[] created = new boolean[1];
+        store.compute(new ByteArrayWrapper(key), entry -> {
+            Entry hashEntry = entry == null ? new Entry(new ConcurrentHashMap<ByteArrayWrapper, byte[]>(16), 0L) : entry;
+            Map<ByteArrayWrapper, byte[]> hash = this.hash(hashEntry);
+            ByteArrayWrapper wrappedField = new ByteArrayWrapper(field);
+            if (ifAbsent) {
+                created[0] = hash.putIfAbsent(wrappedField, value) == null;
+            } else {
+                created[0] = hash.put(wrappedField, value) == null;
+            }
+            return hashEntry;
+        });
+        return created[0];
+    }
+
+    private void hMSet(byte[] key, Map<?, ?> values) {
+        store.compute(new ByteArrayWrapper(key), entry -> {
+            Entry hashEntry = entry == null ? new Entry(new ConcurrentHashMap<ByteArrayWrapper, byte[]>(16), 0L) : entry;
+            Map<ByteArrayWrapper, byte[]> hash = this.hash(hashEntry);
+            for (Map.Entry<?, ?> value : values.entrySet()) {
+                hash.put(new ByteArrayWrapper((byte[]) value.getKey()), (byte[]) value.getValue());
+            }
+            return hashEntry;
+        });
+    }
+
+    private Long hDel(byte[] key, byte[][] fields) {
+        long[] count = new long[1];
+        store.compute(new ByteArrayWrapper(key), entry -> {
+            if (entry == null) {
+                return null;
+            }
+            Map<ByteArrayWrapper, byte[]> hash = this.hash(entry);
+            for (byte[] field : fields) {
+                count[0] += hash.remove(new ByteArrayWrapper(field)) == null ? 0 : 1;
+            }
+            // 与redis相同，hash为空时删除key
+            return hash.isEmpty() ? null : entry;
+        });
+        return count[0];
+    }
+
+    private Map<byte[], byte[]> hGetAll(byte[] key) {
+        Map<ByteArrayWrapper, byte[]> hash = this.hash(key);
+        Map<byte[], byte[]> values = new LinkedHashMap<>(hash.size() * 2);
+        for (Map.Entry<ByteArrayWrapper, byte[]> entry : hash.entrySet()) {
+            values.put(entry.getKey().getArray(), entry.getValue());
+        }
+        return values;
+    }
+
+    private MemoryCursor<Map.Entry<byte[], byte[]>> hScan(byte[] key, ScanOptions options) {
+        String pattern = options == null ? null : options.getPattern();
+        Pattern regex = pattern == null ? null : this.globPattern(pattern.getBytes(StandardCharsets.UTF_8));
+        List<Map.Entry<byte[], byte[]>> matched = new ArrayList<>();
+        for (Map.Entry<ByteArrayWrapper, byte[]> entry : this.hash(key).entrySet()) {
+            byte[] field = entry.getKey().getArray();
+            if (regex == null || regex.matcher(new String(field, StandardCharsets.ISO_8859_1)).matches()) {
+                matched.add(new AbstractMap.SimpleImmutableEntry<>(field, entry.getValue()));
+            }
+        }
+        return new MemoryCursor<>(matched);
+    }
+
+    private Object eval(String sha1, int numKeys, byte[][] keysAndArgs) {
+        MemoryScript script = MemoryRedisConnectionFactory.script(sha1);
+        if (script == null) {
+            throw new InvalidDataAccessApiUsageException("NOSCRIPT No matching script in memory backend: " + sha1);
+        }
+        List<byte[]> all = Arrays.asList(keysAndArgs);
+        synchronized (store.scriptMonitor()) {
+            return script.execute(proxy, all.subList(0, numKeys), all.subList(numKeys, all.size()));
+        }
+    }
+
+    private Map<ByteArrayWrapper, byte[]> hash(byte[] key) {
+        Entry entry = this.entry(key);
+        return entry == null ? Collections.emptyMap() : this.hash(entry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentMap<ByteArrayWrapper, byte[]> hash(Entry entry) {
+        if (!(entry.getValue() instanceof ConcurrentMap)) {
+            throw new InvalidDataAccessApiUsageException("WRONGTYPE Operation against a key holding the wrong kind of value");
+        }
+        return (ConcurrentMap<ByteArrayWrapper, byte[]>) entry.getValue();
+    }
+
+    private byte[] string(Entry entry) {
+        if (!(entry.getValue() instanceof byte[])) {
+            throw new InvalidDataAccessApiUsageException("WRONGTYPE Operation against a key holding the wrong kind of value");
+        }
+        return (byte[]) entry.getValue();
+    }
+
+    /**
+     * redis的glob（*、?、[...]和\转义）转为正则，按字节匹配
+     */
+    private Pattern globPattern(byte[] pattern) {
+        String glob = new String(pattern, StandardCharsets.ISO_8859_1);
+        StringBuilder regex = new StringBuilder(glob.length() + 8);
+        boolean inClass = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\' && i + 1 < glob.length()) {
+                regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+            } else if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                    regex.append(']');
+                } else if (c == '^' && regex.charAt(regex.length() - 1) == '[' || c == '-') {
+                    regex.append(c);
+                } else {
+                    regex.append(Character.isLetterOrDigit(c) ? String.valueOf(c) : "\\" + c);
+                }
+            } else if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else if (c == '[') {
+                inClass = true;
+                regex.append('[');
+            } else {
+                regex.append(Character.isLetterOrDigit(c) ? String.valueOf(c) : "\\" + c);
+            }
+        }
+        if (inClass) {
+            regex.append(']');
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.memory;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * memory后端的连接工厂，连接直接读写进程内的MemoryStore，缓存写入、自动刷新和访问记录都无需修改即可使用
+ * <p>只实现了本项目用到的命令（字符串、hash、key过期、BITFIELD以及已登记的脚本），其它命令抛出InvalidDataAccessApiUsageException；
+ * PUBLISH没有订阅者，总是返回0</p>
+ * <p>不注册为bean，避免与项目自己的RedisConnectionFactory冲突</p>
+ */
+public class MemoryRedisConnectionFactory implements RedisConnectionFactory {
+
+    /**
+     * 脚本的sha1 -> java实现
+     */
+    private static final ConcurrentMap<String, MemoryScript> SCRIPTS = new ConcurrentHashMap<>(8);
+
+    private final MemoryStore store;
+
+    public MemoryRedisConnectionFactory(MemoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * 登记脚本在memory后端的java实现，执行该脚本（EVALSHA或EVAL）时调用
+     *
+     * @param script       redis脚本
+     * @param memoryScript java实现
+     */
+    public static void registerScript(RedisScript<?> script, MemoryScript memoryScript) {
+        SCRIPTS.put(script.getSha1(), memoryScript);
+    }
+
+    static MemoryScript script(String sha1) {
+        return SCRIPTS.get(sha1);
+    }
+
+    public MemoryStore getStore() {
+        return store;
+    }
+
+    @Override
+    public RedisConnection getConnection() {
+        return MemoryRedisConnection.create(store);
+    }
+
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        throw new InvalidDataAccessApiUsageException("Memory backend does not support cluster connections");
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return true;
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        throw new InvalidDataAccessApiUsageException("Memory backend does not support sentinel connections");
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return ex instanceof DataAccessException ? (DataAccessException) ex : null;
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.memory;
+
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.util.List;
+
+/**
+ * redis脚本在memory后端的java实现，与脚本一起通过MemoryRedisConnectionFactory.registerScript登记
+ */
+@FunctionalInterface
+public interface MemoryScript {
+
+    /**
+     * 执行脚本，与其它脚本互斥
+     *
+     * @param connection memory后端的连接
+     * @param keys       KEYS
+     * @param args       ARGV
+     * @return java.lang.Object 与脚本的返回值相同，整数为Long
+     */
+    Object execute(RedisConnection connection, List<byte[]> keys, List<byte[]> args);
+}
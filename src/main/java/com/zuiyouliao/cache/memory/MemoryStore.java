@@ -0,0 +1,285 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.memory;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.connection.util.ByteArrayWrapper;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * memory后端的进程内存储，按redis的数据模型保存字符串和hash，每个key可以有各自的过期时间
+ * <p>过期的条目在读取时视为不存在，并由后台线程按z-cache.backend.sweep-interval定期清理；
+ * 单个命令的修改在ConcurrentHashMap的compute中完成，对同一个key是原子的</p>
+ * <p>条目数超过z-cache.backend.maximum-size时按近似LRU淘汰：与redis的maxmemory-samples类似，每次从上次停下的位置抽样若干字符串条目，
+ * 优先淘汰已过期的，否则淘汰其中最久未读取的；hash（自刷缓存登记、访问记录等）不淘汰，因此条目数只是近似的上限</p>
+ */
+public class MemoryStore implements InitializingBean, DisposableBean {
+
+    private final Logger logger = LoggerFactory.getLogger(MemoryStore.class);
+
+    private final ConcurrentMap<ByteArrayWrapper, Entry> entries = new ConcurrentHashMap<>(256);
+
+    /**
+     * 脚本的java实现之间互斥，对应redis脚本执行期间不穿插其它脚本
+     */
+    private final Object scriptMonitor = new Object();
+
+    private final long sweepInterval;
+
+    /**
+     * 最大条目数，小于等于0时不限制
+     */
+    private final int maximumSize;
+
+    /**
+     * 每次淘汰抽样的条目数
+     */
+    private static final int EVICTION_SAMPLES = 16;
+
+    /**
+     * 同时只有一个线程淘汰，其它线程写入后不等待
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * 抽样的位置，在evictionLock内访问；ConcurrentHashMap的迭代器是弱一致的，遍历完后从头开始
+     */
+    private Iterator<Map.Entry<ByteArrayWrapper, Entry>> evictionCursor;
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private ScheduledExecutorService sweeper;
+
+    public MemoryStore(long sweepInterval, int maximumSize) {
+        this.sweepInterval = sweepInterval;
+        this.maximumSize = maximumSize;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (sweepInterval <= 0) {
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(CacheConstant.MEMORY_SWEEPER_THREAD);
+        threadFactory.setDaemon(true);
+        sweeper = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        entries.clear();
+    }
+
+    /**
+     * 清理已过期的条目
+     *
+     * @return int 清理的条数
+     */
+    public int sweep() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        try {
+            for (Map.Entry<ByteArrayWrapper, Entry> entry : entries.entrySet()) {
+                if (entry.getValue().isExpired(now) && entries.remove(entry.getKey(), entry.getValue())) {
+                    removed++;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("MemoryStore sweep fail", e);
+        }
+        return removed;
+    }
+
+    /**
+     * 条目数，包括尚未清理的过期条目
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 超过最大条目数被淘汰的条数
+     */
+    public long evictionCount() {
+        return evictionCount.get();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    Entry get(ByteArrayWrapper key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (entry.isExpired(now)) {
+            entries.remove(key, entry);
+            return null;
+        }
+        entry.touch();
+        return entry;
+    }
+
+    /**
+     * 原子地修改一个key，过期的条目按不存在传入，返回null时删除该key；超过最大条目数时淘汰
+     */
+    Entry compute(ByteArrayWrapper key, UnaryOperator<Entry> function) {
+        Entry computed = entries.compute(key, (k, entry) ->
+                function.apply(entry == null || entry.isExpired(System.currentTimeMillis()) ? null : entry));
+        if (maximumSize > 0 && entries.size() > maximumSize) {
+            this.evict();
+        }
+        return computed;
+    }
+
+    /**
+     * 淘汰到不超过最大条目数，没有可淘汰的字符串条目时停止
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            while (entries.size() > maximumSize) {
+                Map.Entry<ByteArrayWrapper, Entry> victim = this.sample(System.currentTimeMillis());
+                if (victim == null) {
+                    return;
+                }
+                if (entries.remove(victim.getKey(), victim.getValue())) {
+                    evictionCount.incrementAndGet();
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("MemoryStore evict fail", e);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 抽样选出淘汰的条目：抽取若干字符串条目，已过期的直接返回，否则返回其中最久未读取的
+     */
+    private Map.Entry<ByteArrayWrapper, Entry> sample(long now) {
+        Map.Entry<ByteArrayWrapper, Entry> victim = null;
+        boolean restarted = false;
+        int sampled = 0;
+        while (sampled < EVICTION_SAMPLES) {
+            if (evictionCursor == null || !evictionCursor.hasNext()) {
+                if (restarted) {
+                    break;
+                }
+                // 一次抽样最多从头开始一次，条目少于抽样数时不重复抽取
+                evictionCursor = entries.entrySet().iterator();
+                restarted = true;
+                if (!evictionCursor.hasNext()) {
+                    break;
+                }
+            }
+            Map.Entry<ByteArrayWrapper, Entry> candidate = evictionCursor.next();
+            Entry entry = candidate.getValue();
+            if (!(entry.getValue() instanceof byte[])) {
+                continue;
+            }
+            sampled++;
+            if (entry.isExpired(now)) {
+                return candidate;
+            }
+            if (victim == null || entry.getAccessedAt() - victim.getValue().getAccessedAt() < 0) {
+                victim = candidate;
+            }
+        }
+        return victim;
+    }
+
+    boolean remove(ByteArrayWrapper key) {
+        Entry removed = entries.remove(key);
+        return removed != null && !removed.isExpired(System.currentTimeMillis());
+    }
+
+    Set<ByteArrayWrapper> keys() {
+        return entries.keySet();
+    }
+
+    Object scriptMonitor() {
+        return scriptMonitor;
+    }
+
+    /**
+     * 一个key的值：字符串为byte[]，hash为ConcurrentMap&lt;ByteArrayWrapper, byte[]&gt;；值本身不可修改，hash只在compute中修改
+     */
+    static final class Entry {
+
+        private final Object value;
+
+        /**
+         * 过期的时间戳（毫秒），0表示不过期
+         */
+        private final long expireAt;
+
+        /**
+         * 最近读取（或写入）的System.nanoTime，用于淘汰；毫秒在密集读写时区分不出先后
+         */
+        private volatile long accessedAt;
+
+        Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+            this.accessedAt = System.nanoTime();
+        }
+
+        Object getValue() {
+            return value;
+        }
+
+        long getExpireAt() {
+            return expireAt;
+        }
+
+        long getAccessedAt() {
+            return accessedAt;
+        }
+
+        void touch() {
+            accessedAt = System.nanoTime();
+        }
+
+        boolean isExpired(long now) {
+            return expireAt > 0 && expireAt <= now;
+        }
+    }
+}
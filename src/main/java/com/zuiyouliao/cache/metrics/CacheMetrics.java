@@ -0,0 +1,80 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.metrics;
+
+/**
+ * 缓存指标
+ * <p>默认实现不做任何事；存在MeterRegistry时使用Micrometer实现，见{@link MicrometerCacheMetrics}</p>
+ */
+public interface CacheMetrics {
+
+    /**
+     * 不记录任何指标
+     */
+    CacheMetrics NOOP = new CacheMetrics() {};
+
+    /**
+     * 是否记录指标，未开启时缓存不需要为指标额外计算
+     */
+    default boolean isEnabled() {
+        return false;
+    }
+
+    /**
+     * 命中
+     * @param cacheName 缓存名称
+     */
+    default void recordHit(String cacheName) {}
+
+    /**
+     * 未命中
+     * @param cacheName 缓存名称
+     */
+    default void recordMiss(String cacheName) {}
+
+    /**
+     * 未命中后加载（调用方法）的耗时
+     * @param cacheName 缓存名称
+     * @param nanos 纳秒
+     */
+    default void recordLoad(String cacheName, long nanos) {}
+
+    /**
+     * 写入redis的序列化后大小
+     * @param cacheName 缓存名称
+     * @param bytes 字节数
+     */
+    default void recordValueSize(String cacheName, int bytes) {}
+
+    /**
+     * 刷新任务提交到线程池
+     * @param task 任务类型：refresh（自动刷新）或recompute（提前重算）
+     */
+    default void recordSubmitted(String task) {}
+
+    /**
+     * 刷新任务被线程池拒绝
+     * @param task 任务类型：refresh（自动刷新）或recompute（提前重算）
+     */
+    default void recordRejected(String task) {}
+
+    /**
+     * 一个周期的耗时
+     * @param task 任务类型：refresh（刷新）或clean（清理超期未访问的自刷缓存）
+     * @param nanos 纳秒
+     */
+    default void recordTick(String task, long nanos) {}
+}
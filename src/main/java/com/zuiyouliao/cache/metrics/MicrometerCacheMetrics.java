@@ -0,0 +1,253 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.metrics;
+
+import com.zuiyouliao.cache.core.SingleFlight;
+import com.zuiyouliao.cache.core.TtlRedisCacheResolver;
+import com.zuiyouliao.cache.prop.MetricsProperties;
+import com.zuiyouliao.cache.task.CacheAccessRegistrar;
+import com.zuiyouliao.cache.task.CacheInvokerRegistry;
+import com.zuiyouliao.cache.task.CacheRefresher;
+import com.zuiyouliao.cache.task.RefreshScheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 基于Micrometer的缓存指标
+ * <p>每个缓存名称的计量器只创建一次，记录时不再查找注册表；线程池和各登记表的大小使用Gauge，
+ * 只在采集时读取，不增加请求线程的开销</p>
+ * <ul>
+ *     <li>z-cache.gets：命中和未命中次数，标签cache、result（hit、miss）</li>
+ *     <li>z-cache.loads：未命中后加载的耗时，标签cache</li>
+ *     <li>z-cache.value.size：写入redis的序列化后大小，标签cache</li>
+ *     <li>z-cache.refresh.tasks：刷新任务提交和拒绝次数，标签task（refresh、recompute）、result（submitted、rejected）</li>
+ *     <li>z-cache.refresh.tick：每个周期的耗时，标签task（refresh、clean）</li>
+ *     <li>z-cache.refresh.pool.*：刷新线程池的队列长度、活跃线程数和线程数</li>
+ *     <li>z-cache.registry.size：各登记表的大小，标签registry</li>
+ *     <li>z-cache.access.*：访问记录的缓冲区大小、刷入和丢弃条数</li>
+ * </ul>
+ * <p>z-cache.loads和z-cache.value.size默认只发布次数、总量和最大值；z-cache.metrics.histogram = true时才发布百分位直方图，
+ * 桶的范围限定在配置的上限内，避免缓存名称多时计量器数量膨胀</p>
+ */
+public class MicrometerCacheMetrics implements CacheMetrics, SmartInitializingSingleton, BeanFactoryAware {
+
+    private static final String PREFIX = "z-cache.";
+
+    private static final String TAG_CACHE = "cache";
+
+    private static final String TAG_TASK = "task";
+
+    private static final String TAG_RESULT = "result";
+
+    private final MeterRegistry meterRegistry;
+
+    private final MetricsProperties metricsProperties;
+
+    private final ConcurrentMap<String, CacheMeters> cacheMeters = new ConcurrentHashMap<>(16);
+
+    private final ConcurrentMap<String, TaskMeters> taskMeters = new ConcurrentHashMap<>(4);
+
+    private final ConcurrentMap<String, Timer> tickTimers = new ConcurrentHashMap<>(4);
+
+    private ListableBeanFactory beanFactory;
+
+    public MicrometerCacheMetrics(MeterRegistry meterRegistry, MetricsProperties metricsProperties) {
+        this.meterRegistry = meterRegistry;
+        this.metricsProperties = metricsProperties;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void recordHit(String cacheName) {
+        this.cacheMeters(cacheName).hits.increment();
+    }
+
+    @Override
+    public void recordMiss(String cacheName) {
+        this.cacheMeters(cacheName).misses.increment();
+    }
+
+    @Override
+    public void recordLoad(String cacheName, long nanos) {
+        this.cacheMeters(cacheName).loads.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordValueSize(String cacheName, int bytes) {
+        this.cacheMeters(cacheName).valueSize.record(bytes);
+    }
+
+    @Override
+    public void recordSubmitted(String task) {
+        this.taskMeters(task).submitted.increment();
+    }
+
+    @Override
+    public void recordRejected(String task) {
+        this.taskMeters(task).rejected.increment();
+    }
+
+    @Override
+    public void recordTick(String task, long nanos) {
+        Timer timer = tickTimers.get(task);
+        if (timer == null) {
+            timer = tickTimers.computeIfAbsent(task, name -> Timer.builder(PREFIX + "refresh.tick").tag(TAG_TASK, name)
+                    .description("每个周期的耗时").register(meterRegistry));
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private CacheMeters cacheMeters(String cacheName) {
+        CacheMeters meters = cacheMeters.get(cacheName);
+        if (meters == null) {
+            meters = cacheMeters.computeIfAbsent(cacheName, name -> new CacheMeters(meterRegistry, metricsProperties, name));
+        }
+        return meters;
+    }
+
+    private TaskMeters taskMeters(String task) {
+        TaskMeters meters = taskMeters.get(task);
+        if (meters == null) {
+            meters = taskMeters.computeIfAbsent(task, name -> new TaskMeters(meterRegistry, name));
+        }
+        return meters;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = (ListableBeanFactory) beanFactory;
+    }
+
+    /**
+     * 所有单例创建完后再绑定Gauge，避免与被观测的bean循环依赖
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        ThreadPoolExecutor executor = this.getBean("cacheThreadPoolExecutor", ThreadPoolExecutor.class);
+        if (executor != null) {
+            Gauge.builder(PREFIX + "refresh.pool.queue", executor, e -> e.getQueue().size())
+                    .description("刷新线程池的队列长度").register(meterRegistry);
+            Gauge.builder(PREFIX + "refresh.pool.active", executor, ThreadPoolExecutor::getActiveCount)
+                    .description("刷新线程池的活跃线程数").register(meterRegistry);
+            Gauge.builder(PREFIX + "refresh.pool.size", executor, ThreadPoolExecutor::getPoolSize)
+                    .description("刷新线程池的线程数").register(meterRegistry);
+        }
+        RefreshScheduler scheduler = this.getBean("refreshScheduler", RefreshScheduler.class);
+        if (scheduler != null) {
+            Gauge.builder(PREFIX + "refresh.limit", scheduler, RefreshScheduler::getLimit)
+                    .description("自动刷新的当前并发上限").register(meterRegistry);
+            Gauge.builder(PREFIX + "refresh.in-flight", scheduler, RefreshScheduler::getInFlight)
+                    .description("正在执行的自动刷新数量").register(meterRegistry);
+        }
+        this.registrySize("registered", this.getBean("cacheRefresher", CacheRefresher.class), CacheRefresher::getRegisteredSize);
+        this.registrySize("recomputing", this.getBean("cacheRefresher", CacheRefresher.class), CacheRefresher::getRecomputingSize);
+        this.registrySize("wheel", this.getBean("cacheRefresher", CacheRefresher.class), CacheRefresher::getWheelSize);
+        this.registrySize("invokers", this.getBean("cacheInvokerRegistry", CacheInvokerRegistry.class), CacheInvokerRegistry::size);
+        this.registrySize("single-flights", this.getBean("singleFlight", SingleFlight.class), SingleFlight::getInFlightSize);
+        TtlRedisCacheResolver resolver = this.getBean("ttlRedisCacheResolver", TtlRedisCacheResolver.class);
+        this.registrySize("metadata", resolver, TtlRedisCacheResolver::getMetadataSize);
+        this.registrySize("caches", resolver, TtlRedisCacheResolver::getCacheSize);
+        if (resolver != null) {
+            this.functionCounter("registry.evictions", resolver, TtlRedisCacheResolver::getCacheEvictionCount, "缓存登记表淘汰的RedisCache数量");
+        }
+        CacheAccessRegistrar accessRegistrar = this.getBean("cacheAccessRegistrar", CacheAccessRegistrar.class);
+        if (accessRegistrar != null) {
+            Gauge.builder(PREFIX + "access.buffer", accessRegistrar, CacheAccessRegistrar::getBufferSize)
+                    .description("访问记录缓冲区的条数").register(meterRegistry);
+            this.functionCounter("access.flushed", accessRegistrar, CacheAccessRegistrar::getFlushedEntries, "刷入redis的访问记录条数");
+            this.functionCounter("access.dropped", accessRegistrar, CacheAccessRegistrar::getDroppedEntries, "缓冲区已满被丢弃的访问记录条数");
+            this.functionCounter("access.flush.failures", accessRegistrar, CacheAccessRegistrar::getFailedFlushes, "访问记录刷入失败次数");
+        }
+    }
+
+    private <T> void registrySize(String registry, T target, ToDoubleFunction<T> size) {
+        if (target != null) {
+            Gauge.builder(PREFIX + "registry.size", target, size).tag("registry", registry)
+                    .description("登记表的大小").register(meterRegistry);
+        }
+    }
+
+    private <T> void functionCounter(String name, T target, Function<T, Long> count, String description) {
+        FunctionCounter.builder(PREFIX + name, target, t -> count.apply(t)).description(description).register(meterRegistry);
+    }
+
+    private <T> T getBean(String name, Class<T> type) {
+        // 被覆盖成其它类型的bean不观测
+        return beanFactory.containsBean(name) && beanFactory.isTypeMatch(name, type) ? beanFactory.getBean(name, type) : null;
+    }
+
+    private static class CacheMeters {
+
+        private final Counter hits;
+
+        private final Counter misses;
+
+        private final Timer loads;
+
+        private final DistributionSummary valueSize;
+
+        CacheMeters(MeterRegistry meterRegistry, MetricsProperties properties, String cacheName) {
+            boolean histogram = properties.isHistogram();
+            this.hits = Counter.builder(PREFIX + "gets").tag(TAG_CACHE, cacheName).tag(TAG_RESULT, "hit")
+                    .description("缓存命中次数").register(meterRegistry);
+            this.misses = Counter.builder(PREFIX + "gets").tag(TAG_CACHE, cacheName).tag(TAG_RESULT, "miss")
+                    .description("缓存未命中次数").register(meterRegistry);
+            this.loads = Timer.builder(PREFIX + "loads").tag(TAG_CACHE, cacheName).publishPercentileHistogram(histogram)
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofMillis(Math.max(1L, properties.getLoadMaxExpected())))
+                    .description("未命中后加载的耗时").register(meterRegistry);
+            this.valueSize = DistributionSummary.builder(PREFIX + "value.size").tag(TAG_CACHE, cacheName).baseUnit("bytes")
+                    .publishPercentileHistogram(histogram).minimumExpectedValue(1L)
+                    .maximumExpectedValue(Math.max(1L, properties.getValueSizeMaxExpected()))
+                    .description("写入redis的序列化后大小").register(meterRegistry);
+        }
+    }
+
+    private static class TaskMeters {
+
+        private final Counter submitted;
+
+        private final Counter rejected;
+
+        TaskMeters(MeterRegistry meterRegistry, String task) {
+            this.submitted = Counter.builder(PREFIX + "refresh.tasks").tag(TAG_TASK, task).tag(TAG_RESULT, "submitted")
+                    .description("提交到刷新线程池的任务数").register(meterRegistry);
+            this.rejected = Counter.builder(PREFIX + "refresh.tasks").tag(TAG_TASK, task).tag(TAG_RESULT, "rejected")
+                    .description("被刷新线程池拒绝的任务数").register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.prop;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 缓存访问记录配置
+ */
+@ConfigurationProperties(prefix = CacheConstant.ACCESS_PREFIX)
+public class AccessProperties {
+
+    /**
+     * 访问时间刷入redis的周期（毫秒）
+     */
+    private long flushInterval = 1000L;
+
+    /**
+     * 每批写入redis的条数，缓冲区达到该数量时提前刷入
+     */
+    private int batchSize = 500;
+
+    /**
+     * 缓冲区最大条数，超出后丢弃新的key
+     */
+    private int maxBufferSize = 10000;
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    public void setMaxBufferSize(int maxBufferSize) {
+        this.maxBufferSize = maxBufferSize;
+    }
+}
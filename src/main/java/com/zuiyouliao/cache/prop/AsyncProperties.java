@@ -0,0 +1,65 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.prop;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 异步方法缓存配置
+ */
+@ConfigurationProperties(prefix = CacheConstant.ASYNC_PREFIX)
+public class AsyncProperties {
+
+    /**
+     * 是否开启异步方法缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 未命中时调用CompletableFuture、CompletionStage方法的Executor bean名称，为空时使用ForkJoinPool.commonPool
+     */
+    private String executor;
+
+    /**
+     * 是否在调用线程上同步读取缓存并调用CompletableFuture、CompletionStage方法，保留线程绑定的状态但会阻塞调用线程
+     */
+    private boolean callerThread = false;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(String executor) {
+        this.executor = executor;
+    }
+
+    public boolean isCallerThread() {
+        return callerThread;
+    }
+
+    public void setCallerThread(boolean callerThread) {
+        this.callerThread = callerThread;
+    }
+}
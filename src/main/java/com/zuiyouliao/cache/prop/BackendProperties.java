@@ -0,0 +1,66 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.prop;
+
+import com.zuiyouliao.cache.constant.BackendType;
+import com.zuiyouliao.cache.constant.CacheConstant;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 缓存存储后端配置
+ */
+@ConfigurationProperties(prefix = CacheConstant.BACKEND_PREFIX)
+public class BackendProperties {
+
+    /**
+     * 存储后端，默认redis；memory时缓存值、自刷缓存登记和访问记录都保存在进程内，不需要redis
+     */
+    private BackendType type = BackendType.redis;
+
+    /**
+     * memory后端清理过期条目的周期（毫秒），读取时也会检查过期，默认1000
+     */
+    private long sweepInterval = 1000L;
+
+    /**
+     * memory后端的最大条目数，超过后按近似LRU淘汰缓存值（hash不淘汰），小于等于0时不限制，默认100000
+     */
+    private int maximumSize = 100000;
+
+    public BackendType getType() {
+        return type;
+    }
+
+    public void setType(BackendType type) {
+        this.type = type;
+    }
+
+    public long getSweepInterval() {
+        return sweepInterval;
+    }
+
+    public void setSweepInterval(long sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.prop;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 自动刷新集群分区配置
+ */
+@ConfigurationProperties(prefix = CacheConstant.CLUSTER_PREFIX)
+public class ClusterProperties {
+
+    /**
+     * 是否开启集群分区刷新，默认：false；开启后每个节点只刷新分配给自己的自刷缓存
+     */
+    private boolean enabled = false;
+
+    /**
+     * 心跳周期（毫秒）
+     */
+    private long heartbeatInterval = 5000L;
+
+    /**
+     * 节点超时时间（毫秒），超过该时间没有心跳的节点视为下线
+     */
+    private long nodeTimeout = 15000L;
+
+    /**
+     * 一致性哈希环上每个节点的虚拟节点数
+     */
+    private int virtualNodes = 160;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public void setHeartbeatInterval(long heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    public long getNodeTimeout() {
+        return nodeTimeout;
+    }
+
+    public void setNodeTimeout(long nodeTimeout) {
+        this.nodeTimeout = nodeTimeout;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+}
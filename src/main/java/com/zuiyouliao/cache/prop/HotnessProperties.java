@@ -0,0 +1,91 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.prop;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 访问热度配置
+ */
+@ConfigurationProperties(prefix = CacheConstant.HOTNESS_PREFIX)
+public class HotnessProperties {
+
+    /**
+     * 是否按访问热度筛选自动刷新的缓存
+     */
+    private boolean enabled = false;
+
+    /**
+     * 频率草图每行的计数器数量，向上取2的幂；所有节点必须一致，修改后需删除redis中的草图
+     */
+    private int width = 8192;
+
+    /**
+     * 草图老化（所有计数减半）的周期（毫秒）
+     */
+    private long agingInterval = 600000L;
+
+    /**
+     * 估算访问次数不低于该值才自动刷新
+     */
+    private int threshold = 1;
+
+    /**
+     * 每个刷新周期每个节点最多刷新的缓存数量，优先刷新最热的，0表示不限制
+     */
+    private int topN = 0;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public long getAgingInterval() {
+        return agingInterval;
+    }
+
+    public void setAgingInterval(long agingInterval) {
+        this.agingInterval = agingInterval;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getTopN() {
+        return topN;
+    }
+
+    public void setTopN(int topN) {
+        this.topN = topN;
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.prop;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.constant.KeyGeneratorType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 缓存key配置
+ */
+@ConfigurationProperties(prefix = CacheConstant.KEY_PREFIX)
+public class KeyProperties {
+
+    /**
+     * 默认key生成器的参数哈希方式，默认：hashcode
+     */
+    private KeyGeneratorType generator = KeyGeneratorType.hashcode;
+
+    public KeyGeneratorType getGenerator() {
+        return generator;
+    }
+
+    public void setGenerator(KeyGeneratorType generator) {
+        this.generator = generator;
+    }
+}
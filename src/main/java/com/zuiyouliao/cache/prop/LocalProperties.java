@@ -0,0 +1,65 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.prop;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 本地（L1）缓存配置
+ */
+@ConfigurationProperties(prefix = CacheConstant.LOCAL_PREFIX)
+public class LocalProperties {
+
+    /**
+     * 是否开启本地缓存，默认：false；开启后@TtlCacheable的local = true才生效
+     */
+    private boolean enabled = false;
+
+    /**
+     * 每个缓存的本地最大条数
+     */
+    private long maximumSize = 1000L;
+
+    /**
+     * 本地缓存最长存活时间（秒），实际存活时间取该值与注解ttl的较小值
+     */
+    private long ttl = 60L;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+}
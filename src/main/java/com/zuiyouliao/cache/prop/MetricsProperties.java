@@ -0,0 +1,78 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.prop;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 缓存指标配置
+ */
+@ConfigurationProperties(prefix = CacheConstant.METRICS_PREFIX)
+public class MetricsProperties {
+
+    /**
+     * 是否开启缓存指标（存在MeterRegistry时）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 是否为按缓存名称统计的加载耗时和序列化后大小发布百分位直方图；每个缓存名称会多出几十个桶，默认关闭
+     */
+    private boolean histogram = false;
+
+    /**
+     * 加载耗时直方图的上限（毫秒），超出的记录落在最后一个桶
+     */
+    private long loadMaxExpected = 10000L;
+
+    /**
+     * 序列化后大小直方图的上限（字节），超出的记录落在最后一个桶
+     */
+    private long valueSizeMaxExpected = 1048576L;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isHistogram() {
+        return histogram;
+    }
+
+    public void setHistogram(boolean histogram) {
+        this.histogram = histogram;
+    }
+
+    public long getLoadMaxExpected() {
+        return loadMaxExpected;
+    }
+
+    public void setLoadMaxExpected(long loadMaxExpected) {
+        this.loadMaxExpected = loadMaxExpected;
+    }
+
+    public long getValueSizeMaxExpected() {
+        return valueSizeMaxExpected;
+    }
+
+    public void setValueSizeMaxExpected(long valueSizeMaxExpected) {
+        this.valueSizeMaxExpected = valueSizeMaxExpected;
+    }
+}
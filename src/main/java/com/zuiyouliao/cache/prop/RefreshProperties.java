@@ -0,0 +1,158 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.prop;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.constant.RefreshMode;
+import com.zuiyouliao.cache.constant.RefreshPriority;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 自动刷新调度配置
+ */
+@ConfigurationProperties(prefix = CacheConstant.REFRESH_PREFIX)
+public class RefreshProperties {
+
+    /**
+     * 调度方式，默认：cron
+     */
+    private RefreshMode mode = RefreshMode.cron;
+
+    /**
+     * wheel模式在缓存过期前多久刷新（毫秒），不超过ttl的一半
+     */
+    private long leadTime = 5000L;
+
+    /**
+     * wheel模式的打散比例，下次刷新在 (ttl - leadTime) 的最后该比例内均匀随机，避免同时写入的缓存同时刷新
+     */
+    private double spread = 0.1D;
+
+    /**
+     * 时间轮每格的时长（毫秒）
+     */
+    private long wheelTick = 1000L;
+
+    /**
+     * 时间轮的格数，向上取2的幂，超过一圈的刷新按圈数等待
+     */
+    private int wheelSize = 512;
+
+    /**
+     * 每页自刷缓存的刷新顺序，默认：expiry
+     */
+    private RefreshPriority priority = RefreshPriority.expiry;
+
+    /**
+     * 同时刷新的最大数量，0表示取刷新线程池的最大线程数
+     */
+    private int maxConcurrency = 0;
+
+    /**
+     * 同时刷新的最小数量
+     */
+    private int minConcurrency = 1;
+
+    /**
+     * 加载耗时超过基线耗时的该倍数时视为下游过载，降低并发
+     */
+    private double latencyTolerance = 2.0D;
+
+    /**
+     * 等待刷新名额的最长时间（毫秒），超时后本周期剩余的自刷缓存留到下个周期
+     */
+    private long acquireTimeout = 30000L;
+
+    public RefreshMode getMode() {
+        return mode;
+    }
+
+    public void setMode(RefreshMode mode) {
+        this.mode = mode;
+    }
+
+    public long getLeadTime() {
+        return leadTime;
+    }
+
+    public void setLeadTime(long leadTime) {
+        this.leadTime = leadTime;
+    }
+
+    public double getSpread() {
+        return spread;
+    }
+
+    public void setSpread(double spread) {
+        this.spread = spread;
+    }
+
+    public long getWheelTick() {
+        return wheelTick;
+    }
+
+    public void setWheelTick(long wheelTick) {
+        this.wheelTick = wheelTick;
+    }
+
+    public int getWheelSize() {
+        return wheelSize;
+    }
+
+    public void setWheelSize(int wheelSize) {
+        this.wheelSize = wheelSize;
+    }
+
+    public RefreshPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(RefreshPriority priority) {
+        this.priority = priority;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    public void setMinConcurrency(int minConcurrency) {
+        this.minConcurrency = minConcurrency;
+    }
+
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    public long getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    public void setAcquireTimeout(long acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+    }
+}
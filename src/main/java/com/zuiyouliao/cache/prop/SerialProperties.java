@@ -16,9 +16,13 @@
 package com.zuiyouliao.cache.prop;
 
 import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.constant.CompressionType;
 import com.zuiyouliao.cache.constant.SerializedType;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 序列化配置
  *
@@ -33,6 +37,21 @@ public class SerialProperties {
      */
     private SerializedType type = SerializedType.jdk;
 
+    /**
+     * binary序列化时注册的类，注册后只写编号不写类名；编号由顺序决定，只能在末尾追加
+     */
+    private List<Class<?>> registeredClasses = new ArrayList<>();
+
+    /**
+     * 缓存值的压缩方式，默认不压缩
+     */
+    private CompressionType compression = CompressionType.none;
+
+    /**
+     * 序列化后达到该字节数才压缩，默认1024
+     */
+    private int compressThreshold = 1024;
+
     public SerializedType getType() {
         return type;
     }
@@ -40,4 +59,28 @@ public class SerialProperties {
     public void setType(SerializedType type) {
         this.type = type;
     }
+
+    public List<Class<?>> getRegisteredClasses() {
+        return registeredClasses;
+    }
+
+    public void setRegisteredClasses(List<Class<?>> registeredClasses) {
+        this.registeredClasses = registeredClasses;
+    }
+
+    public CompressionType getCompression() {
+        return compression;
+    }
+
+    public void setCompression(CompressionType compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    public void setCompressThreshold(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
 }
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.prop;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 缓存击穿保护配置
+ */
+@ConfigurationProperties(prefix = CacheConstant.SINGLE_FLIGHT_PREFIX)
+public class SingleFlightProperties {
+
+    /**
+     * 跨节点加载租约的存活时间（毫秒），持有租约的节点异常时，最迟在该时间后由其它节点接管
+     */
+    private long leaseTime = 10000L;
+
+    /**
+     * 等待其它线程或节点加载的最长时间（毫秒），超时后自行加载
+     */
+    private long maxWait = 3000L;
+
+    /**
+     * 等待其它节点加载时轮询redis的间隔（毫秒）
+     */
+    private long pollInterval = 50L;
+
+    public long getLeaseTime() {
+        return leaseTime;
+    }
+
+    public void setLeaseTime(long leaseTime) {
+        this.leaseTime = leaseTime;
+    }
+
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    public void setPollInterval(long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+}
@@ -16,6 +16,7 @@
 package com.zuiyouliao.cache.prop;
 
 import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.constant.RegistryFormat;
 import com.zuiyouliao.cache.constant.TimeUnit;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -57,6 +58,26 @@ public class TaskProperties {
      */
     private TimeUnit cleanOverAccessTimeUnit = TimeUnit.DAYS;
 
+    /**
+     * 按页扫描（HSCAN）自刷缓存和访问时间时每页的数量
+     */
+    private int scanCount = 500;
+
+    /**
+     * 本节点已登记自刷缓存的最大记录数
+     */
+    private long registeredSize = 10000L;
+
+    /**
+     * 本节点已登记自刷缓存的记录有效期（秒），过期后下次访问会重新向redis确认登记
+     */
+    private long registeredExpire = 600L;
+
+    /**
+     * 自刷缓存登记值的格式，所有节点都升级后才能使用compact
+     */
+    private RegistryFormat registryFormat = RegistryFormat.jdk;
+
     public String getEnabled() {
         return enabled;
     }
@@ -104,4 +125,36 @@ public class TaskProperties {
     public void setCleanOverAccessTimeUnit(TimeUnit cleanOverAccessTimeUnit) {
         this.cleanOverAccessTimeUnit = cleanOverAccessTimeUnit;
     }
+
+    public long getRegisteredSize() {
+        return registeredSize;
+    }
+
+    public void setRegisteredSize(long registeredSize) {
+        this.registeredSize = registeredSize;
+    }
+
+    public long getRegisteredExpire() {
+        return registeredExpire;
+    }
+
+    public void setRegisteredExpire(long registeredExpire) {
+        this.registeredExpire = registeredExpire;
+    }
+
+    public int getScanCount() {
+        return scanCount;
+    }
+
+    public void setScanCount(int scanCount) {
+        this.scanCount = scanCount;
+    }
+
+    public RegistryFormat getRegistryFormat() {
+        return registryFormat;
+    }
+
+    public void setRegistryFormat(RegistryFormat registryFormat) {
+        this.registryFormat = registryFormat;
+    }
 }
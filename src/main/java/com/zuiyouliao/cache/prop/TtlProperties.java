@@ -0,0 +1,39 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.prop;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 缓存存活时间配置
+ */
+@ConfigurationProperties(prefix = CacheConstant.TTL_PREFIX)
+public class TtlProperties {
+
+    /**
+     * 默认的ttl抖动，百分比（如10%）或秒数（如30），注解未设置ttlJitter时使用，默认不抖动
+     */
+    private String jitter = "";
+
+    public String getJitter() {
+        return jitter;
+    }
+
+    public void setJitter(String jitter) {
+        this.jitter = jitter;
+    }
+}
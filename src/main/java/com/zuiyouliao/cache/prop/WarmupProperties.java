@@ -0,0 +1,78 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.prop;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 启动预热配置
+ */
+@ConfigurationProperties(prefix = CacheConstant.WARMUP_PREFIX)
+public class WarmupProperties {
+
+    /**
+     * 是否在启动时按自刷缓存登记预热缺失的缓存
+     */
+    private boolean enabled = false;
+
+    /**
+     * 同时加载的最大数量
+     */
+    private int parallelism = 4;
+
+    /**
+     * 预热的时间预算（毫秒），超出后不再提交新的加载，剩余缓存按正常流程加载
+     */
+    private long timeBudget = 60000L;
+
+    /**
+     * 是否等待预热完成（或超出时间预算）后才完成启动，web项目在此之后才启动web服务器
+     */
+    private boolean waitForCompletion = false;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    public boolean isWaitForCompletion() {
+        return waitForCompletion;
+    }
+
+    public void setWaitForCompletion(boolean waitForCompletion) {
+        this.waitForCompletion = waitForCompletion;
+    }
+}
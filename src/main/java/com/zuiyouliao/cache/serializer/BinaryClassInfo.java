@@ -0,0 +1,83 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.serializer;
+
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 对象的字段信息，每个类只解析一次
+ * <p>包含父类的非static、非transient字段；父类字段与子类同名时，父类字段名为"父类简单名.字段名"</p>
+ */
+class BinaryClassInfo {
+
+    private final Field[] fields;
+
+    private final String[] names;
+
+    private final Map<String, Field> fieldsByName;
+
+    BinaryClassInfo(Class<?> clazz) {
+        List<Field> fieldList = new ArrayList<>();
+        List<String> nameList = new ArrayList<>();
+        Set<String> used = new HashSet<>();
+        for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                ReflectionUtils.makeAccessible(field);
+                String name = field.getName();
+                if (!used.add(name)) {
+                    name = current.getSimpleName() + "." + name;
+                    used.add(name);
+                }
+                fieldList.add(field);
+                nameList.add(name);
+            }
+        }
+        this.fields = fieldList.toArray(new Field[0]);
+        this.names = nameList.toArray(new String[0]);
+        this.fieldsByName = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            fieldsByName.put(names[i], fields[i]);
+        }
+    }
+
+    Field[] getFields() {
+        return fields;
+    }
+
+    String[] getNames() {
+        return names;
+    }
+
+    /**
+     * 按字段名查找本地字段，找不到时返回null（字段已删除）
+     */
+    Field getField(String name) {
+        return fieldsByName.get(name);
+    }
+}
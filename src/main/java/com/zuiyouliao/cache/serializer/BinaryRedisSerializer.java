@@ -0,0 +1,672 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.serializer;
+
+import org.springframework.cache.support.NullValue;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.objenesis.Objenesis;
+import org.springframework.objenesis.SpringObjenesis;
+import org.springframework.util.ClassUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+
+/**
+ * 紧凑的无schema二进制序列化
+ * <p>格式：1字节魔数 + 1字节版本号 + 带类型标签的值。整数使用zigzag varint编码；
+ * 类名在同一个值中只写一次，之后按序号引用，注册过的类只写编号；对象按字段名写出字段，
+ * 读取时忽略已删除的字段、新增字段保持默认值，因此不同版本的代码可以互相读取；
+ * 同一个对象被多次引用时只写一次（支持循环引用）。
+ * 不支持的JDK类型以及无法原样重建的集合使用jdk序列化兜底，不可序列化时抛出SerializationException</p>
+ * <p>注册类的编号由注册顺序决定，只能在末尾追加</p>
+ */
+public class BinaryRedisSerializer implements RedisSerializer<Object> {
+
+    static final int MAGIC = 0xB1;
+
+    static final int VERSION = 1;
+
+    private static final byte[] EMPTY_ARRAY = new byte[0];
+
+    private static final int NULL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int DOUBLE = 5;
+    private static final int FLOAT = 6;
+    private static final int SHORT = 7;
+    private static final int BYTE = 8;
+    private static final int CHAR = 9;
+    private static final int STRING = 10;
+    private static final int BYTES = 11;
+    private static final int BIG_DECIMAL = 12;
+    private static final int BIG_INTEGER = 13;
+    private static final int DATE = 14;
+    private static final int ENUM = 15;
+    private static final int LIST = 16;
+    private static final int SET = 17;
+    private static final int MAP = 18;
+    private static final int ARRAY = 19;
+    private static final int OBJECT = 20;
+    private static final int REF = 21;
+    private static final int UUID_VALUE = 22;
+    private static final int NULL_VALUE = 23;
+    private static final int INT_ARRAY = 24;
+    private static final int LONG_ARRAY = 25;
+    private static final int DOUBLE_ARRAY = 26;
+    private static final int OPTIONAL = 27;
+    private static final int LOCAL_DATE = 28;
+    private static final int LOCAL_DATE_TIME = 29;
+    private static final int INSTANT = 30;
+    private static final int JAVA = 31;
+
+    /**
+     * 内置类，编号固定；自定义注册类的编号从BUILTIN_SIZE开始
+     */
+    private static final Class<?>[] BUILTIN_CLASSES = {
+            Object.class, String.class, Integer.class, Long.class, Double.class, Float.class, Short.class,
+            Byte.class, Character.class, Boolean.class, BigDecimal.class, Date.class,
+            ArrayList.class, LinkedList.class, HashSet.class, LinkedHashSet.class, TreeSet.class,
+            HashMap.class, LinkedHashMap.class, TreeMap.class, ConcurrentHashMap.class,
+            int.class, long.class, double.class, float.class, short.class, byte.class, char.class, boolean.class
+    };
+
+    private static final int BUILTIN_SIZE = 64;
+
+    private static final Objenesis OBJENESIS = new SpringObjenesis();
+
+    private final Class<?>[] registeredClasses;
+
+    private final Map<Class<?>, Integer> registeredIds;
+
+    private final ClassLoader classLoader;
+
+    private final ConcurrentMap<Class<?>, BinaryClassInfo> classInfos = new ConcurrentHashMap<>(64);
+
+    private final ConcurrentMap<String, Class<?>> classes = new ConcurrentHashMap<>(64);
+
+    /**
+     * 集合类能否按类型重建：只有公开且有公开无参构造器的JDK集合类按元素写出，
+     * 其它集合（如Arrays$ArrayList、EnumMap、EnumSet、不可变集合、自定义子类）无法原样重建，使用jdk序列化
+     */
+    private final ConcurrentMap<Class<?>, Boolean> collectionTypes = new ConcurrentHashMap<>(32);
+
+    public BinaryRedisSerializer() {
+        this(Collections.emptyList());
+    }
+
+    public BinaryRedisSerializer(List<Class<?>> registeredClasses) {
+        this.classLoader = ClassUtils.getDefaultClassLoader();
+        this.registeredClasses = new Class<?>[BUILTIN_SIZE + registeredClasses.size()];
+        this.registeredIds = new HashMap<>(this.registeredClasses.length * 2);
+        for (int i = 0; i < BUILTIN_CLASSES.length; i++) {
+            this.register(i, BUILTIN_CLASSES[i]);
+        }
+        for (int i = 0; i < registeredClasses.size(); i++) {
+            this.register(BUILTIN_SIZE + i, registeredClasses.get(i));
+        }
+    }
+
+    private void register(int id, Class<?> clazz) {
+        registeredClasses[id] = clazz;
+        registeredIds.putIfAbsent(clazz, id);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY_ARRAY;
+        }
+        BinaryOutput output = new BinaryOutput(128);
+        output.writeByte(MAGIC);
+        output.writeByte(VERSION);
+        try {
+            new Writer(output).write(value);
+        } catch (IllegalAccessException | IOException e) {
+            throw new SerializationException("Cannot serialize " + value.getClass().getName(), e);
+        }
+        return output.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (!isBinary(bytes)) {
+            throw new SerializationException("Not a binary serialized value");
+        }
+        if ((bytes[1] & 0xFF) > VERSION) {
+            throw new SerializationException("Unsupported binary version " + (bytes[1] & 0xFF));
+        }
+        try {
+            return new Reader(new BinaryInput(bytes, 2)).read();
+        } catch (ReflectiveOperationException | IOException | RuntimeException e) {
+            if (e instanceof SerializationException) {
+                throw (SerializationException) e;
+            }
+            throw new SerializationException("Cannot deserialize binary value", e);
+        }
+    }
+
+    /**
+     * 判断是否为本序列化器写出的值
+     */
+    public static boolean isBinary(byte[] bytes) {
+        return bytes != null && bytes.length >= 2 && (bytes[0] & 0xFF) == MAGIC;
+    }
+
+    private BinaryClassInfo classInfo(Class<?> clazz) {
+        return classInfos.computeIfAbsent(clazz, BinaryClassInfo::new);
+    }
+
+    private Class<?> resolveClass(String name) throws ClassNotFoundException {
+        Class<?> clazz = classes.get(name);
+        if (clazz == null) {
+            clazz = ClassUtils.forName(name, classLoader);
+            classes.putIfAbsent(name, clazz);
+        }
+        return clazz;
+    }
+
+    /**
+     * 集合能否按元素写出后原样重建，带比较器的有序集合重建后顺序会变，不能按元素写出
+     */
+    private boolean isRebuildable(Object value, Class<?> clazz) {
+        boolean rebuildable = collectionTypes.computeIfAbsent(clazz, c -> {
+            if (!isJdkClass(c) || !Modifier.isPublic(c.getModifiers()) || c.isAnonymousClass()) {
+                return false;
+            }
+            try {
+                Constructor<?> constructor = c.getConstructor();
+                return constructor != null;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        });
+        if (!rebuildable) {
+            return false;
+        }
+        if (value instanceof SortedMap) {
+            return ((SortedMap<?, ?>) value).comparator() == null;
+        }
+        if (value instanceof SortedSet) {
+            return ((SortedSet<?>) value).comparator() == null;
+        }
+        if (value instanceof PriorityQueue) {
+            return ((PriorityQueue<?>) value).comparator() == null;
+        }
+        if (value instanceof PriorityBlockingQueue) {
+            return ((PriorityBlockingQueue<?>) value).comparator() == null;
+        }
+        return true;
+    }
+
+    private static boolean isJdkClass(Class<?> clazz) {
+        String name = clazz.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("jdk.");
+    }
+
+    private final class Writer {
+
+        private final BinaryOutput output;
+
+        private final Map<Object, Integer> references = new IdentityHashMap<>();
+
+        private Map<Class<?>, Integer> classIndexes;
+
+        private Set<Class<?>> described;
+
+        Writer(BinaryOutput output) {
+            this.output = output;
+        }
+
+        void write(Object value) throws IllegalAccessException, IOException {
+            if (value == null) {
+                output.writeByte(NULL);
+                return;
+            }
+            Class<?> clazz = value.getClass();
+            if (clazz == String.class) {
+                output.writeByte(STRING);
+                output.writeString((String) value);
+            } else if (clazz == Integer.class) {
+                output.writeByte(INT);
+                output.writeSignedVarInt((Integer) value);
+            } else if (clazz == Long.class) {
+                output.writeByte(LONG);
+                output.writeSignedVarLong((Long) value);
+            } else if (clazz == Boolean.class) {
+                output.writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (clazz == Double.class) {
+                output.writeByte(DOUBLE);
+                output.writeLong(Double.doubleToRawLongBits((Double) value));
+            } else if (clazz == Float.class) {
+                output.writeByte(FLOAT);
+                output.writeInt(Float.floatToRawIntBits((Float) value));
+            } else if (clazz == Short.class) {
+                output.writeByte(SHORT);
+                output.writeSignedVarInt((Short) value);
+            } else if (clazz == Byte.class) {
+                output.writeByte(BYTE);
+                output.writeByte((Byte) value);
+            } else if (clazz == Character.class) {
+                output.writeByte(CHAR);
+                output.writeVarInt((Character) value);
+            } else if (clazz == byte[].class) {
+                output.writeByte(BYTES);
+                output.writeBytes((byte[]) value);
+            } else if (clazz == BigDecimal.class) {
+                BigDecimal decimal = (BigDecimal) value;
+                output.writeByte(BIG_DECIMAL);
+                output.writeSignedVarInt(decimal.scale());
+                output.writeBytes(decimal.unscaledValue().toByteArray());
+            } else if (clazz == BigInteger.class) {
+                output.writeByte(BIG_INTEGER);
+                output.writeBytes(((BigInteger) value).toByteArray());
+            } else if (clazz == Date.class) {
+                output.writeByte(DATE);
+                output.writeSignedVarLong(((Date) value).getTime());
+            } else if (clazz == UUID.class) {
+                UUID uuid = (UUID) value;
+                output.writeByte(UUID_VALUE);
+                output.writeLong(uuid.getMostSignificantBits());
+                output.writeLong(uuid.getLeastSignificantBits());
+            } else if (clazz == LocalDate.class) {
+                output.writeByte(LOCAL_DATE);
+                output.writeSignedVarLong(((LocalDate) value).toEpochDay());
+            } else if (clazz == LocalDateTime.class) {
+                LocalDateTime dateTime = (LocalDateTime) value;
+                output.writeByte(LOCAL_DATE_TIME);
+                output.writeSignedVarLong(dateTime.toLocalDate().toEpochDay());
+                output.writeVarLong(dateTime.toLocalTime().toNanoOfDay());
+            } else if (clazz == Instant.class) {
+                Instant instant = (Instant) value;
+                output.writeByte(INSTANT);
+                output.writeSignedVarLong(instant.getEpochSecond());
+                output.writeVarInt(instant.getNano());
+            } else if (clazz == Optional.class) {
+                output.writeByte(OPTIONAL);
+                this.write(((Optional<?>) value).orElse(null));
+            } else if (value instanceof NullValue) {
+                output.writeByte(NULL_VALUE);
+            } else if (value instanceof Enum) {
+                output.writeByte(ENUM);
+                this.writeClass(((Enum<?>) value).getDeclaringClass());
+                output.writeString(((Enum<?>) value).name());
+            } else {
+                this.writeReference(value, clazz);
+            }
+        }
+
+        /**
+         * 可能被多次引用的值
+         */
+        private void writeReference(Object value, Class<?> clazz) throws IllegalAccessException, IOException {
+            boolean collection = value instanceof Collection || value instanceof Map;
+            if (collection ? !isRebuildable(value, clazz) : !clazz.isArray() && isJdkClass(clazz)) {
+                // 不支持的JDK类型不能反射其字段，无法原样重建的集合按元素写出会丢失类型或顺序，都使用jdk序列化
+                this.writeJava(value);
+                return;
+            }
+            Integer reference = references.get(value);
+            if (reference != null) {
+                output.writeByte(REF);
+                output.writeVarInt(reference);
+                return;
+            }
+            references.put(value, references.size());
+            if (clazz == int[].class) {
+                int[] array = (int[]) value;
+                output.writeByte(INT_ARRAY);
+                output.writeVarInt(array.length);
+                for (int item : array) {
+                    output.writeSignedVarInt(item);
+                }
+            } else if (clazz == long[].class) {
+                long[] array = (long[]) value;
+                output.writeByte(LONG_ARRAY);
+                output.writeVarInt(array.length);
+                for (long item : array) {
+                    output.writeSignedVarLong(item);
+                }
+            } else if (clazz == double[].class) {
+                double[] array = (double[]) value;
+                output.writeByte(DOUBLE_ARRAY);
+                output.writeVarInt(array.length);
+                for (double item : array) {
+                    output.writeLong(Double.doubleToRawLongBits(item));
+                }
+            } else if (clazz.isArray()) {
+                int length = Array.getLength(value);
+                output.writeByte(ARRAY);
+                this.writeClass(clazz.getComponentType());
+                output.writeVarInt(length);
+                for (int i = 0; i < length; i++) {
+                    this.write(Array.get(value, i));
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                output.writeByte(MAP);
+                this.writeClass(clazz);
+                output.writeVarInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    this.write(entry.getKey());
+                    this.write(entry.getValue());
+                }
+            } else if (value instanceof Collection) {
+                Collection<?> items = (Collection<?>) value;
+                output.writeByte(value instanceof Set ? SET : LIST);
+                this.writeClass(clazz);
+                output.writeVarInt(items.size());
+                for (Object item : items) {
+                    this.write(item);
+                }
+            } else {
+                this.writeObject(value, clazz);
+            }
+        }
+
+        private void writeObject(Object value, Class<?> clazz) throws IllegalAccessException, IOException {
+            BinaryClassInfo classInfo = classInfo(clazz);
+            output.writeByte(OBJECT);
+            this.writeClass(clazz);
+            if (described == null) {
+                described = new HashSet<>();
+            }
+            if (described.add(clazz)) {
+                // 字段名在同一个值中只写一次
+                String[] names = classInfo.getNames();
+                output.writeVarInt(names.length);
+                for (String name : names) {
+                    output.writeString(name);
+                }
+            }
+            for (Field field : classInfo.getFields()) {
+                this.write(field.get(value));
+            }
+        }
+
+        private void writeJava(Object value) throws IOException {
+            if (!(value instanceof Serializable)) {
+                throw new SerializationException("Unsupported type " + value.getClass().getName());
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            try (ObjectOutputStream stream = new ObjectOutputStream(bytes)) {
+                stream.writeObject(value);
+            }
+            output.writeByte(JAVA);
+            output.writeBytes(bytes.toByteArray());
+        }
+
+        /**
+         * 类引用：奇数为注册编号，0为首次出现（后跟类名），其它偶数为本值内已出现类的序号
+         */
+        private void writeClass(Class<?> clazz) {
+            Integer id = registeredIds.get(clazz);
+            if (id != null) {
+                output.writeVarInt((id << 1) | 1);
+                return;
+            }
+            if (classIndexes == null) {
+                classIndexes = new HashMap<>(8);
+            }
+            Integer index = classIndexes.get(clazz);
+            if (index != null) {
+                output.writeVarInt((index + 1) << 1);
+                return;
+            }
+            classIndexes.put(clazz, classIndexes.size());
+            output.writeVarInt(0);
+            output.writeString(clazz.getName());
+        }
+    }
+
+    private final class Reader {
+
+        private final BinaryInput input;
+
+        private final List<Object> references = new ArrayList<>();
+
+        private List<Class<?>> classList;
+
+        private Map<Class<?>, Field[]> layouts;
+
+        Reader(BinaryInput input) {
+            this.input = input;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Object read() throws ReflectiveOperationException, IOException {
+            int tag = input.readByte();
+            switch (tag) {
+                case NULL: return null;
+                case TRUE: return Boolean.TRUE;
+                case FALSE: return Boolean.FALSE;
+                case INT: return input.readSignedVarInt();
+                case LONG: return input.readSignedVarLong();
+                case DOUBLE: return Double.longBitsToDouble(input.readLong());
+                case FLOAT: return Float.intBitsToFloat(input.readInt());
+                case SHORT: return (short) input.readSignedVarInt();
+                case BYTE: return (byte) input.readByte();
+                case CHAR: return (char) input.readVarInt();
+                case STRING: return input.readString();
+                case BYTES: return input.readBytes();
+                case BIG_DECIMAL: {
+                    int scale = input.readSignedVarInt();
+                    return new BigDecimal(new BigInteger(input.readBytes()), scale);
+                }
+                case BIG_INTEGER: return new BigInteger(input.readBytes());
+                case DATE: return new Date(input.readSignedVarLong());
+                case UUID_VALUE: return new UUID(input.readLong(), input.readLong());
+                case LOCAL_DATE: return LocalDate.ofEpochDay(input.readSignedVarLong());
+                case LOCAL_DATE_TIME: {
+                    LocalDate date = LocalDate.ofEpochDay(input.readSignedVarLong());
+                    return LocalDateTime.of(date, LocalTime.ofNanoOfDay(input.readVarLong()));
+                }
+                case INSTANT: return Instant.ofEpochSecond(input.readSignedVarLong(), input.readVarInt());
+                case OPTIONAL: return Optional.ofNullable(this.read());
+                case NULL_VALUE: return NullValue.INSTANCE;
+                case ENUM: {
+                    Class enumClass = this.readClass();
+                    String name = input.readString();
+                    try {
+                        return Enum.valueOf(enumClass, name);
+                    } catch (IllegalArgumentException e) {
+                        // 枚举值已删除
+                        return null;
+                    }
+                }
+                case REF: return references.get(input.readVarInt());
+                case INT_ARRAY: {
+                    int[] array = new int[input.readVarInt()];
+                    references.add(array);
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = input.readSignedVarInt();
+                    }
+                    return array;
+                }
+                case LONG_ARRAY: {
+                    long[] array = new long[input.readVarInt()];
+                    references.add(array);
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = input.readSignedVarLong();
+                    }
+                    return array;
+                }
+                case DOUBLE_ARRAY: {
+                    double[] array = new double[input.readVarInt()];
+                    references.add(array);
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = Double.longBitsToDouble(input.readLong());
+                    }
+                    return array;
+                }
+                case ARRAY: {
+                    Class<?> componentType = this.readClass();
+                    int length = input.readVarInt();
+                    Object array = Array.newInstance(componentType, length);
+                    references.add(array);
+                    for (int i = 0; i < length; i++) {
+                        Array.set(array, i, this.read());
+                    }
+                    return array;
+                }
+                case MAP: {
+                    Class<?> mapClass = this.readClass();
+                    int size = input.readVarInt();
+                    Map map = (Map) this.newCollection(mapClass, size);
+                    references.add(map);
+                    for (int i = 0; i < size; i++) {
+                        Object key = this.read();
+                        map.put(key, this.read());
+                    }
+                    return map;
+                }
+                case LIST:
+                case SET: {
+                    Class<?> collectionClass = this.readClass();
+                    int size = input.readVarInt();
+                    Collection collection = (Collection) this.newCollection(collectionClass, size);
+                    references.add(collection);
+                    for (int i = 0; i < size; i++) {
+                        collection.add(this.read());
+                    }
+                    return collection;
+                }
+                case OBJECT: return this.readObject();
+                case JAVA: {
+                    try (ObjectInputStream stream = new ConfigurableObjectInputStream(new ByteArrayInputStream(input.readBytes()), classLoader)) {
+                        return stream.readObject();
+                    }
+                }
+                default: throw new SerializationException("Unknown binary tag " + tag);
+            }
+        }
+
+        private Object newCollection(Class<?> clazz, int size) throws ReflectiveOperationException {
+            if (clazz == ArrayList.class) {
+                return new ArrayList<>(size);
+            }
+            if (clazz == HashMap.class) {
+                return new HashMap<>(Math.max(size * 4 / 3 + 1, 16));
+            }
+            if (clazz == HashSet.class) {
+                return new HashSet<>(Math.max(size * 4 / 3 + 1, 16));
+            }
+            return clazz.getConstructor().newInstance();
+        }
+
+        private Object readObject() throws ReflectiveOperationException, IOException {
+            Class<?> clazz = this.readClass();
+            if (layouts == null) {
+                layouts = new HashMap<>(8);
+            }
+            Field[] layout = layouts.get(clazz);
+            if (layout == null) {
+                BinaryClassInfo classInfo = classInfo(clazz);
+                layout = new Field[input.readVarInt()];
+                for (int i = 0; i < layout.length; i++) {
+                    layout[i] = classInfo.getField(input.readString());
+                }
+                layouts.put(clazz, layout);
+            }
+            Object value = OBJENESIS.newInstance(clazz);
+            references.add(value);
+            for (Field field : layout) {
+                Object fieldValue = this.read();
+                if (field != null) {
+                    setField(field, value, fieldValue);
+                }
+            }
+            return value;
+        }
+
+        private Class<?> readClass() throws ClassNotFoundException {
+            int value = input.readVarInt();
+            if ((value & 1) == 1) {
+                int id = value >>> 1;
+                if (id >= registeredClasses.length || registeredClasses[id] == null) {
+                    throw new SerializationException("Unknown registered class id " + id);
+                }
+                return registeredClasses[id];
+            }
+            if (classList == null) {
+                classList = new ArrayList<>(8);
+            }
+            if (value == 0) {
+                Class<?> clazz = resolveClass(input.readString());
+                classList.add(clazz);
+                return clazz;
+            }
+            return classList.get((value >>> 1) - 1);
+        }
+    }
+
+    /**
+     * 设置字段，字段类型变化时尽量转换数字类型，无法转换时保留默认值
+     */
+    private static void setField(Field field, Object target, Object value) throws IllegalAccessException {
+        Class<?> type = field.getType();
+        if (value == null) {
+            if (!type.isPrimitive()) {
+                field.set(target, null);
+            }
+            return;
+        }
+        if (type.isPrimitive() && value instanceof Number && ClassUtils.resolvePrimitiveIfNecessary(type) != value.getClass()) {
+            Number number = (Number) value;
+            if (type == int.class) {
+                field.setInt(target, number.intValue());
+            } else if (type == long.class) {
+                field.setLong(target, number.longValue());
+            } else if (type == double.class) {
+                field.setDouble(target, number.doubleValue());
+            } else if (type == float.class) {
+                field.setFloat(target, number.floatValue());
+            } else if (type == short.class) {
+                field.setShort(target, number.shortValue());
+            } else if (type == byte.class) {
+                field.setByte(target, number.byteValue());
+            }
+            return;
+        }
+        if (ClassUtils.isAssignableValue(type, value)) {
+            field.set(target, value);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.serializer;
+
+import com.zuiyouliao.cache.constant.CompressionType;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 压缩序列化，包装实际的序列化器
+ * <p>序列化后超过阈值的值才压缩，压缩后的格式：2字节魔数 + 1字节压缩方式 + 4字节原始长度 + 压缩数据；
+ * 压缩后没有变小的值原样保存。读取时按魔数识别，未压缩的值直接交给实际的序列化器，
+ * 因此开启或关闭压缩前后写入的值可以共存</p>
+ * <p>魔数第二个字节0xC1不会出现在jdk、json、string（UTF-8）和binary序列化结果的开头</p>
+ * <p>空值（NullValue）固定写为3字节：魔数 + 0，不经过实际的序列化器</p>
+ */
+public class CompressingRedisSerializer<T> implements RedisSerializer<T> {
+
+    private static final int MAGIC_0 = 0x5A;
+
+    private static final int MAGIC_1 = 0xC1;
+
+    private static final int HEADER_LENGTH = 7;
+
+    private static final int CODEC_DEFLATE = 1;
+
+    private static final byte[] NULL_VALUE = {(byte) MAGIC_0, (byte) MAGIC_1, 0};
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final RedisSerializer<T> delegate;
+
+    private final CompressionType compressionType;
+
+    private final int threshold;
+
+    public CompressingRedisSerializer(RedisSerializer<T> delegate, CompressionType compressionType, int threshold) {
+        Assert.notNull(delegate, "Delegate serializer must not be null");
+        Assert.notNull(compressionType, "CompressionType must not be null");
+        this.delegate = delegate;
+        this.compressionType = compressionType;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        if (value instanceof NullValue) {
+            return nullValue();
+        }
+        byte[] bytes = delegate.serialize(value);
+        if (bytes == null || bytes.length < threshold || compressionType == CompressionType.none) {
+            return bytes;
+        }
+        byte[] compressed = this.deflate(bytes);
+        return compressed == null ? bytes : compressed;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (isNullValue(bytes)) {
+            return (T) NullValue.INSTANCE;
+        }
+        if (!isCompressed(bytes)) {
+            return delegate.deserialize(bytes);
+        }
+        int codec = bytes[2] & 0xFF;
+        if (codec != CODEC_DEFLATE) {
+            throw new SerializationException("Unsupported compression codec " + codec);
+        }
+        return delegate.deserialize(this.inflate(bytes));
+    }
+
+    /**
+     * 判断是否为压缩后的值
+     */
+    public static boolean isCompressed(byte[] bytes) {
+        return bytes != null && bytes.length >= HEADER_LENGTH && (bytes[0] & 0xFF) == MAGIC_0 && (bytes[1] & 0xFF) == MAGIC_1;
+    }
+
+    /**
+     * 空值的序列化结果
+     */
+    public static byte[] nullValue() {
+        return NULL_VALUE.clone();
+    }
+
+    public static boolean isNullValue(byte[] bytes) {
+        return Arrays.equals(NULL_VALUE, bytes);
+    }
+
+    /**
+     * 压缩，压缩后没有变小返回null
+     */
+    private byte[] deflate(byte[] bytes) {
+        Deflater deflater = DEFLATER.get();
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            byte[] buffer = new byte[bytes.length];
+            buffer[0] = (byte) MAGIC_0;
+            buffer[1] = (byte) MAGIC_1;
+            buffer[2] = (byte) CODEC_DEFLATE;
+            buffer[3] = (byte) (bytes.length >>> 24);
+            buffer[4] = (byte) (bytes.length >>> 16);
+            buffer[5] = (byte) (bytes.length >>> 8);
+            buffer[6] = (byte) bytes.length;
+            int length = HEADER_LENGTH;
+            while (!deflater.finished() && length < buffer.length) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return deflater.finished() ? Arrays.copyOf(buffer, length) : null;
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    private byte[] inflate(byte[] bytes) {
+        int length = ((bytes[3] & 0xFF) << 24) | ((bytes[4] & 0xFF) << 16) | ((bytes[5] & 0xFF) << 8) | (bytes[6] & 0xFF);
+        if (length < 0) {
+            throw new SerializationException("Invalid compressed length " + length);
+        }
+        Inflater inflater = INFLATER.get();
+        try {
+            inflater.setInput(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+            byte[] result = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int count = inflater.inflate(result, offset, length - offset);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += count;
+            }
+            if (offset != length) {
+                throw new SerializationException("Truncated compressed value, expected " + length + " bytes but got " + offset);
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new SerializationException("Cannot decompress value", e);
+        } finally {
+            inflater.reset();
+        }
+    }
+}
@@ -16,20 +16,100 @@
 package com.zuiyouliao.cache.task;
 
 import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.memory.MemoryRedisConnectionFactory;
+import com.zuiyouliao.cache.prop.AccessProperties;
+import com.zuiyouliao.cache.prop.HotnessProperties;
 import com.zuiyouliao.cache.prop.ProjectProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 缓存访问记录器
+ * <p>访问时间先记录在内存缓冲区（同一个key只保留最新时间），由后台线程定时或达到批量时用pipeline批量写入redis，
+ * 请求线程不会因此访问redis</p>
+ * <p>开启访问热度后，访问次数同时累加到本地频率草图，随访问时间一起合并到redis的共享草图</p>
  *
  * @author lzc
  * @date 2021/09/16 15:06
  */
-public class CacheAccessRegistrar {
+public class CacheAccessRegistrar implements InitializingBean, DisposableBean {
+
+    /**
+     * 共享草图老化：每个周期只由一个节点执行，所有16位计数减半
+     */
+    static final RedisScript<Long> AGING_SCRIPT = new DefaultRedisScript<>(
+            "if not redis.call('SET', KEYS[2], '1', 'NX', 'PX', ARGV[1]) then return 0 end " +
+            "local s = redis.call('GET', KEYS[1]) " +
+            "if not s then return 0 end " +
+            "local out = {} " +
+            "for i = 1, #s - 1, 2 do " +
+            "local v = math.floor((string.byte(s, i) * 256 + string.byte(s, i + 1)) / 2) " +
+            "out[#out + 1] = string.char(math.floor(v / 256), v % 256) " +
+            "end " +
+            "redis.call('SET', KEYS[1], table.concat(out)) return 1", Long.class);
+
+    static {
+        MemoryRedisConnectionFactory.registerScript(AGING_SCRIPT, (connection, keys, args) -> {
+            Expiration expiration = Expiration.milliseconds(Long.parseLong(new String(args.get(0), StandardCharsets.UTF_8)));
+            if (!Boolean.TRUE.equals(connection.set(keys.get(1), "1".getBytes(StandardCharsets.UTF_8), expiration,
+                    RedisStringCommands.SetOption.SET_IF_ABSENT))) {
+                return 0L;
+            }
+            byte[] counters = connection.get(keys.get(0));
+            if (counters == null) {
+                return 0L;
+            }
+            byte[] aged = new byte[counters.length & ~1];
+            for (int i = 0; i + 1 < counters.length; i += 2) {
+                int value = (((counters[i] & 0xFF) << 8) | (counters[i + 1] & 0xFF)) >>> 1;
+                aged[i] = (byte) (value >>> 8);
+                aged[i + 1] = (byte) value;
+            }
+            connection.set(keys.get(0), aged);
+            return 1L;
+        });
+    }
+
+    /**
+     * 每条BITFIELD命令合并的计数器数量
+     */
+    private static final int SKETCH_BATCH = 256;
 
     @Resource(name = "ttlRedisTemplate")
     private RedisTemplate<String, Object> redisTemplate;
@@ -37,6 +117,75 @@ public class CacheAccessRegistrar {
     @Resource
     private ProjectProperties projectProperties;
 
+    @Resource
+    private AccessProperties accessProperties;
+
+    @Resource
+    private HotnessProperties hotnessProperties;
+
+    private final Logger logger = LoggerFactory.getLogger(CacheAccessRegistrar.class);
+
+    /**
+     * 待刷入redis的访问时间，key为缓存的key
+     */
+    private final ConcurrentMap<String, Long> buffer = new ConcurrentHashMap<>(64);
+
+    /**
+     * 刷入互斥，停机时等待正在执行的刷入结束后再做最后一次刷入
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * 已提交但尚未开始的刷入请求，避免高并发时重复提交
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+    private final AtomicLong flushCount = new AtomicLong();
+
+    private final AtomicLong flushedEntries = new AtomicLong();
+
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    private final AtomicLong droppedEntries = new AtomicLong();
+
+    private volatile long lastFlushMillis;
+
+    private ScheduledExecutorService flusher;
+
+    /**
+     * 本地频率草图，未开启访问热度时为null
+     */
+    private FrequencySketch sketch;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (hotnessProperties.isEnabled()) {
+            sketch = new FrequencySketch(hotnessProperties.getWidth());
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory(CacheConstant.ACCESS_THREAD_FACTORY));
+        long interval = Math.max(accessProperties.getFlushInterval(), 1L);
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(accessProperties.getFlushInterval(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 停机前把剩余的访问时间刷入redis，正在执行的刷入需要等待其结束，否则会跳过
+        flushLock.lock();
+        try {
+            this.doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
     /**
      * 登记缓存访问时间
      * @param cacheKey 缓存的key
@@ -44,7 +193,193 @@ public class CacheAccessRegistrar {
      * @date 2021/09/16 15:18
      */
     public void register(String cacheKey) {
-        redisTemplate.opsForHash().put(this.lastAccessKey(), cacheKey, System.currentTimeMillis());
+        long now = System.currentTimeMillis();
+        if (sketch != null) {
+            sketch.increment(cacheKey);
+        }
+        if (buffer.size() >= accessProperties.getMaxBufferSize() && !buffer.containsKey(cacheKey)) {
+            // 缓冲区已满，丢弃新key，等待下次访问再登记
+            droppedEntries.incrementAndGet();
+            this.requestFlush();
+            return;
+        }
+        buffer.merge(cacheKey, now, Math::max);
+        if (buffer.size() >= accessProperties.getBatchSize()) {
+            this.requestFlush();
+        }
+    }
+
+    private void requestFlush() {
+        if (flusher == null || !flushRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            flusher.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            // 已停机，由destroy负责最后一次刷入
+            flushRequested.set(false);
+        }
+    }
+
+    /**
+     * 把缓冲区的访问时间批量刷入redis
+     */
+    public void flush() {
+        flushRequested.set(false);
+        if (buffer.isEmpty() || !flushLock.tryLock()) {
+            return;
+        }
+        try {
+            this.doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void doFlush() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            int batchSize = Math.max(accessProperties.getBatchSize(), 1);
+            List<Map<String, Long>> batches = new ArrayList<>();
+            Map<String, Long> batch = new HashMap<>(Math.min(batchSize, buffer.size()) * 2);
+            Iterator<String> iterator = buffer.keySet().iterator();
+            while (iterator.hasNext()) {
+                String cacheKey = iterator.next();
+                Long accessTime = buffer.remove(cacheKey);
+                if (accessTime == null) {
+                    continue;
+                }
+                batch.put(cacheKey, accessTime);
+                if (batch.size() >= batchSize) {
+                    batches.add(batch);
+                    batch = new HashMap<>(batchSize * 2);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.add(batch);
+            }
+            this.write(batches);
+            this.mergeSketch();
+        } finally {
+            lastFlushMillis = System.currentTimeMillis() - start;
+        }
+    }
+
+    private void write(List<Map<String, Long>> batches) {
+        if (batches.isEmpty()) {
+            return;
+        }
+        String lastAccessKey = this.lastAccessKey();
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (Map<String, Long> batch : batches) {
+                        ops.opsForHash().putAll(lastAccessKey, batch);
+                    }
+                    return null;
+                }
+            });
+            flushCount.incrementAndGet();
+            for (Map<String, Long> batch : batches) {
+                flushedEntries.addAndGet(batch.size());
+            }
+        } catch (Exception e) {
+            failedFlushes.incrementAndGet();
+            logger.warn("CacheAccessRegistrar flush fail", e);
+            // 写入失败，放回缓冲区等待下次刷入
+            for (Map<String, Long> batch : batches) {
+                for (Map.Entry<String, Long> entry : batch.entrySet()) {
+                    buffer.merge(entry.getKey(), entry.getValue(), Math::max);
+                }
+            }
+        }
+    }
+
+    /**
+     * 把本地草图的增量合并到redis（饱和加），并按周期老化共享草图
+     */
+    @SuppressWarnings("unchecked")
+    private void mergeSketch() {
+        if (sketch == null) {
+            return;
+        }
+        int[] drained = sketch.drain();
+        if (drained.length == 0) {
+            return;
+        }
+        byte[] rawKey = ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(this.sketchKey());
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                BitFieldSubCommands commands = BitFieldSubCommands.create();
+                int count = 0;
+                for (int i = 0; i + 1 < drained.length; i += 2) {
+                    // 直接给出位偏移，lettuce转换命令时会丢掉按类型长度计算的#偏移
+                    commands = commands.incr(BitFieldSubCommands.BitFieldType.UINT_16)
+                            .valueAt(BitFieldSubCommands.Offset.offset(drained[i] * 16L))
+                            .overflow(BitFieldSubCommands.BitFieldIncrBy.Overflow.SAT)
+                            .by(drained[i + 1]);
+                    if (++count == SKETCH_BATCH) {
+                        connection.bitField(rawKey, commands);
+                        commands = BitFieldSubCommands.create();
+                        count = 0;
+                    }
+                }
+                if (count > 0) {
+                    connection.bitField(rawKey, commands);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            logger.warn("CacheAccessRegistrar sketch merge fail", e);
+            sketch.restore(drained);
+            return;
+        }
+        try {
+            redisTemplate.execute(AGING_SCRIPT, RedisSerializer.string(), new GenericToStringSerializer<>(Long.class),
+                    Arrays.asList(this.sketchKey(), this.sketchKey() + "::aging"),
+                    String.valueOf(Math.max(hotnessProperties.getAgingInterval(), 1L)));
+        } catch (Exception e) {
+            logger.warn("CacheAccessRegistrar sketch aging fail", e);
+        }
+    }
+
+    /**
+     * 创建本周期的热度筛选，未开启访问热度时返回null
+     *
+     * @param cutoff 上个周期得出的门槛
+     * @return com.zuiyouliao.cache.task.HotnessFilter
+     */
+    @SuppressWarnings("unchecked")
+    HotnessFilter hotnessFilter(int cutoff) {
+        if (sketch == null) {
+            return null;
+        }
+        byte[] rawKey = ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(this.sketchKey());
+        byte[] counters;
+        try {
+            counters = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+        } catch (DataAccessException e) {
+            logger.warn("Access sketch load fail", e);
+            return null;
+        }
+        if (counters != null && counters.length > sketch.byteSize()) {
+            // 其它节点使用了不同的width，估算不可信，本周期不筛选
+            logger.warn("Access sketch size mismatch, expected={}, actual={}", sketch.byteSize(), counters.length);
+            return null;
+        }
+        return new HotnessFilter(sketch, counters, hotnessProperties.getThreshold(),
+                Math.max(hotnessProperties.getTopN(), 0), cutoff);
+    }
+
+    private String sketchKey() {
+        return CacheConstant.ACCESS_SKETCH +
+                (Objects.equals("", projectProperties.getName()) ? "" : "::" + projectProperties.getName());
     }
 
     private String lastAccessKey() {
@@ -53,14 +388,25 @@ public class CacheAccessRegistrar {
     }
 
     /**
-     * 获取所有登记缓存
+     * 按页扫描所有登记缓存，使用完需要关闭游标
      *
-     * @return java.util.Map&lt;java.lang.Object,java.lang.Object&gt;
+     * @param count 每页数量
+     * @return org.springframework.data.redis.core.Cursor&lt;java.util.Map.Entry&lt;java.lang.Object,java.lang.Object&gt;&gt;
      * @author lzc
      * @date 2021/09/16 15:30
      */
-    public Map<Object, Object> getAllCaches() {
-        return redisTemplate.opsForHash().entries(this.lastAccessKey());
+    public Cursor<Map.Entry<Object, Object>> scanCaches(int count) {
+        return redisTemplate.opsForHash().scan(this.lastAccessKey(), ScanOptions.scanOptions().count(count).build());
+    }
+
+    /**
+     * 批量获取已刷入redis的访问时间
+     *
+     * @param cacheKeys 缓存的key
+     * @return java.util.List&lt;java.lang.Object&gt; 与cacheKeys一一对应，没有记录时为null
+     */
+    public List<Object> getAccessTimes(List<Object> cacheKeys) {
+        return redisTemplate.opsForHash().multiGet(this.lastAccessKey(), cacheKeys);
     }
 
     /**
@@ -73,4 +419,28 @@ public class CacheAccessRegistrar {
     public void delete(Object cacheKey) {
         redisTemplate.opsForHash().delete(this.lastAccessKey(), cacheKey);
     }
+
+    public int getBufferSize() {
+        return buffer.size();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getFlushedEntries() {
+        return flushedEntries.get();
+    }
+
+    public long getFailedFlushes() {
+        return failedFlushes.get();
+    }
+
+    public long getDroppedEntries() {
+        return droppedEntries.get();
+    }
+
+    public long getLastFlushMillis() {
+        return lastFlushMillis;
+    }
 }
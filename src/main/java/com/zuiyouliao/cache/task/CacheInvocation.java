@@ -38,6 +38,11 @@ public class CacheInvocation implements Serializable {
 
     private final long ttl;
 
+    /**
+     * 方法签名，懒加载
+     */
+    private transient String signature;
+
     public CacheInvocation(String targetName, String methodName, Class<?>[] argTypes, Object[] args, String key, long ttl) {
         this.targetName = targetName;
         this.methodName = methodName;
@@ -70,4 +75,23 @@ public class CacheInvocation implements Serializable {
     public long getTtl() {
         return ttl;
     }
+
+    /**
+     * 方法签名：目标类#方法名(参数类型,...)
+     */
+    public String getSignature() {
+        if (signature == null) {
+            StringBuilder builder = new StringBuilder(targetName).append('#').append(methodName).append('(');
+            if (argTypes != null) {
+                for (int i = 0; i < argTypes.length; i++) {
+                    if (i > 0) {
+                        builder.append(',');
+                    }
+                    builder.append(argTypes[i].getName());
+                }
+            }
+            signature = builder.append(')').toString();
+        }
+        return signature;
+    }
 }
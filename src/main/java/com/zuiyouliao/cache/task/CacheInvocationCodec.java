@@ -0,0 +1,304 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.task;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.constant.RegistryFormat;
+import com.zuiyouliao.cache.prop.ProjectProperties;
+import com.zuiyouliao.cache.prop.SerialProperties;
+import com.zuiyouliao.cache.prop.TaskProperties;
+import com.zuiyouliao.cache.serializer.BinaryRedisSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自刷缓存登记值的编解码
+ * <p>方法签名只在描述表（z-cache::refresh-methods[::项目名]）中保存一次，按签名摘要得到的方法id引用；
+ * 每个自刷缓存只保存：1字节魔数 + 1字节版本号 + 8字节方法id + 8字节ttl + binary序列化的方法参数，
+ * 缓存的key就是登记表的field，不再重复保存</p>
+ * <p>旧版本节点只能读取jdk序列化的登记值，紧凑格式需要在所有节点都升级后通过z-cache.task.registry-format = compact开启，
+ * 默认仍写为jdk序列化；参数无法用binary序列化、或方法id冲突时，整条登记值使用jdk序列化。读取时两种格式都支持，
+ * 已登记的值不会自动转换格式，在重新登记（如ttl变化）时按当前配置写入</p>
+ * <p>方法描述表没有过期时间，仍可能被redis淘汰：缺少方法描述的登记值跳过不删除，本节点再次登记该方法时补写方法描述；
+ * 补写检查每个方法每分钟最多一次，避免每次登记都多一次往返</p>
+ */
+public class CacheInvocationCodec implements InitializingBean {
+
+    private static final int MAGIC = 0xC7;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = 18;
+
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    /**
+     * 同一方法两次补写方法描述的最小间隔
+     */
+    private static final long DESCRIPTOR_CHECK_INTERVAL = TimeUnit.MINUTES.toNanos(1L);
+
+    @Resource(name = "ttlRedisTemplate")
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private ProjectProperties projectProperties;
+
+    @Resource
+    private SerialProperties serialProperties;
+
+    @Resource
+    private TaskProperties taskProperties;
+
+    private final Logger logger = LoggerFactory.getLogger(CacheInvocationCodec.class);
+
+    private final RedisSerializer<Object> jdkSerializer = RedisSerializer.java();
+
+    private final RedisSerializer<String> stringSerializer = RedisSerializer.string();
+
+    private BinaryRedisSerializer argsSerializer;
+
+    /**
+     * 已写入描述表的方法，key为方法签名，value为方法id
+     */
+    private final ConcurrentMap<String, Long> methodIds = new ConcurrentHashMap<>(64);
+
+    /**
+     * 下次补写方法描述的时间（System.nanoTime()），key为方法签名
+     */
+    private final ConcurrentMap<String, Long> descriptorChecks = new ConcurrentHashMap<>(64);
+
+    /**
+     * 方法id冲突的方法签名，使用jdk序列化
+     */
+    private final Set<String> conflicts = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 已读取的方法描述，key为方法id
+     */
+    private final ConcurrentMap<Long, MethodDescriptor> descriptors = new ConcurrentHashMap<>(64);
+
+    @Override
+    public void afterPropertiesSet() {
+        argsSerializer = new BinaryRedisSerializer(serialProperties.getRegisteredClasses());
+    }
+
+    /**
+     * 编码
+     * @param cacheInvocation 缓存调用对象
+     * @return byte[]
+     */
+    public byte[] encode(CacheInvocation cacheInvocation) {
+        if (taskProperties.getRegistryFormat() != RegistryFormat.compact) {
+            return jdkSerializer.serialize(cacheInvocation);
+        }
+        Long methodId = this.methodId(cacheInvocation.getSignature());
+        if (methodId == null) {
+            return jdkSerializer.serialize(cacheInvocation);
+        }
+        byte[] args;
+        try {
+            args = argsSerializer.serialize(cacheInvocation.getArgs() == null ? EMPTY_ARGS : cacheInvocation.getArgs());
+        } catch (SerializationException e) {
+            logger.debug("CacheInvocation args not binary serializable, fallback to jdk, key={}", cacheInvocation.getKey(), e);
+            return jdkSerializer.serialize(cacheInvocation);
+        }
+        byte[] bytes = new byte[HEADER_LENGTH + args.length];
+        bytes[0] = (byte) MAGIC;
+        bytes[1] = (byte) VERSION;
+        writeLong(bytes, 2, methodId);
+        writeLong(bytes, 10, cacheInvocation.getTtl());
+        System.arraycopy(args, 0, bytes, HEADER_LENGTH, args.length);
+        return bytes;
+    }
+
+    /**
+     * 解码
+     * @param key 缓存的key
+     * @param bytes 登记值
+     * @return com.zuiyouliao.cache.task.CacheInvocation 登记值为空时返回null
+     * @throws SerializationException 本节点无法反序列化（可能是其它版本的节点登记的），或方法描述已不存在（等待重新登记时补写）
+     */
+    public CacheInvocation decode(String key, byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (!isCompact(bytes)) {
+            return (CacheInvocation) jdkSerializer.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_LENGTH || (bytes[1] & 0xFF) > VERSION) {
+            throw new SerializationException("Unsupported CacheInvocation format, version=" + (bytes[1] & 0xFF));
+        }
+        long methodId = readLong(bytes, 2);
+        MethodDescriptor descriptor = this.descriptor(methodId);
+        if (descriptor == null) {
+            throw new SerializationException("CacheInvocation method descriptor missing, methodId=" + Long.toHexString(methodId));
+        }
+        Object[] args = bytes.length == HEADER_LENGTH ? EMPTY_ARGS
+                : (Object[]) argsSerializer.deserialize(Arrays.copyOfRange(bytes, HEADER_LENGTH, bytes.length));
+        return new CacheInvocation(descriptor.targetName, descriptor.methodName, descriptor.argTypes, args, key, readLong(bytes, 10));
+    }
+
+    /**
+     * 判断是否为紧凑格式
+     */
+    public static boolean isCompact(byte[] bytes) {
+        return bytes != null && bytes.length > 0 && (bytes[0] & 0xFF) == MAGIC;
+    }
+
+    private Long methodId(String signature) {
+        Long methodId = methodIds.get(signature);
+        if (methodId != null) {
+            // 方法描述表可能已被redis淘汰，定期补写（已存在时不变），避免长期写入无法解析的方法id
+            this.assertDescriptor(methodId, signature);
+            return methodId;
+        }
+        if (conflicts.contains(signature)) {
+            return null;
+        }
+        long candidate = hash(signature);
+        byte[] rawKey = stringSerializer.serialize(this.methodsKey());
+        byte[] rawField = stringSerializer.serialize(Long.toHexString(candidate));
+        byte[] rawSignature = stringSerializer.serialize(signature);
+        String registered = redisTemplate.execute((RedisCallback<String>) connection -> {
+            if (Boolean.TRUE.equals(connection.hSetNX(rawKey, rawField, rawSignature))) {
+                return signature;
+            }
+            return stringSerializer.deserialize(connection.hGet(rawKey, rawField));
+        });
+        if (!signature.equals(registered)) {
+            logger.warn("CacheInvocation method id conflict, fallback to jdk, signature={}, registered={}", signature, registered);
+            conflicts.add(signature);
+            return null;
+        }
+        descriptorChecks.put(signature, System.nanoTime() + DESCRIPTOR_CHECK_INTERVAL);
+        methodIds.put(signature, candidate);
+        return candidate;
+    }
+
+    private void assertDescriptor(long methodId, String signature) {
+        long now = System.nanoTime();
+        Long next = descriptorChecks.get(signature);
+        if (next != null && now - next < 0) {
+            return;
+        }
+        // 并发时可能有多个线程同时补写，HSETNX不会覆盖，无需加锁
+        descriptorChecks.put(signature, now + DESCRIPTOR_CHECK_INTERVAL);
+        byte[] rawKey = stringSerializer.serialize(this.methodsKey());
+        byte[] rawField = stringSerializer.serialize(Long.toHexString(methodId));
+        byte[] rawSignature = stringSerializer.serialize(signature);
+        Boolean written = redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.hSetNX(rawKey, rawField, rawSignature));
+        if (Boolean.TRUE.equals(written)) {
+            logger.warn("CacheInvocation method descriptor was missing, rewritten, signature={}", signature);
+        }
+    }
+
+    private MethodDescriptor descriptor(long methodId) {
+        MethodDescriptor descriptor = descriptors.get(methodId);
+        if (descriptor != null) {
+            return descriptor;
+        }
+        byte[] rawKey = stringSerializer.serialize(this.methodsKey());
+        byte[] rawField = stringSerializer.serialize(Long.toHexString(methodId));
+        String signature = stringSerializer.deserialize(redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.hGet(rawKey, rawField)));
+        if (signature == null) {
+            return null;
+        }
+        descriptor = MethodDescriptor.parse(signature);
+        descriptors.put(methodId, descriptor);
+        return descriptor;
+    }
+
+    private String methodsKey() {
+        return CacheConstant.REFRESH_METHODS_KEY +
+                (Objects.equals("", projectProperties.getName()) ? "" : "::" + projectProperties.getName());
+    }
+
+    /**
+     * 方法id：签名MD5的前8个字节
+     */
+    private static long hash(String signature) {
+        byte[] digest = DigestUtils.md5Digest(signature.getBytes(StandardCharsets.UTF_8));
+        return readLong(digest, 0);
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * 方法描述
+     */
+    private static class MethodDescriptor {
+
+        private final String targetName;
+
+        private final String methodName;
+
+        private final Class<?>[] argTypes;
+
+        MethodDescriptor(String targetName, String methodName, Class<?>[] argTypes) {
+            this.targetName = targetName;
+            this.methodName = methodName;
+            this.argTypes = argTypes;
+        }
+
+        static MethodDescriptor parse(String signature) {
+            int hash = signature.indexOf('#');
+            int open = signature.indexOf('(', hash);
+            if (hash <= 0 || open < 0 || !signature.endsWith(")")) {
+                throw new SerializationException("Invalid method signature " + signature);
+            }
+            String[] typeNames = StringUtils.commaDelimitedListToStringArray(signature.substring(open + 1, signature.length() - 1));
+            Class<?>[] argTypes = new Class<?>[typeNames.length];
+            try {
+                for (int i = 0; i < typeNames.length; i++) {
+                    argTypes[i] = ClassUtils.forName(typeNames[i], ClassUtils.getDefaultClassLoader());
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                throw new SerializationException("Cannot resolve method signature " + signature, e);
+            }
+            return new MethodDescriptor(signature.substring(0, hash), signature.substring(hash + 1, open), argTypes);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.task;
+
+import com.zuiyouliao.cache.annotation.TtlCacheable;
+import com.zuiyouliao.cache.core.TtlJitter;
+import com.zuiyouliao.cache.prop.TtlProperties;
+import com.zuiyouliao.cache.util.EmptyValueUtil;
+import com.zuiyouliao.cache.util.SpringContextUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import javax.annotation.Resource;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 自刷缓存调用器注册中心
+ * <p>每个（目标类，方法，参数类型）只解析一次，得到绑定了Spring bean的MethodHandle，
+ * 解析失败的结果同样会被记录，避免每个周期重复解析；Spring上下文刷新后全部失效。
+ * 同时解析方法的ttl抖动和空值设置，刷新写入时使用</p>
+ */
+public class CacheInvokerRegistry implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final ConcurrentMap<String, CacheInvoker> invokers = new ConcurrentHashMap<>(64);
+
+    private final Logger logger = LoggerFactory.getLogger(CacheInvokerRegistry.class);
+
+    @Resource
+    private TtlProperties ttlProperties;
+
+    /**
+     * 获取调用器
+     * @param cacheInvocation 缓存调用对象
+     * @return com.zuiyouliao.cache.task.CacheInvokerRegistry.CacheInvoker
+     */
+    public CacheInvoker getInvoker(CacheInvocation cacheInvocation) {
+        String signature = cacheInvocation.getSignature();
+        CacheInvoker invoker = invokers.get(signature);
+        if (invoker == null) {
+            invoker = invokers.computeIfAbsent(signature, key -> this.resolve(key, cacheInvocation));
+        }
+        return invoker;
+    }
+
+    private CacheInvoker resolve(String signature, CacheInvocation cacheInvocation) {
+        try {
+            Class<?> targetClass = ClassUtils.forName(cacheInvocation.getTargetName(), ClassUtils.getDefaultClassLoader());
+            Object target = SpringContextUtil.getBean(targetClass);
+            Method method = targetClass.getMethod(cacheInvocation.getMethodName(), cacheInvocation.getArgTypes());
+            ReflectionUtils.makeAccessible(method);
+            MethodHandle handle = MethodHandles.lookup().unreflect(method)
+                    .bindTo(target)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(INVOKER_TYPE);
+            TtlCacheable ttlCacheable = AnnotationUtils.findAnnotation(method, TtlCacheable.class);
+            TtlJitter ttlJitter = TtlJitter.resolve(ttlCacheable == null ? "" : ttlCacheable.ttlJitter(), ttlProperties.getJitter());
+            return ttlCacheable == null ? new CacheInvoker(handle, ttlJitter, -1L, false, null)
+                    : new CacheInvoker(handle, ttlJitter, ttlCacheable.nullTtl(), ttlCacheable.emptyAsNull(), null);
+        } catch (Exception | LinkageError e) {
+            logger.error("CacheInvoker resolve fail, signature={}", signature, e);
+            return new CacheInvoker(null, TtlJitter.NONE, -1L, false, e);
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        invokers.clear();
+    }
+
+    public int size() {
+        return invokers.size();
+    }
+
+    /**
+     * 调用器
+     */
+    public static class CacheInvoker {
+
+        private final MethodHandle handle;
+
+        private final TtlJitter ttlJitter;
+
+        private final long nullTtl;
+
+        private final boolean emptyAsNull;
+
+        /**
+         * 解析失败的原因，为null时表示解析成功
+         */
+        private final Throwable failure;
+
+        CacheInvoker(MethodHandle handle, TtlJitter ttlJitter, long nullTtl, boolean emptyAsNull, Throwable failure) {
+            this.handle = handle;
+            this.ttlJitter = ttlJitter;
+            this.nullTtl = nullTtl;
+            this.emptyAsNull = emptyAsNull;
+            this.failure = failure;
+        }
+
+        public boolean isResolved() {
+            return failure == null;
+        }
+
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        public TtlJitter getTtlJitter() {
+            return ttlJitter;
+        }
+
+        public long getNullTtl() {
+            return nullTtl;
+        }
+
+        /**
+         * 是否配置了空值缓存（nullTtl或emptyAsNull），配置时空值写为空值标记并按nullTtl过期
+         */
+        public boolean isNegativeCaching() {
+            return nullTtl > 0 || emptyAsNull;
+        }
+
+        /**
+         * 刷新结果是否为空值
+         */
+        public boolean isNegative(Object data) {
+            return data == null || (emptyAsNull && EmptyValueUtil.isEmpty(data));
+        }
+
+        public Object invoke(Object[] args) throws Exception {
+            if (failure != null) {
+                throw new IllegalStateException("CacheInvoker resolve fail", failure);
+            }
+            try {
+                return (Object) handle.invokeExact(args == null ? new Object[0] : args);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new UndeclaredThrowableException(t);
+            }
+        }
+    }
+}
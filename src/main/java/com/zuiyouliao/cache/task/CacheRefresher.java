@@ -15,19 +15,48 @@
  */
 package com.zuiyouliao.cache.task;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.constant.RefreshMode;
+import com.zuiyouliao.cache.core.CacheMethodMetadata;
+import com.zuiyouliao.cache.core.NearCacheRegistry;
+import com.zuiyouliao.cache.memory.MemoryRedisConnectionFactory;
+import com.zuiyouliao.cache.metrics.CacheMetrics;
 import com.zuiyouliao.cache.prop.ProjectProperties;
+import com.zuiyouliao.cache.prop.RefreshProperties;
 import com.zuiyouliao.cache.prop.TaskProperties;
-import com.zuiyouliao.cache.util.SpringContextUtil;
 import com.zuiyouliao.cache.util.ThreadLocalUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cache.support.NullValue;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
 
 import javax.annotation.Resource;
-import java.lang.reflect.Method;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -36,7 +65,37 @@ import java.util.concurrent.TimeUnit;
  * @author lzc
  * @date 2021/03/11 16:00
  */
-public class CacheRefresher {
+public class CacheRefresher implements InitializingBean, DisposableBean {
+
+    /**
+     * 登记自刷缓存：与已登记的值相同则不写入，在redis端一次完成比较和写入
+     */
+    static final RedisScript<Long> REGISTER_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] then return 0 end " +
+            "redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) return 1", Long.class);
+
+    static {
+        MemoryRedisConnectionFactory.registerScript(REGISTER_SCRIPT, (connection, keys, args) -> {
+            if (Arrays.equals(connection.hGet(keys.get(0), args.get(0)), args.get(1))) {
+                return 0L;
+            }
+            connection.hSet(keys.get(0), args.get(0), args.get(1));
+            return 1L;
+        });
+    }
+
+    private static final String REFRESH_TASK = "refresh";
+
+    private static final String RECOMPUTE_TASK = "recompute";
+
+    private static final String CLEAN_TASK = "clean";
+
+    private static final String WHEEL_TASK = "wheel";
+
+    /**
+     * wheel模式下已过期（或已删除）的自刷缓存在该时间内打散刷新（毫秒）
+     */
+    private static final long OVERDUE_SPREAD = 10000L;
 
     @Resource(name = "ttlRedisTemplate")
     private RedisTemplate<String, Object> redisTemplate;
@@ -53,8 +112,85 @@ public class CacheRefresher {
     @Resource
     private TaskProperties taskProperties;
 
+    @Resource
+    private NearCacheRegistry nearCacheRegistry;
+
+    @Resource
+    private RefreshPartitioner refreshPartitioner;
+
+    @Resource
+    private CacheInvokerRegistry cacheInvokerRegistry;
+
+    @Resource
+    private CacheInvocationCodec cacheInvocationCodec;
+
+    @Resource
+    private CacheMetrics cacheMetrics;
+
+    @Resource
+    private RefreshScheduler refreshScheduler;
+
+    @Resource
+    private RefreshProperties refreshProperties;
+
+    @Resource(name = "ttlRedisCacheConfiguration")
+    private RedisCacheConfiguration cacheConfiguration;
+
     private final Logger logger = LoggerFactory.getLogger(CacheRefresher.class);
 
+    /**
+     * 本节点已登记的自刷缓存，key为缓存的key，value为ttl
+     */
+    private Cache<String, Long> registeredCaches;
+
+    /**
+     * 正在提前重算的key
+     */
+    private final Set<String> recomputingKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 上个刷新周期得出的热度门槛（第N热的估算访问次数）
+     */
+    private volatile int hotnessCutoff;
+
+    /**
+     * wheel模式的时间轮，启动后才创建
+     */
+    private volatile RefreshWheel refreshWheel;
+
+    /**
+     * wheel模式下本周期的热度筛选，时间轮线程和同步线程共用，使用时需要同步
+     */
+    private volatile HotnessFilter wheelHotnessFilter;
+
+    @Override
+    public void afterPropertiesSet() {
+        registeredCaches = Caffeine.newBuilder()
+                .maximumSize(taskProperties.getRegisteredSize())
+                .expireAfterWrite(Duration.ofSeconds(Math.max(taskProperties.getRegisteredExpire(), 1L)))
+                .build();
+    }
+
+    @Override
+    public void destroy() {
+        RefreshWheel wheel = refreshWheel;
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+
+    /**
+     * wheel模式下启动时间轮，由开启了自动刷新的CacheTask调用
+     */
+    public synchronized void startWheel() {
+        if (refreshWheel != null || refreshProperties.getMode() != RefreshMode.wheel) {
+            return;
+        }
+        RefreshWheel wheel = new RefreshWheel(refreshProperties.getWheelTick(), refreshProperties.getWheelSize(), this::refreshDue);
+        wheel.start();
+        refreshWheel = wheel;
+    }
+
     /**
      * 添加需要自动刷新的缓存
      * @param cacheInvocation 缓存调用对象
@@ -67,57 +203,456 @@ public class CacheRefresher {
             // 记录访问缓存的时间
             cacheAccessRegistrar.register(cacheInvocation.getKey());
         }
-        Object cache = redisTemplate.opsForHash().get(this.refreshKey(), cacheInvocation.getKey());
-        CacheInvocation oldInvocation = (CacheInvocation) cache;
-        if (oldInvocation != null && oldInvocation.getTtl() == cacheInvocation.getTtl()) {
-            // 以key为准，如果过期时间一样，则视为完全一样，避免每次获取方法缓存都设置一次刷新参数的缓存
+        Long registeredTtl = registeredCaches.getIfPresent(cacheInvocation.getKey());
+        if (registeredTtl != null && registeredTtl == cacheInvocation.getTtl()) {
+            // 以key为准，如果过期时间一样，则视为完全一样，避免每次获取方法缓存都访问redis
             return;
         }
-        redisTemplate.opsForHash().put(this.refreshKey(), cacheInvocation.getKey(), cacheInvocation);
+        this.register(cacheInvocation);
+        registeredCaches.put(cacheInvocation.getKey(), cacheInvocation.getTtl());
+        RefreshWheel wheel = refreshWheel;
+        if (wheel != null && cacheInvocation.getTtl() > 0) {
+            // 已安排的保持不变，新登记的按完整的ttl安排
+            wheel.schedule(cacheInvocation.getKey(), this.nextRefreshDelay(TimeUnit.SECONDS.toMillis(cacheInvocation.getTtl())), false);
+        }
     }
 
+    @SuppressWarnings("unchecked")
+    private void register(CacheInvocation cacheInvocation) {
+        RedisSerializer<String> hashKeySerializer = (RedisSerializer<String>) redisTemplate.getHashKeySerializer();
+        redisTemplate.execute(REGISTER_SCRIPT, RedisSerializer.byteArray(), new GenericToStringSerializer<>(Long.class),
+                Collections.singletonList(this.refreshKey()),
+                hashKeySerializer.serialize(cacheInvocation.getKey()), cacheInvocationCodec.encode(cacheInvocation));
+    }
+
+    /**
+     * 刷新所有自刷缓存，按页扫描（HSCAN）登记的自刷缓存，每页交给调度器按优先级和余量提交后再读取下一页
+     * <p>wheel模式下有ttl的自刷缓存由时间轮刷新，这里只把尚未安排的放入时间轮，不过期的仍在本周期刷新</p>
+     */
+    @SuppressWarnings("unchecked")
     public void refresh() {
-        Map<Object, Object> caches = redisTemplate.opsForHash().entries(this.refreshKey());
-        if (caches.size() == 0) {
+        long start = System.nanoTime();
+        RedisSerializer<String> hashKeySerializer = (RedisSerializer<String>) redisTemplate.getHashKeySerializer();
+        int scanCount = Math.max(taskProperties.getScanCount(), 1);
+        List<CacheInvocation> batch = new ArrayList<>(scanCount);
+        List<CacheInvocation> unscheduled = new ArrayList<>();
+        RefreshWheel wheel = refreshWheel;
+        HotnessFilter previousFilter = wheelHotnessFilter;
+        if (wheel != null && previousFilter != null) {
+            // 时间轮在整个周期内使用上个周期的筛选，周期结束时才能得出门槛
+            synchronized (previousFilter) {
+                hotnessCutoff = previousFilter.nextCutoff();
+            }
+        }
+        HotnessFilter hotnessFilter = cacheAccessRegistrar.hotnessFilter(hotnessCutoff);
+        if (wheel != null) {
+            wheelHotnessFilter = hotnessFilter;
+        }
+        try (Cursor<Map.Entry<byte[], byte[]>> cursor = this.scanRefreshValues()) {
+            while (cursor.hasNext()) {
+                Map.Entry<byte[], byte[]> entry = cursor.next();
+                String cacheKey = hashKeySerializer.deserialize(entry.getKey());
+                if (!refreshPartitioner.isOwner(cacheKey)) {
+                    // 集群分区模式，由其它节点刷新
+                    continue;
+                }
+                if (wheel == null && hotnessFilter != null && !hotnessFilter.admit(cacheKey)) {
+                    // 近期访问少，不刷新，缓存过期后按正常流程加载
+                    continue;
+                }
+                try {
+                    final CacheInvocation cacheInvocation = cacheInvocationCodec.decode(cacheKey, entry.getValue());
+                    if (cacheInvocation == null) {
+                        this.deleteRefreshValue(cacheKey);
+                        continue;
+                    }
+                    if (wheel != null) {
+                        if (cacheInvocation.getTtl() > 0) {
+                            if (!wheel.contains(cacheKey)) {
+                                unscheduled.add(cacheInvocation);
+                            }
+                            if (unscheduled.size() >= scanCount) {
+                                this.scheduleWheel(wheel, unscheduled);
+                            }
+                            continue;
+                        }
+                        if (hotnessFilter != null && !this.admit(hotnessFilter, cacheKey)) {
+                            continue;
+                        }
+                    }
+                    batch.add(cacheInvocation);
+                } catch (ClassCastException e) {
+                    this.deleteRefreshValue(cacheKey);
+                } catch (SerializationException e) {
+                    // 可能是其它版本的节点登记的，或方法描述已被淘汰（重新登记时补写），跳过不删除
+                    logger.warn("CacheInvocation deserialize fail, key={}", cacheKey, e);
+                }
+                if (batch.size() >= scanCount && !this.schedule(batch)) {
+                    return;
+                }
+            }
+            this.schedule(batch);
+        } catch (IOException e) {
+            logger.warn("Refresh cursor close fail", e);
+        } finally {
+            if (wheel != null) {
+                this.scheduleWheel(wheel, unscheduled);
+            } else if (hotnessFilter != null) {
+                hotnessCutoff = hotnessFilter.nextCutoff();
+            }
+            cacheMetrics.recordTick(REFRESH_TASK, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 把尚未安排的自刷缓存放入时间轮：按缓存剩余的存活时间减去提前量安排，已过期的在短时间内打散刷新
+     */
+    private void scheduleWheel(RefreshWheel wheel, List<CacheInvocation> unscheduled) {
+        if (unscheduled.isEmpty()) {
             return;
         }
-        for (Map.Entry<Object, Object> entry : caches.entrySet()) {
+        List<Object> keys = new ArrayList<>(unscheduled.size());
+        for (CacheInvocation cacheInvocation : unscheduled) {
+            keys.add(cacheInvocation.getKey());
+        }
+        List<Object> ttls = null;
+        try {
+            ttls = refreshScheduler.pttl(keys);
+        } catch (DataAccessException e) {
+            logger.warn("Refresh wheel pttl fail, scheduling by ttl", e);
+        }
+        for (int i = 0; i < unscheduled.size(); i++) {
+            long ttlMillis = TimeUnit.SECONDS.toMillis(unscheduled.get(i).getTtl());
+            Object pttl = ttls == null ? null : ttls.get(i);
+            long delay;
+            if (pttl instanceof Long && (Long) pttl > 0) {
+                delay = (Long) pttl - this.leadTime(ttlMillis);
+                if (delay <= 0) {
+                    delay = ThreadLocalRandom.current().nextLong(Math.min(OVERDUE_SPREAD, ttlMillis) + 1);
+                }
+            } else if (pttl instanceof Long && (Long) pttl == -2L) {
+                delay = ThreadLocalRandom.current().nextLong(Math.min(OVERDUE_SPREAD, ttlMillis) + 1);
+            } else {
+                delay = this.nextRefreshDelay(ttlMillis);
+            }
+            wheel.schedule(unscheduled.get(i).getKey(), delay, false);
+        }
+        unscheduled.clear();
+    }
+
+    /**
+     * 时间轮线程：刷新到期的自刷缓存
+     * <p>先统一安排一次重试，提交后由刷新结果重新安排（成功）或取消（失败时已删除登记），未能提交的按重试时间再次到期</p>
+     */
+    private void refreshDue(List<String> cacheKeys) {
+        RefreshWheel wheel = refreshWheel;
+        if (wheel == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        long retryDelay = Math.max(refreshProperties.getAcquireTimeout(), refreshProperties.getWheelTick());
+        for (String cacheKey : cacheKeys) {
+            wheel.schedule(cacheKey, retryDelay, false);
+        }
+        int scanCount = Math.max(taskProperties.getScanCount(), 1);
+        try {
+            for (int from = 0; from < cacheKeys.size(); from += scanCount) {
+                if (!this.refreshDue(wheel, cacheKeys.subList(from, Math.min(from + scanCount, cacheKeys.size())))) {
+                    logger.warn("Refresh throttled, remaining caches retry in {}ms, limit={}", retryDelay, refreshScheduler.getLimit());
+                    return;
+                }
+            }
+        } finally {
+            cacheMetrics.recordTick(WHEEL_TASK, System.nanoTime() - start);
+        }
+    }
+
+    private boolean refreshDue(RefreshWheel wheel, List<String> cacheKeys) {
+        List<byte[]> values;
+        try {
+            values = this.getRefreshValues(cacheKeys);
+        } catch (DataAccessException e) {
+            logger.warn("Refresh wheel load fail", e);
+            return true;
+        }
+        if (values == null) {
+            return true;
+        }
+        HotnessFilter hotnessFilter = wheelHotnessFilter;
+        List<CacheInvocation> batch = new ArrayList<>(cacheKeys.size());
+        for (int i = 0; i < cacheKeys.size(); i++) {
+            String cacheKey = cacheKeys.get(i);
+            byte[] value = values.get(i);
+            if (value == null || !refreshPartitioner.isOwner(cacheKey)) {
+                // 已删除登记（如超期未访问被清理），或由其它节点刷新（由该节点同步时安排）
+                wheel.cancel(cacheKey);
+                continue;
+            }
             try {
-                final CacheInvocation cacheInvocation = (CacheInvocation) entry.getValue();
+                CacheInvocation cacheInvocation = cacheInvocationCodec.decode(cacheKey, value);
                 if (cacheInvocation == null) {
-                    redisTemplate.opsForHash().delete(this.refreshKey(), entry.getKey());
+                    this.deleteRefreshValue(cacheKey);
                     continue;
                 }
-                cacheThreadPoolExecutor.execute(() -> this.execute(cacheInvocation));
+                if (hotnessFilter != null && !this.admit(hotnessFilter, cacheKey)) {
+                    // 近期访问少，本次不刷新，到期时再判断
+                    wheel.schedule(cacheKey, this.nextRefreshDelay(TimeUnit.SECONDS.toMillis(cacheInvocation.getTtl())), true);
+                    continue;
+                }
+                batch.add(cacheInvocation);
             } catch (ClassCastException e) {
-                redisTemplate.opsForHash().delete(this.refreshKey(), entry.getKey());
+                this.deleteRefreshValue(cacheKey);
+            } catch (SerializationException e) {
+                // 可能是其它版本的节点登记的（由该节点刷新），或方法描述已被淘汰（重新登记后由同步重新安排）
+                logger.warn("CacheInvocation deserialize fail, key={}", cacheKey, e);
+                wheel.cancel(cacheKey);
             }
         }
+        return batch.isEmpty() || refreshScheduler.schedule(batch, this::execute, REFRESH_TASK);
+    }
+
+    private boolean admit(HotnessFilter hotnessFilter, String cacheKey) {
+        synchronized (hotnessFilter) {
+            return hotnessFilter.admit(cacheKey);
+        }
+    }
+
+    /**
+     * 缓存过期前多久刷新，不超过ttl的一半
+     */
+    private long leadTime(long ttlMillis) {
+        return Math.min(Math.max(refreshProperties.getLeadTime(), 0L), ttlMillis / 2);
+    }
+
+    /**
+     * 写入后多久刷新：(ttl - 提前量) 的最后spread比例内均匀随机
+     */
+    private long nextRefreshDelay(long ttlMillis) {
+        long interval = ttlMillis - this.leadTime(ttlMillis);
+        long range = (long) (interval * Math.min(Math.max(refreshProperties.getSpread(), 0D), 1D));
+        return range > 0 ? interval - ThreadLocalRandom.current().nextLong(range + 1) : interval;
+    }
+
+    private boolean schedule(List<CacheInvocation> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        boolean scheduled = refreshScheduler.schedule(batch, this::execute, REFRESH_TASK);
+        if (!scheduled) {
+            // 下游持续过载，本周期剩余的自刷缓存留到下个周期
+            logger.warn("Refresh throttled, remaining caches deferred to next cycle, limit={}", refreshScheduler.getLimit());
+        }
+        batch.clear();
+        return scheduled;
+    }
+
+    /**
+     * 批量读取登记的自刷缓存（未解码）
+     *
+     * @param cacheKeys 缓存的key
+     * @return java.util.List&lt;byte[]&gt; 与cacheKeys一一对应，未登记时为null
+     */
+    @SuppressWarnings("unchecked")
+    List<byte[]> getRefreshValues(List<String> cacheKeys) {
+        RedisSerializer<String> hashKeySerializer = (RedisSerializer<String>) redisTemplate.getHashKeySerializer();
+        byte[] rawKey = ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(this.refreshKey());
+        byte[][] fields = new byte[cacheKeys.size()][];
+        for (int i = 0; i < cacheKeys.size(); i++) {
+            fields[i] = hashKeySerializer.serialize(cacheKeys.get(i));
+        }
+        return redisTemplate.execute((RedisCallback<List<byte[]>>) connection -> connection.hMGet(rawKey, fields));
+    }
+
+    /**
+     * 按页扫描登记的自刷缓存（未解码），使用完需要关闭游标
+     */
+    @SuppressWarnings("unchecked")
+    Cursor<Map.Entry<byte[], byte[]>> scanRefreshValues() {
+        byte[] rawKey = ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(this.refreshKey());
+        ScanOptions options = ScanOptions.scanOptions().count(taskProperties.getScanCount()).build();
+        return redisTemplate.executeWithStickyConnection(connection -> connection.hScan(rawKey, options));
     }
 
-    private void execute(CacheInvocation cacheInvocation) {
+    /**
+     * 调用方法并写入缓存，成功时返回true
+     */
+    boolean execute(CacheInvocation cacheInvocation) {
+        CacheInvokerRegistry.CacheInvoker invoker = cacheInvokerRegistry.getInvoker(cacheInvocation);
+        if (!invoker.isResolved()) {
+            // 解析失败已在注册中心记录过日志，删除无法调用的自刷缓存
+            logger.warn("CacheInvocation unresolvable, key={}", cacheInvocation.getKey());
+            this.deleteRefreshValue(cacheInvocation.getKey());
+            return true;
+        }
         try {
             ThreadLocalUtil.put(CacheConstant.REFRESH_KEY, Boolean.TRUE);
             // 删除缓存，不然缓存未过期的情况，反射请求方法得到的结果是缓存
             redisTemplate.delete(cacheInvocation.getKey());
-            Class<?> targetClass = Class.forName(cacheInvocation.getTargetName());
-            Object target = SpringContextUtil.getBean(targetClass);
-            Method method = targetClass.getMethod(cacheInvocation.getMethodName(), cacheInvocation.getArgTypes());
-            Object data = method.invoke(target, cacheInvocation.getArgs());
-            if (cacheInvocation.getTtl() > 0) {
-                redisTemplate.opsForValue().set(cacheInvocation.getKey(), data, cacheInvocation.getTtl(), TimeUnit.SECONDS);
-            } else {
-                redisTemplate.opsForValue().set(cacheInvocation.getKey(), data);
-            }
+            this.store(cacheInvocation, invoker, invoker.invoke(cacheInvocation.getArgs()));
+            return true;
         } catch (Exception e) {
             logger.error("CacheInvocation reflect fail", e);
             // 删除无法反射的自刷缓存
-            redisTemplate.opsForHash().delete(this.refreshKey(), cacheInvocation.getKey());
+            this.deleteRefreshValue(cacheInvocation.getKey());
+            return false;
         } finally {
             ThreadLocalUtil.remove(CacheConstant.REFRESH_KEY);
         }
     }
 
+    /**
+     * 预热加载：缓存仍缺失时调用方法并写入；不删除已有的缓存，失败时也不删除登记（启动时下游服务可能尚未就绪）
+     *
+     * @param cacheInvocation 缓存调用对象
+     * @return boolean 是否加载，缓存已存在时不加载
+     * @throws Exception 无法解析或调用方法
+     */
+    boolean warm(CacheInvocation cacheInvocation) throws Exception {
+        CacheInvokerRegistry.CacheInvoker invoker = cacheInvokerRegistry.getInvoker(cacheInvocation);
+        if (!invoker.isResolved()) {
+            throw new IllegalStateException("CacheInvocation unresolvable", invoker.getFailure());
+        }
+        // 扫描之后正常请求可能已经写入，加载前再次检查
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(cacheInvocation.getKey()))) {
+            return false;
+        }
+        try {
+            ThreadLocalUtil.put(CacheConstant.REFRESH_KEY, Boolean.TRUE);
+            this.store(cacheInvocation, invoker, invoker.invoke(cacheInvocation.getArgs()));
+            return true;
+        } finally {
+            ThreadLocalUtil.remove(CacheConstant.REFRESH_KEY);
+        }
+    }
+
+    /**
+     * 写入方法的结果，按需安排下次刷新
+     */
+    private void store(CacheInvocation cacheInvocation, CacheInvokerRegistry.CacheInvoker invoker, Object data) {
+        long ttl = cacheInvocation.getTtl();
+        byte[] rawValue = null;
+        boolean negative = invoker.isNegative(data);
+        if (negative && !cacheConfiguration.getAllowCacheNullValues()) {
+            // 与RedisCache一致，不允许缓存空值时不写入，由下次访问重新加载
+            nearCacheRegistry.evict(cacheInvocation.getKey());
+            // 仍按ttl安排下次刷新，不然到期时预先安排的重试会让该key每个重试间隔刷新一次
+            this.scheduleNext(cacheInvocation.getKey(), ttl > 0 ? TimeUnit.SECONDS.toMillis(ttl) : 0L);
+            return;
+        }
+        if (negative && invoker.isNegativeCaching()) {
+            // 与缓存拦截器一致，空值（以及emptyAsNull的空集合）写为空值标记，按nullTtl过期
+            data = NullValue.INSTANCE;
+            ttl = CacheMethodMetadata.nullTtl(ttl, invoker.getNullTtl());
+        } else if (negative) {
+            // 未配置空值缓存时与RedisCache一致，写为jdk序列化的NullValue
+            rawValue = RedisSerializer.java().serialize(NullValue.INSTANCE);
+        }
+        long ttlMillis = ttl > 0 ? invoker.getTtlJitter().apply(TimeUnit.SECONDS.toMillis(ttl)) : 0L;
+        this.write(cacheInvocation.getKey(), data, rawValue, ttlMillis);
+        // 按本次写入的存活时间（包括抖动和nullTtl）安排下次刷新
+        this.scheduleNext(cacheInvocation.getKey(), ttlMillis);
+        // 直接写redis绕过了RedisCache，需要手动失效各节点的本地缓存
+        nearCacheRegistry.evict(cacheInvocation.getKey());
+    }
+
+    /**
+     * wheel模式下替换时间轮中该key的条目（包括到期时预先安排的重试），没有ttl时取消
+     */
+    private void scheduleNext(String cacheKey, long ttlMillis) {
+        RefreshWheel wheel = refreshWheel;
+        if (wheel == null) {
+            return;
+        }
+        if (ttlMillis > 0) {
+            wheel.schedule(cacheKey, this.nextRefreshDelay(ttlMillis), true);
+        } else {
+            wheel.cancel(cacheKey);
+        }
+    }
+
+    /**
+     * 写入刷新结果，rawValue不为空时直接写入，不经过redisTemplate的序列化器
+     */
+    @SuppressWarnings("unchecked")
+    private void write(String key, Object data, byte[] rawValue, long ttlMillis) {
+        if (rawValue == null) {
+            if (ttlMillis > 0) {
+                redisTemplate.opsForValue().set(key, data, ttlMillis, TimeUnit.MILLISECONDS);
+            } else {
+                redisTemplate.opsForValue().set(key, data);
+            }
+            return;
+        }
+        byte[] rawKey = ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+        redisTemplate.execute((RedisCallback<Object>) connection -> ttlMillis > 0
+                ? connection.pSetEx(rawKey, ttlMillis, rawValue) : connection.set(rawKey, rawValue));
+    }
+
+    /**
+     * 提前重算：异步调用方法，由缓存拦截器写入新值；同一个key同时只会有一个重算任务
+     * @param cacheInvocation 缓存调用对象
+     */
+    public void recompute(CacheInvocation cacheInvocation) {
+        String cacheKey = cacheInvocation.getKey();
+        if (!recomputingKeys.add(cacheKey)) {
+            return;
+        }
+        try {
+            cacheThreadPoolExecutor.execute(() -> {
+                try {
+                    this.doRecompute(cacheInvocation);
+                } finally {
+                    recomputingKeys.remove(cacheKey);
+                }
+            });
+            cacheMetrics.recordSubmitted(RECOMPUTE_TASK);
+        } catch (RejectedExecutionException e) {
+            cacheMetrics.recordRejected(RECOMPUTE_TASK);
+            // 线程池已满，放弃本次提前重算，缓存过期后按正常流程加载
+            recomputingKeys.remove(cacheKey);
+        }
+    }
+
+    private void doRecompute(CacheInvocation cacheInvocation) {
+        CacheInvokerRegistry.CacheInvoker invoker = cacheInvokerRegistry.getInvoker(cacheInvocation);
+        if (!invoker.isResolved()) {
+            return;
+        }
+        try {
+            ThreadLocalUtil.put(CacheConstant.REFRESH_KEY, Boolean.TRUE);
+            // TtlRedisCache遇到该key时强制未命中，方法结果由缓存拦截器写入
+            ThreadLocalUtil.put(CacheConstant.RECOMPUTE_KEY, cacheInvocation.getKey());
+            invoker.invoke(cacheInvocation.getArgs());
+        } catch (Exception e) {
+            logger.warn("CacheInvocation recompute fail, key={}", cacheInvocation.getKey(), e);
+        } finally {
+            ThreadLocalUtil.remove(CacheConstant.RECOMPUTE_KEY);
+            ThreadLocalUtil.remove(CacheConstant.REFRESH_KEY);
+        }
+    }
+
+    public long getRegisteredSize() {
+        return registeredCaches.estimatedSize();
+    }
+
+    public int getRecomputingSize() {
+        return recomputingKeys.size();
+    }
+
+    public int getWheelSize() {
+        RefreshWheel wheel = refreshWheel;
+        return wheel == null ? 0 : wheel.size();
+    }
+
+    private void deleteRefreshValue(Object cacheKey) {
+        redisTemplate.opsForHash().delete(this.refreshKey(), cacheKey);
+        registeredCaches.invalidate(cacheKey);
+        RefreshWheel wheel = refreshWheel;
+        if (wheel != null) {
+            wheel.cancel(String.valueOf(cacheKey));
+        }
+    }
+
     private String refreshKey() {
         return CacheConstant.REFRESH_KEY +
                 (Objects.equals("", projectProperties.getName()) ? "" : "::" + projectProperties.getName());
@@ -136,29 +671,36 @@ public class CacheRefresher {
             return;
         }
 
-        Map<Object, Object> caches = cacheAccessRegistrar.getAllCaches();
-        if (caches.size() == 0) {
-            return;
-        }
+        long start = System.nanoTime();
         long now = System.currentTimeMillis();
-        for (Map.Entry<Object, Object> entry : caches.entrySet()) {
-            try {
-                final Long accessMillisTime = (Long) entry.getValue();
-                if (accessMillisTime == null) {
-                    redisTemplate.opsForHash().delete(this.refreshKey(), entry.getKey());
-                    cacheAccessRegistrar.delete(entry.getKey());
+        long overTime = overAccessTimeUnit.toMillis(overAccessTime);
+        try (Cursor<Map.Entry<Object, Object>> cursor = cacheAccessRegistrar.scanCaches(taskProperties.getScanCount())) {
+            while (cursor.hasNext()) {
+                Map.Entry<Object, Object> entry = cursor.next();
+                if (!refreshPartitioner.isOwner(entry.getKey())) {
                     continue;
                 }
-                // 超期未访问接口缓存，删掉对应自刷缓存和访问时间缓存
-                long overTime = overAccessTimeUnit.toMillis(overAccessTime);
-                if (now - accessMillisTime > overTime) {
-                    redisTemplate.opsForHash().delete(this.refreshKey(), entry.getKey());
+                try {
+                    final Long accessMillisTime = (Long) entry.getValue();
+                    if (accessMillisTime == null) {
+                        this.deleteRefreshValue(entry.getKey());
+                        cacheAccessRegistrar.delete(entry.getKey());
+                        continue;
+                    }
+                    // 超期未访问接口缓存，删掉对应自刷缓存和访问时间缓存
+                    if (now - accessMillisTime > overTime) {
+                        this.deleteRefreshValue(entry.getKey());
+                        cacheAccessRegistrar.delete(entry.getKey());
+                    }
+                } catch (ClassCastException e) {
+                    this.deleteRefreshValue(entry.getKey());
                     cacheAccessRegistrar.delete(entry.getKey());
                 }
-            } catch (ClassCastException e) {
-                redisTemplate.opsForHash().delete(this.refreshKey(), entry.getKey());
-                cacheAccessRegistrar.delete(entry.getKey());
             }
+        } catch (IOException e) {
+            logger.warn("Last access cursor close fail", e);
+        } finally {
+            cacheMetrics.recordTick(CLEAN_TASK, System.nanoTime() - start);
         }
     }
 }
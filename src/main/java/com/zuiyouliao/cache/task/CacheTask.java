@@ -15,6 +15,7 @@
  */
 package com.zuiyouliao.cache.task;
 
+import com.zuiyouliao.cache.prop.ClusterProperties;
 import com.zuiyouliao.cache.prop.TaskProperties;
 import org.springframework.scheduling.annotation.SchedulingConfigurer;
 import org.springframework.scheduling.config.ScheduledTaskRegistrar;
@@ -35,14 +36,28 @@ public class CacheTask implements SchedulingConfigurer {
     @Resource
     private CacheRefresher cacheRefresher;
 
+    @Resource
+    private ClusterProperties clusterProperties;
+
+    @Resource
+    private RefreshPartitioner refreshPartitioner;
+
     @Override
     public void configureTasks(ScheduledTaskRegistrar registrar) {
         if (taskProperties.getCron() != null && taskProperties.getCron().trim().length() > 0) {
             registrar.addCronTask(this::execute, taskProperties.getCron());
+            // wheel模式下有ttl的自刷缓存由时间轮按各自的ttl刷新
+            cacheRefresher.startWheel();
+            // 只有执行刷新任务的节点才参与分区
+            if (refreshPartitioner.isEnabled()) {
+                registrar.addFixedRateTask(refreshPartitioner::heartbeat, clusterProperties.getHeartbeatInterval());
+            }
         }
     }
 
     private void execute() {
+        // 集群分区模式，刷新前先确认存活节点
+        refreshPartitioner.heartbeat();
         // 先清理超期未访问缓存的对应自刷缓存，再进行自刷
         cacheRefresher.cleanRefreshValue();
         cacheRefresher.refresh();
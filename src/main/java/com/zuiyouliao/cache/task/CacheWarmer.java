@@ -0,0 +1,287 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.task;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.metrics.CacheMetrics;
+import com.zuiyouliao.cache.prop.TaskProperties;
+import com.zuiyouliao.cache.prop.WarmupProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓存预热器
+ * <p>应用启动后扫描登记的自刷缓存，按最近访问时间从新到旧加载redis中缺失的缓存，同时加载的数量和总耗时受配置限制，
+ * 避免滚动发布或redis清空后的流量直接落到数据库</p>
+ * <p>预热不区分集群分区，已存在的缓存（其它节点预热或正常请求写入的）不会重复加载；
+ * 加载失败只计数，不删除登记，下游服务在启动时尚未就绪不影响之后的自动刷新</p>
+ */
+public class CacheWarmer implements ApplicationListener<ContextRefreshedEvent>, DisposableBean {
+
+    private static final String WARMUP_TASK = "warmup";
+
+    @Resource(name = "ttlRedisTemplate")
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private WarmupProperties warmupProperties;
+
+    @Resource
+    private TaskProperties taskProperties;
+
+    @Resource
+    private CacheRefresher cacheRefresher;
+
+    @Resource
+    private CacheAccessRegistrar cacheAccessRegistrar;
+
+    @Resource
+    private CacheInvocationCodec cacheInvocationCodec;
+
+    @Resource
+    private RefreshScheduler refreshScheduler;
+
+    @Resource
+    private CacheMetrics cacheMetrics;
+
+    private final Logger logger = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+    private volatile boolean completed;
+
+    private volatile boolean stopped;
+
+    private volatile ExecutorService executor;
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // 子容器刷新同样会发布事件，只预热一次
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        if (warmupProperties.isWaitForCompletion()) {
+            this.warmup();
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(CacheConstant.WARMUP_THREAD);
+        threadFactory.setDaemon(true);
+        threadFactory.newThread(this::warmup).start();
+    }
+
+    @Override
+    public void destroy() {
+        stopped = true;
+        ExecutorService current = executor;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    /**
+     * 预热是否已结束（包括超出时间预算和失败），可用于项目自定义的就绪检查
+     *
+     * @return boolean
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * 预热缺失的缓存，在时间预算内返回
+     */
+    public void warmup() {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(Math.max(warmupProperties.getTimeBudget(), 0L));
+        int parallelism = Math.max(warmupProperties.getParallelism(), 1);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(CacheConstant.WARMUP_THREAD);
+        threadFactory.setDaemon(true);
+        ExecutorService current = Executors.newFixedThreadPool(parallelism, threadFactory);
+        executor = current;
+        Semaphore permits = new Semaphore(parallelism);
+        AtomicInteger loaded = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        int registered = 0;
+        int missing = 0;
+        boolean finished = false;
+        try {
+            List<Candidate> candidates = this.scanCandidates(deadline);
+            registered = candidates.size();
+            // 最近访问的先加载，没有访问记录的最后
+            candidates.sort(Comparator.comparingLong((Candidate candidate) -> candidate.accessTime).reversed());
+            int scanCount = Math.max(taskProperties.getScanCount(), 1);
+            // 扫描因超出时间预算或关闭而中断时，只加载已扫描到的
+            finished = !stopped && System.nanoTime() < deadline;
+            if (!finished) {
+                candidates.clear();
+            }
+            for (int from = 0; from < candidates.size() && finished; from += scanCount) {
+                List<CacheInvocation> batch = this.loadMissing(candidates.subList(from, Math.min(from + scanCount, candidates.size())));
+                missing += batch.size();
+                for (CacheInvocation cacheInvocation : batch) {
+                    long remaining = deadline - System.nanoTime();
+                    if (stopped || remaining <= 0 || !permits.tryAcquire(remaining, TimeUnit.NANOSECONDS)) {
+                        finished = false;
+                        break;
+                    }
+                    current.execute(() -> {
+                        try {
+                            if (cacheRefresher.warm(cacheInvocation)) {
+                                loaded.incrementAndGet();
+                            } else {
+                                skipped.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                            logger.debug("Cache warmup load fail, key={}", cacheInvocation.getKey(), e);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                }
+            }
+            current.shutdown();
+            // 已提交的加载在时间预算内等待完成，超出后不中断，由线程池在加载结束后退出
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0 && !current.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                finished = false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished = false;
+        } catch (DataAccessException | SerializationException e) {
+            logger.warn("Cache warmup fail", e);
+            finished = false;
+        } finally {
+            // 保留线程池，关闭时中断超出时间预算仍在执行的加载
+            current.shutdown();
+            completed = true;
+            long elapsed = System.nanoTime() - start;
+            cacheMetrics.recordTick(WARMUP_TASK, elapsed);
+            logger.info("Cache warmup {}, registered={}, missing={}, loaded={}, skipped={}, failed={}, elapsed={}ms",
+                    finished ? "finished" : "stopped", registered, missing, loaded.get(), skipped.get(), failed.get(),
+                    TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+    }
+
+    /**
+     * 按页扫描登记的自刷缓存，只保留key和最近访问时间
+     */
+    @SuppressWarnings("unchecked")
+    private List<Candidate> scanCandidates(long deadline) {
+        RedisSerializer<String> hashKeySerializer = (RedisSerializer<String>) redisTemplate.getHashKeySerializer();
+        int scanCount = Math.max(taskProperties.getScanCount(), 1);
+        List<Candidate> candidates = new ArrayList<>();
+        List<Object> page = new ArrayList<>(scanCount);
+        try (Cursor<Map.Entry<byte[], byte[]>> cursor = cacheRefresher.scanRefreshValues()) {
+            while (cursor.hasNext() && !stopped && System.nanoTime() < deadline) {
+                page.add(hashKeySerializer.deserialize(cursor.next().getKey()));
+                if (page.size() >= scanCount) {
+                    this.addCandidates(candidates, page);
+                }
+            }
+            this.addCandidates(candidates, page);
+        } catch (IOException e) {
+            logger.warn("Warmup cursor close fail", e);
+        }
+        return candidates;
+    }
+
+    private void addCandidates(List<Candidate> candidates, List<Object> page) {
+        if (page.isEmpty()) {
+            return;
+        }
+        List<Object> accessTimes = cacheAccessRegistrar.getAccessTimes(page);
+        for (int i = 0; i < page.size(); i++) {
+            Object accessTime = accessTimes == null ? null : accessTimes.get(i);
+            candidates.add(new Candidate((String) page.get(i), accessTime instanceof Long ? (Long) accessTime : 0L));
+        }
+        page.clear();
+    }
+
+    /**
+     * 读取一页中redis缺失的缓存的调用对象，无法解码的跳过，由刷新任务清理
+     */
+    private List<CacheInvocation> loadMissing(List<Candidate> candidates) {
+        List<Object> keys = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            keys.add(candidate.cacheKey);
+        }
+        List<Object> ttls = refreshScheduler.pttl(keys);
+        List<String> missingKeys = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            Object pttl = ttls == null ? null : ttls.get(i);
+            if (pttl instanceof Long && (Long) pttl == -2L) {
+                missingKeys.add(candidates.get(i).cacheKey);
+            }
+        }
+        List<CacheInvocation> batch = new ArrayList<>(missingKeys.size());
+        if (missingKeys.isEmpty()) {
+            return batch;
+        }
+        List<byte[]> values = cacheRefresher.getRefreshValues(missingKeys);
+        for (int i = 0; values != null && i < missingKeys.size(); i++) {
+            byte[] value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            try {
+                CacheInvocation cacheInvocation = cacheInvocationCodec.decode(missingKeys.get(i), value);
+                if (cacheInvocation != null) {
+                    batch.add(cacheInvocation);
+                }
+            } catch (ClassCastException | SerializationException e) {
+                logger.debug("Warmup skip undecodable CacheInvocation, key={}", missingKeys.get(i), e);
+            }
+        }
+        return batch;
+    }
+
+    private static final class Candidate {
+
+        private final String cacheKey;
+
+        private final long accessTime;
+
+        private Candidate(String cacheKey, long accessTime) {
+            this.cacheKey = cacheKey;
+            this.accessTime = accessTime;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.task;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 访问频率草图（count-min sketch）
+ * <p>每个节点在本地累加访问次数的增量，定时合并到redis中的共享草图（每个计数器为16位无符号整数，大端），
+ * 共享草图定期整体减半实现老化，估算值反映近期的访问频率</p>
+ */
+public class FrequencySketch {
+
+    /**
+     * 哈希函数数量（行数）
+     */
+    static final int DEPTH = 4;
+
+    static final int MAX_COUNT = 0xFFFF;
+
+    private final int width;
+
+    private final int mask;
+
+    /**
+     * 本地增量，第i行第j列的下标为 i * width + j
+     */
+    private final AtomicIntegerArray deltas;
+
+    public FrequencySketch(int width) {
+        int w = Integer.highestOneBit(Math.max(width, 64) - 1) << 1;
+        this.width = w;
+        this.mask = w - 1;
+        this.deltas = new AtomicIntegerArray(DEPTH * w);
+    }
+
+    /**
+     * 本地记录一次访问
+     *
+     * @param cacheKey 缓存的key
+     */
+    public void increment(String cacheKey) {
+        long hash = hash(cacheKey);
+        for (int i = 0; i < DEPTH; i++) {
+            int index = this.indexOf(hash, i);
+            if (deltas.get(index) < MAX_COUNT) {
+                deltas.incrementAndGet(index);
+            }
+        }
+    }
+
+    /**
+     * 取出并清零本地增量
+     *
+     * @return int[] 依次为计数器下标和增量，没有增量时为空数组
+     */
+    public int[] drain() {
+        int[] drained = new int[32];
+        int size = 0;
+        for (int i = 0, length = deltas.length(); i < length; i++) {
+            if (deltas.get(i) == 0) {
+                continue;
+            }
+            int delta = deltas.getAndSet(i, 0);
+            if (delta == 0) {
+                continue;
+            }
+            if (size + 2 > drained.length) {
+                int[] grown = new int[drained.length * 2];
+                System.arraycopy(drained, 0, grown, 0, size);
+                drained = grown;
+            }
+            drained[size++] = i;
+            drained[size++] = delta;
+        }
+        int[] result = new int[size];
+        System.arraycopy(drained, 0, result, 0, size);
+        return result;
+    }
+
+    /**
+     * 合并到redis失败时放回本地增量，等待下次合并
+     *
+     * @param drained drain返回的下标和增量
+     */
+    public void restore(int[] drained) {
+        for (int i = 0; i + 1 < drained.length; i += 2) {
+            deltas.addAndGet(drained[i], drained[i + 1]);
+        }
+    }
+
+    /**
+     * 按共享草图估算访问频率，取各行计数器的最小值
+     *
+     * @param counters 共享草图的原始值，计数器未写过的部分可能不存在
+     * @param cacheKey 缓存的key
+     * @return int 估算的近期访问次数
+     */
+    public int estimate(byte[] counters, String cacheKey) {
+        if (counters == null) {
+            return 0;
+        }
+        long hash = hash(cacheKey);
+        int min = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            int offset = this.indexOf(hash, i) << 1;
+            int count = offset + 1 < counters.length
+                    ? ((counters[offset] & 0xFF) << 8) | (counters[offset + 1] & 0xFF) : 0;
+            min = Math.min(min, count);
+        }
+        return min;
+    }
+
+    /**
+     * 共享草图的字节数
+     */
+    public int byteSize() {
+        return DEPTH * width * 2;
+    }
+
+    private int indexOf(long hash, int row) {
+        // Kirsch-Mitzenmacher：用两个32位哈希组合出各行的列
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * width + ((h1 + row * h2) & mask);
+    }
+
+    /**
+     * 与JVM无关的64位哈希（FNV-1a + fmix64），保证各节点对同一个key算出相同的计数器
+     */
+    static long hash(String cacheKey) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0, length = cacheKey.length(); i < length; i++) {
+            hash ^= cacheKey.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.task;
+
+import java.util.PriorityQueue;
+
+/**
+ * 一个刷新周期内的热度筛选：估算访问次数低于阈值的不刷新；限制数量时只刷新不低于上个周期第N热的，且不超过N个
+ */
+class HotnessFilter {
+
+    private final FrequencySketch sketch;
+
+    private final byte[] counters;
+
+    private final int threshold;
+
+    private final int topN;
+
+    private final int cutoff;
+
+    /**
+     * 本周期最热的N个估算值（小顶堆），用于计算下个周期的门槛
+     */
+    private final PriorityQueue<Integer> hottest;
+
+    private int admitted;
+
+    HotnessFilter(FrequencySketch sketch, byte[] counters, int threshold, int topN, int cutoff) {
+        this.sketch = sketch;
+        this.counters = counters;
+        this.threshold = threshold;
+        this.topN = topN;
+        this.cutoff = cutoff;
+        this.hottest = topN > 0 ? new PriorityQueue<>(Math.min(topN, 1024)) : null;
+    }
+
+    boolean admit(String cacheKey) {
+        int estimate = sketch.estimate(counters, cacheKey);
+        if (estimate < threshold) {
+            return false;
+        }
+        if (hottest == null) {
+            return true;
+        }
+        if (hottest.size() < topN) {
+            hottest.offer(estimate);
+        } else if (estimate > hottest.peek()) {
+            hottest.poll();
+            hottest.offer(estimate);
+        }
+        if (estimate < cutoff || admitted >= topN) {
+            return false;
+        }
+        admitted++;
+        return true;
+    }
+
+    /**
+     * 下个周期的门槛，本周期不足N个时不设门槛
+     */
+    int nextCutoff() {
+        return hottest == null || hottest.size() < topN ? 0 : hottest.peek();
+    }
+}
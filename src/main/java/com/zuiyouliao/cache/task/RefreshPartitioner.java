@@ -0,0 +1,194 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.task;
+
+import com.zuiyouliao.cache.constant.BackendType;
+import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.prop.BackendProperties;
+import com.zuiyouliao.cache.prop.ClusterProperties;
+import com.zuiyouliao.cache.prop.ProjectProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import javax.annotation.Resource;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * 自动刷新分区器
+ * <p>各节点通过心跳登记在redis的有序集合中（score为最近心跳时间），按存活节点构建一致性哈希环，
+ * 每个自刷缓存只由环上对应的节点刷新；节点加入或下线后，下一次心跳即重新分区</p>
+ */
+public class RefreshPartitioner implements DisposableBean {
+
+    /**
+     * 每次刷新每个登记都要计算归属，按线程复用摘要实例；仍用MD5，新旧版本节点的哈希环位置一致
+     */
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    @Resource(name = "ttlRedisTemplate")
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private ClusterProperties clusterProperties;
+
+    @Resource
+    private ProjectProperties projectProperties;
+
+    @Resource
+    private BackendProperties backendProperties;
+
+    private final Logger logger = LoggerFactory.getLogger(RefreshPartitioner.class);
+
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+
+    /**
+     * 存活节点，已排序
+     */
+    private volatile List<String> members = Collections.emptyList();
+
+    /**
+     * 一致性哈希环，key为虚拟节点的哈希值，value为节点标识
+     */
+    private volatile TreeMap<Long, String> ring = new TreeMap<>();
+
+    public boolean isEnabled() {
+        // memory后端的自刷缓存只登记在本节点，由本节点全部刷新
+        return clusterProperties.isEnabled() && backendProperties.getType() != BackendType.memory;
+    }
+
+    /**
+     * 心跳：登记本节点，清理超时节点，并按存活节点重建哈希环
+     */
+    @SuppressWarnings("unchecked")
+    public void heartbeat() {
+        if (!this.isEnabled()) {
+            return;
+        }
+        RedisSerializer<String> serializer = RedisSerializer.string();
+        byte[] nodesKey = serializer.serialize(this.nodesKey());
+        byte[] member = serializer.serialize(nodeId);
+        long now = System.currentTimeMillis();
+        double expired = now - clusterProperties.getNodeTimeout();
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.zAdd(nodesKey, now, member);
+                connection.zRemRangeByScore(nodesKey, Double.NEGATIVE_INFINITY, expired);
+                connection.zRangeByScore(nodesKey, expired, Double.POSITIVE_INFINITY);
+                // 所有节点都下线后自动清理
+                connection.pExpire(nodesKey, clusterProperties.getNodeTimeout() * 2);
+                return null;
+            }, serializer);
+            this.rebuild((Collection<String>) results.get(2));
+        } catch (Exception e) {
+            logger.warn("RefreshPartitioner heartbeat fail", e);
+        }
+    }
+
+    private void rebuild(Collection<String> liveMembers) {
+        List<String> sorted = new ArrayList<>(liveMembers);
+        if (!sorted.contains(nodeId)) {
+            sorted.add(nodeId);
+        }
+        Collections.sort(sorted);
+        if (sorted.equals(members)) {
+            return;
+        }
+        TreeMap<Long, String> newRing = new TreeMap<>();
+        for (String member : sorted) {
+            for (int i = 0; i < clusterProperties.getVirtualNodes(); i++) {
+                newRing.put(hash(member + "#" + i), member);
+            }
+        }
+        ring = newRing;
+        members = Collections.unmodifiableList(sorted);
+        logger.info("RefreshPartitioner rebalanced, members={}", sorted);
+    }
+
+    /**
+     * 判断自刷缓存是否由本节点刷新，未开启分区或尚未完成心跳时均返回true
+     * @param cacheKey 缓存的key
+     * @return boolean
+     */
+    public boolean isOwner(Object cacheKey) {
+        TreeMap<Long, String> current = ring;
+        if (!this.isEnabled() || current.isEmpty()) {
+            return true;
+        }
+        Map.Entry<Long, String> entry = current.ceilingEntry(hash(String.valueOf(cacheKey)));
+        if (entry == null) {
+            entry = current.firstEntry();
+        }
+        return Objects.equals(nodeId, entry.getValue());
+    }
+
+    @Override
+    public void destroy() {
+        if (!this.isEnabled()) {
+            return;
+        }
+        RedisSerializer<String> serializer = RedisSerializer.string();
+        try {
+            // 主动下线，其它节点在下一次心跳时接管
+            redisTemplate.execute((RedisCallback<Long>) connection ->
+                    connection.zRem(serializer.serialize(this.nodesKey()), serializer.serialize(nodeId)));
+        } catch (Exception e) {
+            logger.warn("RefreshPartitioner leave fail", e);
+        }
+    }
+
+    private String nodesKey() {
+        return CacheConstant.NODES_KEY +
+                (Objects.equals("", projectProperties.getName()) ? "" : "::" + projectProperties.getName());
+    }
+
+    private static long hash(String value) {
+        byte[] digest = DIGEST.get().digest(value.getBytes(StandardCharsets.UTF_8));
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (digest[i] & 0xFF);
+        }
+        return hash;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public List<String> getMembers() {
+        return members;
+    }
+}
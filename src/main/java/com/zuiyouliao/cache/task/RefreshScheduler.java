@@ -0,0 +1,340 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.task;
+
+import com.zuiyouliao.cache.constant.RefreshPriority;
+import com.zuiyouliao.cache.metrics.CacheMetrics;
+import com.zuiyouliao.cache.prop.RefreshProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * 自动刷新调度器：按优先级排序每页自刷缓存，按刷新线程池的余量提交，并根据加载耗时自适应调整并发（AIMD）
+ */
+public class RefreshScheduler {
+
+    /**
+     * 线程池拒绝后重试提交的间隔（毫秒）
+     */
+    private static final long REJECTED_PAUSE = 10L;
+
+    /**
+     * 过载时并发的缩减比例
+     */
+    private static final double DECREASE_FACTOR = 0.75D;
+
+    /**
+     * 短期、长期加载耗时的平滑系数
+     */
+    private static final double SHORT_ALPHA = 0.2D;
+
+    private static final double LONG_ALPHA = 0.02D;
+
+    @Resource(name = "ttlRedisTemplate")
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private ThreadPoolExecutor cacheThreadPoolExecutor;
+
+    @Resource
+    private CacheAccessRegistrar cacheAccessRegistrar;
+
+    @Resource
+    private RefreshProperties refreshProperties;
+
+    @Resource
+    private CacheMetrics cacheMetrics;
+
+    private final Logger logger = LoggerFactory.getLogger(RefreshScheduler.class);
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition released = lock.newCondition();
+
+    /**
+     * 以下字段由lock保护
+     */
+    private int inFlight;
+
+    /**
+     * 当前并发上限，小于0表示尚未初始化
+     */
+    private double limit = -1D;
+
+    private double shortLatency;
+
+    private double longLatency;
+
+    private long lastDecrease;
+
+    /**
+     * 按优先级排序后逐个提交，没有名额时等待正在执行的刷新完成
+     *
+     * @param batch 一页自刷缓存
+     * @param task 刷新任务，返回是否加载成功
+     * @param taskName 任务名称，用于指标
+     * @return boolean 全部提交返回true；等待名额超时返回false，本周期剩余的自刷缓存留到下个周期
+     */
+    public boolean schedule(List<CacheInvocation> batch, Predicate<CacheInvocation> task, String taskName) {
+        for (CacheInvocation cacheInvocation : this.prioritize(batch)) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(refreshProperties.getAcquireTimeout());
+            if (!this.acquire(deadline)) {
+                return false;
+            }
+            while (true) {
+                try {
+                    cacheThreadPoolExecutor.execute(() -> this.run(cacheInvocation, task));
+                    cacheMetrics.recordSubmitted(taskName);
+                    break;
+                } catch (RejectedExecutionException e) {
+                    // 线程池被其它任务（如提前重算）占满，降低并发后稍候重试
+                    cacheMetrics.recordRejected(taskName);
+                    lock.lock();
+                    try {
+                        this.decrease(System.nanoTime(), true);
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (deadline - System.nanoTime() <= 0 || !this.pause()) {
+                        this.release();
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private void run(CacheInvocation cacheInvocation, Predicate<CacheInvocation> task) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            success = task.test(cacheInvocation);
+        } finally {
+            this.release(System.nanoTime() - start, success);
+        }
+    }
+
+    private boolean acquire(long deadline) {
+        lock.lock();
+        try {
+            while (inFlight >= this.currentLimit()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                released.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 未执行就归还名额，不记录耗时
+     */
+    private void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long nanos, boolean success) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= this.currentLimit();
+            inFlight--;
+            if (longLatency == 0D) {
+                shortLatency = nanos;
+                longLatency = nanos;
+            } else {
+                shortLatency += (nanos - shortLatency) * SHORT_ALPHA;
+                longLatency += (nanos - longLatency) * LONG_ALPHA;
+            }
+            long now = System.nanoTime();
+            if (!success || shortLatency > longLatency * refreshProperties.getLatencyTolerance()) {
+                // 加载失败或耗时明显高于长期水平，视为下游过载
+                this.decrease(now, false);
+            } else if (saturated) {
+                // 名额用满且加载正常，缓慢增加并发
+                limit = Math.min(this.maxConcurrency(), limit + 1D / limit);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 缩减并发，一个平均加载耗时内最多缩减一次，避免同一波过载重复缩减
+     */
+    private void decrease(long now, boolean force) {
+        this.currentLimit();
+        if (!force && now - lastDecrease < (long) shortLatency) {
+            return;
+        }
+        lastDecrease = now;
+        limit = Math.max(this.minConcurrency(), limit * DECREASE_FACTOR);
+    }
+
+    private int currentLimit() {
+        if (limit < 0D) {
+            limit = this.maxConcurrency();
+        }
+        return (int) limit;
+    }
+
+    private int maxConcurrency() {
+        int max = refreshProperties.getMaxConcurrency();
+        return max > 0 ? max : Math.max(cacheThreadPoolExecutor.getMaximumPoolSize(), 1);
+    }
+
+    private int minConcurrency() {
+        return Math.min(Math.max(refreshProperties.getMinConcurrency(), 1), this.maxConcurrency());
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(REJECTED_PAUSE);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 按配置的优先级排序，读取redis失败时保持扫描顺序
+     */
+    private List<CacheInvocation> prioritize(List<CacheInvocation> batch) {
+        RefreshPriority priority = refreshProperties.getPriority();
+        if (batch.size() < 2 || priority == null || priority == RefreshPriority.none) {
+            return batch;
+        }
+        List<Object> keys = new ArrayList<>(batch.size());
+        for (CacheInvocation cacheInvocation : batch) {
+            keys.add(cacheInvocation.getKey());
+        }
+        List<Prioritized> prioritized = new ArrayList<>(batch.size());
+        try {
+            if (priority == RefreshPriority.expiry) {
+                List<Object> ttls = this.pttl(keys);
+                for (int i = 0; i < batch.size(); i++) {
+                    prioritized.add(new Prioritized(batch.get(i), this.expiryRank(ttls.get(i))));
+                }
+            } else {
+                List<Object> accessTimes = cacheAccessRegistrar.getAccessTimes(keys);
+                for (int i = 0; i < batch.size(); i++) {
+                    Object accessTime = accessTimes.get(i);
+                    // 最近访问的排在前面，没有访问记录的排在最后
+                    long rank = accessTime instanceof Long ? -(Long) accessTime : Long.MAX_VALUE;
+                    prioritized.add(new Prioritized(batch.get(i), rank));
+                }
+            }
+        } catch (DataAccessException | ClassCastException e) {
+            logger.warn("Refresh prioritize fail, priority={}", priority, e);
+            return batch;
+        }
+        prioritized.sort(Comparator.comparingLong(p -> p.rank));
+        List<CacheInvocation> ordered = new ArrayList<>(prioritized.size());
+        for (Prioritized p : prioritized) {
+            ordered.add(p.cacheInvocation);
+        }
+        return ordered;
+    }
+
+    /**
+     * 一次pipeline读取各key的剩余存活时间（毫秒）
+     */
+    @SuppressWarnings("unchecked")
+    List<Object> pttl(List<Object> keys) {
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Object key : keys) {
+                connection.pTtl(keySerializer.serialize((String) key));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 已删除或已过期（-2）的最先，永不过期（-1）的最后，其余按剩余毫秒数
+     */
+    private long expiryRank(Object ttl) {
+        if (!(ttl instanceof Long)) {
+            return Long.MAX_VALUE;
+        }
+        long millis = (Long) ttl;
+        if (millis == -2L) {
+            return Long.MIN_VALUE;
+        }
+        return millis < 0L ? Long.MAX_VALUE : millis;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return this.currentLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class Prioritized {
+
+        private final CacheInvocation cacheInvocation;
+
+        private final long rank;
+
+        private Prioritized(CacheInvocation cacheInvocation, long rank) {
+            this.cacheInvocation = cacheInvocation;
+            this.rank = rank;
+        }
+    }
+}
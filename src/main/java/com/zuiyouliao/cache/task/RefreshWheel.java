@@ -0,0 +1,222 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.task;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 自动刷新的哈希时间轮，每个节点一个
+ * <p>每个key只保留最近一次安排的刷新时间，重新安排或取消后旧的条目在经过时丢弃；
+ * 格子只由时间轮线程读写，其它线程安排的刷新先放入队列，下一格时再放入对应的格子</p>
+ * <p>到期的key按格汇总后交给处理器，处理器在时间轮线程上执行，执行较久时后面的格子顺延处理，不会遗漏</p>
+ */
+final class RefreshWheel {
+
+    private final Logger logger = LoggerFactory.getLogger(RefreshWheel.class);
+
+    private final long tickNanos;
+
+    private final int mask;
+
+    private final ArrayDeque<Entry>[] buckets;
+
+    private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * key -> 当前有效的条目
+     */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>(256);
+
+    private final Consumer<List<String>> handler;
+
+    /**
+     * 时钟（纳秒），默认System.nanoTime()
+     */
+    private final LongSupplier nanoClock;
+
+    private final long startNanos;
+
+    /**
+     * 下一个要处理的格，只由时间轮线程访问
+     */
+    private long tick;
+
+    private volatile ScheduledExecutorService ticker;
+
+    RefreshWheel(long tickMillis, int wheelSize, Consumer<List<String>> handler) {
+        this(tickMillis, wheelSize, handler, System::nanoTime);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    RefreshWheel(long tickMillis, int wheelSize, Consumer<List<String>> handler, LongSupplier nanoClock) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(tickMillis, 1L));
+        int size = 1;
+        while (size < Math.max(wheelSize, 1) && size < (1 << 16)) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.buckets = new ArrayDeque[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.handler = handler;
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+    }
+
+    synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(CacheConstant.REFRESH_WHEEL_THREAD);
+        threadFactory.setDaemon(true);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long tickMillis = TimeUnit.NANOSECONDS.toMillis(tickNanos);
+        executor.scheduleWithFixedDelay(this::advance, tickMillis, Math.max(tickMillis, 1L), TimeUnit.MILLISECONDS);
+        ticker = executor;
+    }
+
+    synchronized void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    boolean isRunning() {
+        return ticker != null;
+    }
+
+    /**
+     * 安排key的刷新
+     *
+     * @param cacheKey    缓存的key
+     * @param delayMillis 多久后刷新（毫秒）
+     * @param replace     已安排时是否替换为新的时间
+     * @return boolean 是否安排了该次刷新
+     */
+    boolean schedule(String cacheKey, long delayMillis, boolean replace) {
+        Entry entry = new Entry(cacheKey, nanoClock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(Math.max(delayMillis, 0L)));
+        if (replace) {
+            entries.put(cacheKey, entry);
+        } else if (entries.putIfAbsent(cacheKey, entry) != null) {
+            return false;
+        }
+        pending.add(entry);
+        return true;
+    }
+
+    void cancel(String cacheKey) {
+        entries.remove(cacheKey);
+    }
+
+    boolean contains(String cacheKey) {
+        return entries.containsKey(cacheKey);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * 处理到当前时间为止的所有格子，由时间轮线程定时调用
+     */
+    void advance() {
+        try {
+            long current = (nanoClock.getAsLong() - startNanos) / tickNanos;
+            this.transferPending();
+            List<String> due = new ArrayList<>();
+            while (tick <= current) {
+                this.expire(buckets[(int) (tick & mask)], due);
+                tick++;
+            }
+            if (!due.isEmpty()) {
+                handler.accept(due);
+            }
+        } catch (Throwable e) {
+            // 异常会让定时任务停止，这里只记录
+            logger.error("RefreshWheel advance fail", e);
+        }
+    }
+
+    private void transferPending() {
+        Entry entry;
+        while ((entry = pending.poll()) != null) {
+            if (entries.get(entry.cacheKey) != entry) {
+                continue;
+            }
+            // 向上取整，到期的格子只在整格经过后处理，不会早于安排的时间刷新
+            long deadlineTick = Math.max((entry.deadline - startNanos + tickNanos - 1) / tickNanos, tick);
+            entry.rounds = (deadlineTick - tick) / buckets.length;
+            buckets[(int) (deadlineTick & mask)].add(entry);
+        }
+    }
+
+    private void expire(ArrayDeque<Entry> bucket, List<String> due) {
+        Iterator<Entry> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entries.get(entry.cacheKey) != entry) {
+                // 已重新安排或取消
+                iterator.remove();
+            } else if (entry.rounds > 0) {
+                entry.rounds--;
+            } else {
+                iterator.remove();
+                if (entries.remove(entry.cacheKey, entry)) {
+                    due.add(entry.cacheKey);
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final String cacheKey;
+
+        /**
+         * 到期的System.nanoTime()
+         */
+        private final long deadline;
+
+        /**
+         * 还需经过的圈数，只由时间轮线程访问
+         */
+        private long rounds;
+
+        private Entry(String cacheKey, long deadline) {
+            this.cacheKey = cacheKey;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.util;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * 空结果（空集合、空Map、空数组、Optional.empty）的判断和创建
+ */
+public class EmptyValueUtil {
+
+    private EmptyValueUtil() {
+    }
+
+    public static boolean isEmpty(Object value) {
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).isEmpty();
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).isEmpty();
+        }
+        if (value instanceof Optional) {
+            return !((Optional<?>) value).isPresent();
+        }
+        return value != null && value.getClass().isArray() && Array.getLength(value) == 0;
+    }
+
+    /**
+     * 创建可以赋值给返回类型的不可修改的空值
+     * @param type 方法的返回类型
+     * @return java.lang.Object 不支持的类型返回null
+     */
+    public static Object emptyValueOf(Class<?> type) {
+        if (type.isArray()) {
+            return Array.newInstance(type.getComponentType(), 0);
+        }
+        if (type == NavigableSet.class || type == SortedSet.class) {
+            return Collections.emptyNavigableSet();
+        }
+        if (type == NavigableMap.class || type == SortedMap.class) {
+            return Collections.emptyNavigableMap();
+        }
+        Object[] candidates = {Collections.emptyList(), Collections.emptySet(), Collections.emptyMap()};
+        for (Object candidate : candidates) {
+            if (type.isInstance(candidate) && type != Object.class) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
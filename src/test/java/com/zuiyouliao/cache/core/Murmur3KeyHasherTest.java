@@ -0,0 +1,166 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import com.zuiyouliao.cache.constant.KeyGeneratorType;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * murmur3 key的稳定性：各节点、各版本对相同参数必须生成相同的key，这里固定已知的哈希结果
+ */
+class Murmur3KeyHasherTest {
+
+    private static final String PREFIX = Murmur3KeyHasherTest.class.getName() + "-find-";
+
+    private final TtlCacheKeyGenerator generator = new TtlCacheKeyGenerator(KeyGeneratorType.murmur3);
+
+    private final Method method;
+
+    Murmur3KeyHasherTest() throws NoSuchMethodException {
+        this.method = Murmur3KeyHasherTest.class.getDeclaredMethod("find", Object[].class);
+    }
+
+    @Test
+    void pinScalars() {
+        assertEquals(PREFIX + "a331d47413f50f662c683cd6884675ae", this.key("abc", 42, 7L, null, true));
+        assertEquals(PREFIX + "19310d109fdfc771584f736f84d6196e", this.key(TimeUnit.SECONDS, new Date(0L), new BigDecimal("1.50"), new int[]{1, 2}, new String[]{"p", "q"}));
+    }
+
+    @Test
+    void pinCollections() {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        assertEquals(PREFIX + "ea0004385f59034a5b87a5ab9ec00b05", this.key(Arrays.asList(1, 2, 3), map, new LinkedHashSet<>(Arrays.asList("x", "y"))));
+    }
+
+    @Test
+    void pinBean() {
+        assertEquals(PREFIX + "4ef5adc1812da85155d9c59f9c65eae0", this.key(new Item("n", 3, Arrays.asList("t1", "t2"))));
+    }
+
+    @Test
+    void pinCyclicGraph() {
+        assertEquals(PREFIX + "b49ef1dbf113fea26dc41e9bef05091f", this.key(Node.tree("root", 3)));
+    }
+
+    @Test
+    void cyclicGraphIsValueBased() {
+        assertEquals(this.key(Node.tree("root", 50)), this.key(Node.tree("root", 50)));
+        assertNotEquals(this.key(Node.tree("root", 50)), this.key(Node.tree("root", 51)));
+        assertNotEquals(this.key(Node.tree("root", 3)), this.key(Node.tree("other", 3)));
+    }
+
+    @Test
+    void largeCyclicGraphVisitsEachInstanceOnce() {
+        Node root = Node.tree("root", 2000);
+        for (Node child : root.children) {
+            child.children.addAll(root.children.subList(0, 20));
+        }
+        long start = System.nanoTime();
+        this.key(root);
+        assertEquals(true, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000L);
+    }
+
+    @Test
+    void setIgnoresIterationOrderWithSharedReferences() {
+        Node parent = new Node("parent");
+        Node a = new Node("a");
+        Node b = new Node("b");
+        a.parent = parent;
+        b.parent = parent;
+        Set<Node> ab = new LinkedHashSet<>(Arrays.asList(a, b));
+        Set<Node> ba = new LinkedHashSet<>(Arrays.asList(b, a));
+        assertEquals(this.key(ab), this.key(ba));
+    }
+
+    @Test
+    void tooDeepThrows() {
+        Node head = new Node("0");
+        Node current = head;
+        for (int i = 1; i < 100; i++) {
+            current.parent = new Node(String.valueOf(i));
+            current = current.parent;
+        }
+        assertThrows(IllegalArgumentException.class, () -> this.key(head));
+    }
+
+    private String key(Object... args) {
+        return (String) generator.generate(this, method, args);
+    }
+
+    @SuppressWarnings("unused")
+    private String find(Object... args) {
+        return null;
+    }
+
+    static class Item {
+
+        private final String name;
+
+        private final int count;
+
+        private final List<String> tags;
+
+        Item(String name, int count, List<String> tags) {
+            this.name = name;
+            this.count = count;
+            this.tags = tags;
+        }
+    }
+
+    static class Node {
+
+        private final String name;
+
+        private Node parent;
+
+        private final List<Node> children = new ArrayList<>();
+
+        Node(String name) {
+            this.name = name;
+        }
+
+        /**
+         * 父节点引用子节点，子节点引用父节点
+         */
+        static Node tree(String name, int size) {
+            Node root = new Node(name);
+            for (int i = 0; i < size; i++) {
+                Node child = new Node(name + "-" + i);
+                child.parent = root;
+                root.children.add(child);
+            }
+            return root;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.core;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.memory.ScriptBackends;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SingleFlight的释放租约脚本在两种后端上的行为一致
+ */
+class SingleFlightScriptTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {ScriptBackends.MEMORY, ScriptBackends.REDIS})
+    void releaseOnlyOwnLease(String backend) {
+        StringRedisTemplate template = ScriptBackends.template(backend);
+        String leaseKey = "z-cache-test::" + UUID.randomUUID() + CacheConstant.LEASE_SUFFIX;
+        try {
+            template.opsForValue().set(leaseKey, "node-a:1");
+
+            assertEquals(0L, this.release(template, leaseKey, "node-b:1"));
+            assertEquals("node-a:1", template.opsForValue().get(leaseKey));
+
+            assertEquals(1L, this.release(template, leaseKey, "node-a:1"));
+            assertFalse(template.hasKey(leaseKey));
+
+            assertEquals(0L, this.release(template, leaseKey, "node-a:1"));
+        } finally {
+            template.delete(leaseKey);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {ScriptBackends.MEMORY, ScriptBackends.REDIS})
+    void releaseKeepsExpiredLeaseTakenByOtherNode(String backend) {
+        StringRedisTemplate template = ScriptBackends.template(backend);
+        String leaseKey = "z-cache-test::" + UUID.randomUUID() + CacheConstant.LEASE_SUFFIX;
+        try {
+            // 本节点的租约到期后被其它节点获取，释放时不能删除其它节点的租约
+            template.opsForValue().set(leaseKey, "node-b:7");
+            assertEquals(0L, this.release(template, leaseKey, "node-a:7"));
+            assertTrue(template.hasKey(leaseKey));
+        } finally {
+            template.delete(leaseKey);
+        }
+    }
+
+    private Long release(StringRedisTemplate template, String leaseKey, String token) {
+        return template.execute(SingleFlight.RELEASE_SCRIPT, RedisSerializer.string(), new GenericToStringSerializer<>(Long.class),
+                Collections.singletonList(leaseKey), token);
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * memory后端超过最大条目数时的淘汰
+ */
+class MemoryStoreTest {
+
+    @Test
+    void evictBeyondMaximumSize() {
+        MemoryStore store = new MemoryStore(0L, 100);
+        RedisConnection connection = new MemoryRedisConnectionFactory(store).getConnection();
+        for (int i = 0; i < 1000; i++) {
+            connection.set(this.bytes("key::" + i), this.bytes("value"));
+        }
+        assertEquals(100, store.size());
+        assertEquals(900L, store.evictionCount());
+    }
+
+    @Test
+    void keepRecentlyReadEntries() throws InterruptedException {
+        MemoryStore store = new MemoryStore(0L, 100);
+        RedisConnection connection = new MemoryRedisConnectionFactory(store).getConnection();
+        for (int i = 0; i < 100; i++) {
+            connection.set(this.bytes("key::" + i), this.bytes("value"));
+        }
+        Thread.sleep(5L);
+        for (int i = 0; i < 1000; i++) {
+            // 每次写入前读取热点key，热点key不会是抽样中最久未读取的
+            assertNotNull(connection.get(this.bytes("key::0")));
+            connection.set(this.bytes("new::" + i), this.bytes("value"));
+        }
+        assertNotNull(connection.get(this.bytes("key::0")));
+        assertEquals(100, store.size());
+    }
+
+    @Test
+    void evictExpiredEntriesFirst() throws InterruptedException {
+        MemoryStore store = new MemoryStore(0L, 10);
+        RedisConnection connection = new MemoryRedisConnectionFactory(store).getConnection();
+        connection.set(this.bytes("expiring"), this.bytes("value"), Expiration.milliseconds(1L), RedisConnection.SetOption.upsert());
+        for (int i = 0; i < 9; i++) {
+            connection.set(this.bytes("key::" + i), this.bytes("value"));
+        }
+        Thread.sleep(5L);
+        connection.set(this.bytes("key::9"), this.bytes("value"));
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(connection.get(this.bytes("key::" + i)));
+        }
+        assertNull(connection.get(this.bytes("expiring")));
+    }
+
+    @Test
+    void neverEvictHashes() {
+        MemoryStore store = new MemoryStore(0L, 10);
+        RedisConnection connection = new MemoryRedisConnectionFactory(store).getConnection();
+        for (int i = 0; i < 20; i++) {
+            connection.hSet(this.bytes("hash::" + i), this.bytes("field"), this.bytes("value"));
+        }
+        for (int i = 0; i < 20; i++) {
+            connection.set(this.bytes("key::" + i), this.bytes("value"));
+        }
+        for (int i = 0; i < 20; i++) {
+            assertTrue(connection.hExists(this.bytes("hash::" + i), this.bytes("field")));
+        }
+        assertEquals(20, store.size());
+    }
+
+    private byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.memory;
+
+import org.junit.jupiter.api.Assumptions;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 脚本测试的两种后端：memory后端和真实的redis
+ * <p>redis的地址通过系统属性z-cache.test.redis.host、z-cache.test.redis.port指定，默认127.0.0.1:6379，连接不上时跳过redis的测试</p>
+ */
+public final class ScriptBackends {
+
+    public static final String MEMORY = "memory";
+
+    public static final String REDIS = "redis";
+
+    private static LettuceConnectionFactory redisConnectionFactory;
+
+    private static boolean redisAvailable;
+
+    private ScriptBackends() {
+    }
+
+    /**
+     * 创建指定后端的StringRedisTemplate，memory后端每次使用新的MemoryStore
+     */
+    public static StringRedisTemplate template(String backend) {
+        RedisConnectionFactory connectionFactory = MEMORY.equals(backend)
+                ? new MemoryRedisConnectionFactory(new MemoryStore(0L, 0)) : redisConnectionFactory();
+        StringRedisTemplate template = new StringRedisTemplate(connectionFactory);
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    private static synchronized RedisConnectionFactory redisConnectionFactory() {
+        if (redisConnectionFactory == null) {
+            redisConnectionFactory = new LettuceConnectionFactory(System.getProperty("z-cache.test.redis.host", "127.0.0.1"),
+                    Integer.getInteger("z-cache.test.redis.port", 6379));
+            redisConnectionFactory.afterPropertiesSet();
+            try {
+                RedisConnection connection = redisConnectionFactory.getConnection();
+                try {
+                    redisAvailable = "PONG".equals(connection.ping());
+                } finally {
+                    connection.close();
+                }
+            } catch (RuntimeException e) {
+                redisAvailable = false;
+            }
+        }
+        Assumptions.assumeTrue(redisAvailable, "redis不可用，跳过redis后端的测试");
+        return redisConnectionFactory;
+    }
+}
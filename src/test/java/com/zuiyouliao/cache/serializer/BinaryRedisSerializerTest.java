@@ -0,0 +1,208 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.serializer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 二进制序列化的往返测试：读出的值与写入的值类型、内容和顺序一致
+ */
+class BinaryRedisSerializerTest {
+
+    private final BinaryRedisSerializer serializer = new BinaryRedisSerializer(Collections.singletonList(Item.class));
+
+    @Test
+    void scalars() {
+        for (Object value : Arrays.asList("中文", 1, -1L, Long.MAX_VALUE, true, false, 1.5D, 2.5F, (short) 3, (byte) 4, 'c',
+                new BigDecimal("-12.345"), new BigInteger("123456789012345678901234567890"), new Date(1234567L),
+                UUID.randomUUID(), LocalDate.of(2026, 10, 19), LocalDateTime.of(2026, 10, 19, 5, 10, 1, 2),
+                Instant.ofEpochSecond(1, 2), Color.GREEN, Optional.of("x"), Optional.empty())) {
+            assertEquals(value, this.roundTrip(value));
+        }
+        assertNull(serializer.deserialize(serializer.serialize(null)));
+        assertSame(NullValue.INSTANCE, this.roundTrip(NullValue.INSTANCE));
+    }
+
+    @Test
+    void arrays() {
+        assertArrayEquals(new int[]{1, -2, 3}, (int[]) this.roundTrip(new int[]{1, -2, 3}));
+        assertArrayEquals(new long[]{1L, Long.MIN_VALUE}, (long[]) this.roundTrip(new long[]{1L, Long.MIN_VALUE}));
+        assertArrayEquals(new double[]{0.1D, -2D}, (double[]) this.roundTrip(new double[]{0.1D, -2D}));
+        assertArrayEquals(new byte[]{1, 2}, (byte[]) this.roundTrip(new byte[]{1, 2}));
+        assertArrayEquals(new String[]{"a", null}, (String[]) this.roundTrip(new String[]{"a", null}));
+    }
+
+    @Test
+    void rebuildableCollectionsKeepTypeAndOrder() {
+        List<Object> values = Arrays.asList(new ArrayList<>(Arrays.asList(3, 1, 2)),
+                new LinkedHashMap<>(Collections.singletonMap("b", 1)), new HashMap<>(Collections.singletonMap(1L, "a")),
+                new TreeMap<>(Collections.singletonMap("z", 1)), new TreeSet<>(Arrays.asList("b", "a")),
+                new ConcurrentHashMap<>(Collections.singletonMap("k", "v")));
+        for (Object value : values) {
+            Object result = this.roundTrip(value);
+            assertEquals(value.getClass(), result.getClass());
+            assertEquals(value, result);
+        }
+    }
+
+    @Test
+    void unrebuildableCollectionsKeepTypeAndOrder() {
+        EnumMap<Color, String> enumMap = new EnumMap<>(Color.class);
+        enumMap.put(Color.RED, "r");
+        TreeMap<String, Integer> reversedMap = new TreeMap<>(Comparator.reverseOrder());
+        reversedMap.put("a", 1);
+        reversedMap.put("b", 2);
+        TreeSet<String> reversedSet = new TreeSet<>(Comparator.reverseOrder());
+        reversedSet.addAll(Arrays.asList("a", "b", "c"));
+        List<Object> values = Arrays.asList(enumMap, EnumSet.of(Color.RED, Color.BLUE), reversedMap, reversedSet,
+                Arrays.asList(1, 2), Collections.unmodifiableList(new ArrayList<>(Arrays.asList("x", "y"))),
+                Collections.emptyList(), Collections.singletonMap("k", 1));
+        for (Object value : values) {
+            Object result = this.roundTrip(value);
+            assertEquals(value.getClass(), result.getClass());
+            assertEquals(value, result);
+            if (value instanceof Iterable) {
+                assertEquals(this.toList((Iterable<?>) value), this.toList((Iterable<?>) result));
+            }
+        }
+        assertEquals(Arrays.asList("b", "a"), new ArrayList<>(((TreeMap<?, ?>) this.roundTrip(reversedMap)).keySet()));
+    }
+
+    @Test
+    void objectFieldsKeepCollectionTypes() {
+        Item item = new Item();
+        item.name = "item";
+        item.count = 7;
+        item.colors = EnumSet.of(Color.GREEN);
+        item.labels = new EnumMap<>(Color.class);
+        item.labels.put(Color.BLUE, "b");
+        item.sorted = new TreeSet<>(Comparator.reverseOrder());
+        item.sorted.addAll(Arrays.asList("a", "c", "b"));
+        item.tags = Arrays.asList("t1", "t2");
+        item.child = new Item();
+        item.child.name = "child";
+        Item result = (Item) this.roundTrip(item);
+        assertEquals("item", result.name);
+        assertEquals(7, result.count);
+        assertEquals(item.colors, result.colors);
+        assertEquals(item.labels, result.labels);
+        assertEquals(Arrays.asList("c", "b", "a"), new ArrayList<>(result.sorted));
+        assertEquals(item.tags, result.tags);
+        assertEquals("child", result.child.name);
+    }
+
+    @Test
+    void sharedAndCyclicReferences() {
+        Item item = new Item();
+        item.name = "self";
+        item.child = item;
+        Item result = (Item) this.roundTrip(item);
+        assertSame(result, result.child);
+        List<Object> shared = new ArrayList<>();
+        List<Object> outer = new ArrayList<>(Arrays.asList(shared, shared));
+        List<?> copied = (List<?>) this.roundTrip(outer);
+        assertSame(copied.get(0), copied.get(1));
+    }
+
+    @Test
+    void unrebuildableCollectionOfNonSerializableValuesFails() {
+        Item item = new Item();
+        item.tags = Collections.unmodifiableList(new ArrayList<>(Collections.singletonList("x")));
+        List<Object> value = Collections.unmodifiableList(Collections.singletonList(new Plain()));
+        assertThrows(SerializationException.class, () -> serializer.serialize(value));
+        assertEquals(item.tags, ((Item) this.roundTrip(item)).tags);
+    }
+
+    @Test
+    void registeredClassWritesIdInsteadOfName() {
+        Item item = new Item();
+        byte[] registered = serializer.serialize(item);
+        byte[] unregistered = new BinaryRedisSerializer().serialize(item);
+        assertTrue(registered.length < unregistered.length);
+        assertTrue(BinaryRedisSerializer.isBinary(registered));
+    }
+
+    private Object roundTrip(Object value) {
+        return serializer.deserialize(serializer.serialize(value));
+    }
+
+    private List<Object> toList(Iterable<?> values) {
+        List<Object> list = new ArrayList<>();
+        for (Object value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    enum Color {
+        RED, GREEN, BLUE
+    }
+
+    static class Item implements Serializable {
+
+        private String name;
+
+        private int count;
+
+        private Set<Color> colors;
+
+        private Map<Color, String> labels;
+
+        private TreeSet<String> sorted;
+
+        private List<String> tags;
+
+        private Item child;
+    }
+
+    static class Plain {
+
+        private String value = "plain";
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.task;
+
+import com.zuiyouliao.cache.constant.CacheConstant;
+import com.zuiyouliao.cache.constant.RegistryFormat;
+import com.zuiyouliao.cache.memory.MemoryRedisConnectionFactory;
+import com.zuiyouliao.cache.memory.MemoryStore;
+import com.zuiyouliao.cache.prop.ProjectProperties;
+import com.zuiyouliao.cache.prop.SerialProperties;
+import com.zuiyouliao.cache.prop.TaskProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 登记值的编解码：紧凑格式、jdk格式（配置为jdk或方法id冲突时）以及方法描述缺失，每个编解码器相当于一个节点，共用memory后端
+ */
+class CacheInvocationCodecTest {
+
+    private final RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+
+    private final List<AnnotationConfigApplicationContext> contexts = new ArrayList<>();
+
+    CacheInvocationCodecTest() {
+        redisTemplate.setConnectionFactory(new MemoryRedisConnectionFactory(new MemoryStore(0L, 0)));
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setHashKeySerializer(RedisSerializer.string());
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void close() {
+        contexts.forEach(AnnotationConfigApplicationContext::close);
+    }
+
+    @Test
+    void compactRoundTrip() {
+        CacheInvocation invocation = this.invocation("a", 1);
+        byte[] bytes = this.codec(RegistryFormat.compact).encode(invocation);
+        assertTrue(CacheInvocationCodec.isCompact(bytes));
+        // 其它节点按方法描述表解析
+        this.assertInvocation(invocation, this.codec(RegistryFormat.jdk).decode(invocation.getKey(), bytes));
+
+        CacheInvocation noArgs = new CacheInvocation("demo.Service", "list", new Class<?>[0], null, "demo::list", 30L);
+        CacheInvocation decoded = this.codec(RegistryFormat.jdk).decode(noArgs.getKey(), this.codec(RegistryFormat.compact).encode(noArgs));
+        assertEquals(0, decoded.getArgs().length);
+        assertEquals("demo.Service#list()", decoded.getSignature());
+    }
+
+    @Test
+    void jdkFormat() {
+        CacheInvocation invocation = this.invocation("a", 1);
+        byte[] bytes = this.codec(RegistryFormat.jdk).encode(invocation);
+        assertFalse(CacheInvocationCodec.isCompact(bytes));
+        this.assertInvocation(invocation, this.codec(RegistryFormat.compact).decode(invocation.getKey(), bytes));
+        assertNull(this.codec(RegistryFormat.compact).decode(invocation.getKey(), new byte[0]));
+    }
+
+    @Test
+    void methodIdConflictFallsBackToJdk() {
+        CacheInvocation invocation = this.invocation("a", 1);
+        byte[] digest = DigestUtils.md5Digest(invocation.getSignature().getBytes(StandardCharsets.UTF_8));
+        long methodId = 0;
+        for (int i = 0; i < 8; i++) {
+            methodId = (methodId << 8) | (digest[i] & 0xFF);
+        }
+        redisTemplate.opsForHash().put(CacheConstant.REFRESH_METHODS_KEY, Long.toHexString(methodId), "other.Service#find()");
+        byte[] bytes = this.codec(RegistryFormat.compact).encode(invocation);
+        assertFalse(CacheInvocationCodec.isCompact(bytes));
+        this.assertInvocation(invocation, this.codec(RegistryFormat.compact).decode(invocation.getKey(), bytes));
+    }
+
+    @Test
+    void missingDescriptor() {
+        CacheInvocationCodec codec = this.codec(RegistryFormat.compact);
+        CacheInvocation invocation = this.invocation("a", 1);
+        byte[] bytes = codec.encode(invocation);
+        redisTemplate.delete(CacheConstant.REFRESH_METHODS_KEY);
+        assertThrows(SerializationException.class, () -> this.codec(RegistryFormat.compact).decode(invocation.getKey(), bytes));
+
+        // 同一节点的再次登记在检查间隔内不访问redis
+        assertArrayEquals(bytes, codec.encode(invocation));
+        assertFalse(redisTemplate.hasKey(CacheConstant.REFRESH_METHODS_KEY));
+        // 首次登记该方法的节点补写方法描述
+        assertArrayEquals(bytes, this.codec(RegistryFormat.compact).encode(invocation));
+        this.assertInvocation(invocation, this.codec(RegistryFormat.compact).decode(invocation.getKey(), bytes));
+    }
+
+    @Test
+    void unsupportedVersion() {
+        byte[] bytes = this.codec(RegistryFormat.compact).encode(this.invocation("a", 1));
+        bytes[1] = (byte) 0x7F;
+        assertThrows(SerializationException.class, () -> this.codec(RegistryFormat.compact).decode("demo::find", bytes));
+    }
+
+    private CacheInvocation invocation(String name, int page) {
+        return new CacheInvocation("demo.Service", "find", new Class<?>[]{String.class, int.class},
+                new Object[]{name, page}, "demo::find:" + name + ":" + page, 60L);
+    }
+
+    private void assertInvocation(CacheInvocation expected, CacheInvocation actual) {
+        assertEquals(expected.getSignature(), actual.getSignature());
+        assertEquals(expected.getTargetName(), actual.getTargetName());
+        assertEquals(expected.getMethodName(), actual.getMethodName());
+        assertArrayEquals(expected.getArgTypes(), actual.getArgTypes());
+        assertEquals(Arrays.asList(expected.getArgs()), Arrays.asList(actual.getArgs()));
+        assertEquals(expected.getKey(), actual.getKey());
+        assertEquals(expected.getTtl(), actual.getTtl());
+    }
+
+    private CacheInvocationCodec codec(RegistryFormat format) {
+        TaskProperties taskProperties = new TaskProperties();
+        taskProperties.setRegistryFormat(format);
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean("ttlRedisTemplate", RedisTemplate.class, () -> redisTemplate);
+        context.registerBean(ProjectProperties.class, ProjectProperties::new);
+        context.registerBean(SerialProperties.class, SerialProperties::new);
+        context.registerBean(TaskProperties.class, () -> taskProperties);
+        context.registerBean(CacheInvocationCodec.class);
+        context.refresh();
+        contexts.add(context);
+        return context.getBean(CacheInvocationCodec.class);
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.task;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 时间轮的圈数和到期时间计算，使用手动推进的时钟，不启动时间轮线程
+ */
+class RefreshWheelTest {
+
+    private static final long TICK = 100L;
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1000L));
+
+    private final List<String> due = new ArrayList<>();
+
+    private final RefreshWheel wheel = new RefreshWheel(TICK, 4, due::addAll, clock::get);
+
+    private List<String> advanceTo(long millis) {
+        clock.set(TimeUnit.SECONDS.toNanos(1000L) + TimeUnit.MILLISECONDS.toNanos(millis));
+        due.clear();
+        wheel.advance();
+        return new ArrayList<>(due);
+    }
+
+    @Test
+    void neverDueBeforeDeadline() {
+        wheel.schedule("a", 250L, false);
+        assertTrue(this.advanceTo(0L).isEmpty());
+        assertTrue(this.advanceTo(200L).isEmpty());
+        assertTrue(this.advanceTo(299L).isEmpty());
+        assertEquals(Collections.singletonList("a"), this.advanceTo(300L));
+        assertFalse(wheel.contains("a"));
+        assertTrue(this.advanceTo(700L).isEmpty());
+    }
+
+    @Test
+    void roundsBeyondWheelSize() {
+        // 4格，每格100ms，1000ms后到期需要经过2圈
+        wheel.schedule("a", 1000L, false);
+        wheel.schedule("b", 200L, false);
+        assertTrue(this.advanceTo(0L).isEmpty());
+        for (long millis = TICK; millis < 1000L; millis += TICK) {
+            assertEquals(millis == 200L ? Collections.singletonList("b") : Collections.emptyList(), this.advanceTo(millis), "at " + millis);
+        }
+        assertEquals(Collections.singletonList("a"), this.advanceTo(1000L));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void lateAdvanceCatchesUp() {
+        // 时间轮线程延迟时一次处理经过的所有格子，圈数按经过的格子递减，不提前也不遗漏
+        wheel.schedule("a", 1000L, false);
+        wheel.schedule("b", 350L, false);
+        assertEquals(Collections.singletonList("b"), this.advanceTo(700L));
+        assertTrue(this.advanceTo(900L).isEmpty());
+        assertEquals(Collections.singletonList("a"), this.advanceTo(1500L));
+    }
+
+    @Test
+    void expiredDueOnNextTick() {
+        // 已处理过的格子不再经过，立即到期的放入下一格
+        this.advanceTo(500L);
+        wheel.schedule("a", 0L, false);
+        assertTrue(this.advanceTo(599L).isEmpty());
+        assertEquals(Collections.singletonList("a"), this.advanceTo(600L));
+    }
+
+    @Test
+    void rescheduleAndCancel() {
+        assertTrue(wheel.schedule("a", 200L, false));
+        assertFalse(wheel.schedule("a", 100L, false));
+        assertTrue(wheel.schedule("b", 200L, false));
+        assertTrue(wheel.schedule("b", 600L, true));
+        assertTrue(wheel.schedule("c", 200L, false));
+        wheel.cancel("c");
+        assertEquals(2, wheel.size());
+        assertEquals(Collections.singletonList("a"), this.advanceTo(200L));
+        assertTrue(this.advanceTo(500L).isEmpty());
+        assertEquals(Arrays.asList("b"), this.advanceTo(600L));
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zuiyouliao.cache.task;
+
+import com.zuiyouliao.cache.memory.ScriptBackends;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 自刷缓存登记脚本和频率草图衰减脚本在两种后端上的行为一致
+ */
+class TaskScriptTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {ScriptBackends.MEMORY, ScriptBackends.REDIS})
+    void registerWritesOnlyChangedValue(String backend) {
+        StringRedisTemplate template = ScriptBackends.template(backend);
+        String refreshKey = "z-cache-test::" + UUID.randomUUID() + "::refresh";
+        try {
+            assertEquals(1L, this.register(template, refreshKey, "user::1", new byte[]{1, 2, 3}));
+            assertEquals(0L, this.register(template, refreshKey, "user::1", new byte[]{1, 2, 3}));
+            assertEquals(1L, this.register(template, refreshKey, "user::1", new byte[]{1, 2, 4}));
+            assertEquals(1L, this.register(template, refreshKey, "user::2", new byte[]{(byte) 0xAC, 0, (byte) 0xFF}));
+
+            assertArrayEquals(new byte[]{1, 2, 4}, this.hGet(template, refreshKey, "user::1"));
+            assertArrayEquals(new byte[]{(byte) 0xAC, 0, (byte) 0xFF}, this.hGet(template, refreshKey, "user::2"));
+            assertEquals(2L, template.opsForHash().size(refreshKey));
+        } finally {
+            template.delete(refreshKey);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {ScriptBackends.MEMORY, ScriptBackends.REDIS})
+    void agingHalvesCountersOncePerInterval(String backend) {
+        StringRedisTemplate template = ScriptBackends.template(backend);
+        String sketchKey = "z-cache-test::" + UUID.randomUUID() + "::access-sketch";
+        String agingKey = sketchKey + "::aging";
+        try {
+            this.set(template, sketchKey, new byte[]{0x00, 0x10, 0x01, 0x00, (byte) 0xFF, (byte) 0xFF, 0x00, 0x01});
+
+            assertEquals(1L, this.age(template, sketchKey, agingKey));
+            assertArrayEquals(new byte[]{0x00, 0x08, 0x00, (byte) 0x80, 0x7F, (byte) 0xFF, 0x00, 0x00}, this.get(template, sketchKey));
+            long pttl = template.execute((RedisCallback<Long>) connection -> connection.pTtl(agingKey.getBytes(StandardCharsets.UTF_8)));
+            assertTrue(pttl > 0 && pttl <= 60000L);
+
+            // 同一个周期内只衰减一次
+            assertEquals(0L, this.age(template, sketchKey, agingKey));
+            assertArrayEquals(new byte[]{0x00, 0x08, 0x00, (byte) 0x80, 0x7F, (byte) 0xFF, 0x00, 0x00}, this.get(template, sketchKey));
+        } finally {
+            template.delete(Arrays.asList(sketchKey, agingKey));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {ScriptBackends.MEMORY, ScriptBackends.REDIS})
+    void agingWithoutSketch(String backend) {
+        StringRedisTemplate template = ScriptBackends.template(backend);
+        String sketchKey = "z-cache-test::" + UUID.randomUUID() + "::access-sketch";
+        String agingKey = sketchKey + "::aging";
+        try {
+            assertEquals(0L, this.age(template, sketchKey, agingKey));
+            assertNull(this.get(template, sketchKey));
+        } finally {
+            template.delete(Arrays.asList(sketchKey, agingKey));
+        }
+    }
+
+    private Long register(StringRedisTemplate template, String refreshKey, String field, byte[] value) {
+        return template.execute(CacheRefresher.REGISTER_SCRIPT, RedisSerializer.byteArray(), new GenericToStringSerializer<>(Long.class),
+                Collections.singletonList(refreshKey), field.getBytes(StandardCharsets.UTF_8), value);
+    }
+
+    private Long age(StringRedisTemplate template, String sketchKey, String agingKey) {
+        return template.execute(CacheAccessRegistrar.AGING_SCRIPT, RedisSerializer.string(), new GenericToStringSerializer<>(Long.class),
+                Arrays.asList(sketchKey, agingKey), "60000");
+    }
+
+    private byte[] hGet(StringRedisTemplate template, String key, String field) {
+        return template.execute((RedisCallback<byte[]>) connection ->
+                connection.hGet(key.getBytes(StandardCharsets.UTF_8), field.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private byte[] get(StringRedisTemplate template, String key) {
+        return template.execute((RedisCallback<byte[]>) connection -> connection.get(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void set(StringRedisTemplate template, String key, byte[] value) {
+        template.execute((RedisCallback<Boolean>) connection -> connection.set(key.getBytes(StandardCharsets.UTF_8), value));
+    }
+}